@@ -0,0 +1,43 @@
+package app;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes their results as JSON, so runs of different releases can be
+ * compared. The bench folder is a source folder of its own, compiled together with src against
+ * jmh-core and with jmh-generator-annprocess as annotation processor, which generates the
+ * harness classes. Arguments are regular expressions selecting the benchmarks to run, all of
+ * them if none are given. The library sizes and the output file may be set with
+ * -Dbench.photos=1000,100000 -Dbench.albums=10,1000 -Dbench.forks=1 -Dbench.out=results.json
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Benchmarks {
+	/**
+	 * Runs the benchmarks
+	 * @param args regular expressions of the benchmarks to run
+	 * @throws RunnerException if a benchmark fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		ChainedOptionsBuilder opts = new OptionsBuilder()
+				.resultFormat(ResultFormatType.JSON)
+				.result(System.getProperty("bench.out", "bench-results.json"))
+				.forks(Integer.getInteger("bench.forks", 1))
+				.shouldFailOnError(true);
+		if (args.length == 0) opts.include("(model|app|view)\\..*Bench");
+		for (String pattern : args) {
+			opts.include(pattern);
+		}
+		String photos = System.getProperty("bench.photos");
+		if (photos != null) opts.param("photos", photos.split(","));
+		String albums = System.getProperty("bench.albums");
+		if (albums != null) opts.param("albums", albums.split(","));
+		new Runner(opts.build()).run();
+	}
+}
@@ -0,0 +1,100 @@
+package app;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import model.Libraries;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of saving and loading a whole library through LibraryCodec, the format the
+ * library files and their shards are written in. The library is a few Users sharing the
+ * Photos out among ten Albums each; writing is measured with and without deflate
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CodecBench {
+	/** Users of the library */
+	private static final int USERS = 4;
+
+	/** Photos of the whole library */
+	@Param({ "1000", "100000" })
+	public int photos;
+	/** whether the library is deflated */
+	@Param({ "true", "false" })
+	public boolean compress;
+
+	/** the library */
+	private List<User> users;
+	/** the library as written */
+	private byte[] written;
+
+	/**
+	 * Builds and writes the library
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void build() throws IOException {
+		users = new ArrayList<User>();
+		for (int i = 0; i < USERS; i++) {
+			users.add(Libraries.user("user" + i, 10, photos / USERS, i));
+		}
+		written = write(users);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		return write(users);
+	}
+
+	@Benchmark
+	public List<User> deserialize() throws IOException {
+		return read(written);
+	}
+
+	@Benchmark
+	public List<User> roundTrip() throws IOException {
+		return read(write(users));
+	}
+
+	/**
+	 * Writes Users as a library file would hold them
+	 * @param users the Users
+	 * @return the written bytes
+	 * @throws IOException
+	 */
+	private byte[] write(List<User> users) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(written == null ? 8192 : written.length);
+		LibraryCodec.write(1, users, out, compress);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads back Users written by write
+	 * @param bytes the written bytes
+	 * @return the Users read
+	 * @throws IOException
+	 */
+	private static List<User> read(byte[] bytes) throws IOException {
+		ArrayList<User> users = new ArrayList<User>();
+		LibraryCodec.read(new ByteArrayInputStream(bytes), users);
+		return users;
+	}
+}
@@ -0,0 +1,155 @@
+package model;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the Album operations over a synthetic library. An owned Album answers through
+ * its User's registry, TagIndex and TimeIndex limited to its members, an Album with no owner
+ * scans its Photos, so both are measured; TagIndexBench measures the index alone. Searches
+ * return their result so it is not optimized away
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlbumBench {
+	/** Photos in the Album */
+	@Param({ "1000", "100000" })
+	public int photos;
+	/** whether the Album belongs to a User */
+	@Param({ "true", "false" })
+	public boolean owned;
+
+	/** the Album searched */
+	private Album album;
+	/** a Photo held by the Album */
+	private Photo held;
+	/** a Photo the Album does not hold */
+	private Photo missing;
+	/** the Tags searched on */
+	private Tag x, y;
+	/** bounds of a date search finding a tenth of the Album */
+	private Calendar start, end;
+
+	/**
+	 * Builds the library
+	 */
+	@Setup(Level.Trial)
+	public void build() {
+		if (owned) {
+			album = Libraries.user("bench", 1, photos, 1).getAlbum("album 0");
+		} else {
+			album = new Album("album 0");
+			for (Photo ph : Libraries.photos(photos, 1)) {
+				album.addPhoto(ph);
+			}
+		}
+		int mid = photos / 2;
+		held = album.getPhoto("/library/" + (mid / 1000) + "/IMG_" + mid + ".jpg");
+		missing = Libraries.photos(1, 2)[0];
+		missing.address = "/elsewhere/IMG_0.jpg";
+		x = Libraries.tag(0, 0);
+		y = Libraries.tag(1, 0);
+		start = Calendar.getInstance();
+		start.setTimeInMillis(Libraries.START + (photos * 4L / 10) * Libraries.STEP);
+		end = Calendar.getInstance();
+		end.setTimeInMillis(Libraries.START + (photos * 5L / 10) * Libraries.STEP);
+	}
+
+	@Benchmark
+	public boolean containsHit() {
+		return album.contains(held);
+	}
+
+	@Benchmark
+	public boolean containsMiss() {
+		return album.contains(missing);
+	}
+
+	@Benchmark
+	public boolean containsAddress() {
+		return album.contains(held.address);
+	}
+
+	@Benchmark
+	public Album searchTag() {
+		return album.searchTag(x);
+	}
+
+	@Benchmark
+	public Album searchConjunctive() {
+		return album.searchConjunctive(x, y);
+	}
+
+	@Benchmark
+	public Album searchDisjunctive() {
+		return album.searchDisjunctive(x, y);
+	}
+
+	@Benchmark
+	public Album searchDate() {
+		return album.searchDate(start, end);
+	}
+
+	/**
+	 * Fills an Album one Photo at a time. Each invocation starts from an empty Album, and from
+	 * an empty User when the Album is owned
+	 * @author Jason Mooney (jcm370)
+	 * @author Crystal Zhang (cz298)
+	 *
+	 */
+	@State(Scope.Thread)
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public static class Fill {
+		/** Photos added */
+		@Param({ "1000", "100000" })
+		public int photos;
+		/** whether the Album belongs to a User */
+		@Param({ "true", "false" })
+		public boolean owned;
+
+		/** the Photos added */
+		private Photo[] added;
+		/** the Album filled */
+		private Album album;
+
+		/**
+		 * Builds the Photos once
+		 */
+		@Setup(Level.Trial)
+		public void build() {
+			added = Libraries.photos(photos, 1);
+		}
+
+		/**
+		 * Starts each fill from an empty Album
+		 */
+		@Setup(Level.Invocation)
+		public void empty() {
+			album = new Album("album 0");
+			if (owned) new User("bench").addAlbum(album);
+		}
+
+		@Benchmark
+		public Album addPhoto() {
+			for (Photo ph : added) {
+				album.addPhoto(ph);
+			}
+			return album;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * Builds synthetic libraries for the benchmarks. Photos are spaced an hour apart from
+ * 01/01/2000 and carry one to three Tags drawn from a small vocabulary, so tag searches find a
+ * few percent of an Album and date searches find any fraction asked for. The same seed always
+ * builds the same library
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Libraries {
+	/** names of the generated Tags */
+	public static final String[] KEYS = { "person", "place", "event" };
+	/** values of each generated Tag name */
+	public static final int VALUES = 20;
+	/** time of the first Photo, 01/01/2000 00:00 UTC */
+	public static final long START = 946684800000L;
+	/** time between two Photos */
+	public static final long STEP = 3600000L;
+
+	/**
+	 * Builds Photos held by no Album
+	 * @param count number of Photos
+	 * @param seed seed of the Tags drawn
+	 * @return the Photos, oldest first
+	 */
+	public static Photo[] photos(int count, long seed) {
+		Random rnd = new Random(seed);
+		Photo[] photos = new Photo[count];
+		for (int i = 0; i < count; i++) {
+			Calendar t = Calendar.getInstance();
+			t.setTimeInMillis(START + i * STEP);
+			Photo x = new Photo("/library/" + (i / 1000) + "/IMG_" + i + ".jpg", t);
+			x.caption = "photo " + i;
+			x.width = 4000;
+			x.height = 3000;
+			x.orientation = ImageMetadata.UPRIGHT;
+			int tags = 1 + rnd.nextInt(3);
+			for (int k = 0; k < tags; k++) {
+				Tag tg = tag(rnd.nextInt(KEYS.length), rnd.nextInt(VALUES));
+				if (!x.hasTag(tg)) x.tags.add(tg);
+			}
+			photos[i] = x;
+		}
+		return photos;
+	}
+
+	/**
+	 * Builds a User whose Photos are dealt round the Albums, with every tenth Photo also held
+	 * by the first Album
+	 * @param name name of the User
+	 * @param albums number of Albums
+	 * @param count number of Photos
+	 * @param seed seed of the Tags drawn
+	 * @return the User, with its indexes built
+	 */
+	public static User user(String name, int albums, int count, long seed) {
+		User us = new User(name);
+		Photo[] photos = photos(count, seed);
+		for (int a = 0; a < albums; a++) {
+			Album ab = new Album("album " + a);
+			for (int i = 0; i < count; i++) {
+				if (i % albums == a || (a == 0 && i % 10 == 0)) ab.photos.add(photos[i]);
+			}
+			us.addAlbum(ab);
+		}
+		return us;
+	}
+
+	/**
+	 * Returns a Tag of the generated vocabulary
+	 * @param key index of the Tag name
+	 * @param value index of the Tag value
+	 * @return the Tag
+	 */
+	public static Tag tag(int key, int value) {
+		return Tag.of(KEYS[key], "v" + value);
+	}
+}
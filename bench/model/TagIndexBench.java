@@ -0,0 +1,66 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of tag search over a whole User through its TagIndex, the path the search
+ * screen and the stores' queryTags take. The ids are measured apart from turning them back
+ * into Photos, so a regression can be told to be in the postings or in the resolving
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TagIndexBench {
+	/** Photos of the User */
+	@Param({ "1000", "100000" })
+	public int photos;
+
+	/** index of the User */
+	private TagIndex index;
+	/** two Tags of the generated vocabulary, of different names */
+	private List<Tag> pair;
+
+	/**
+	 * Builds the User
+	 */
+	@Setup(Level.Trial)
+	public void build() {
+		index = Libraries.user("bench", 10, photos, 1).getTagIndex();
+		pair = Arrays.asList(Libraries.tag(0, 0), Libraries.tag(1, 0));
+	}
+
+	@Benchmark
+	public IntBitmap matchAll() {
+		return index.matchAll(pair);
+	}
+
+	@Benchmark
+	public IntBitmap matchAny() {
+		return index.matchAny(pair);
+	}
+
+	@Benchmark
+	public List<Photo> searchAll() {
+		return index.searchAll(pair);
+	}
+
+	@Benchmark
+	public List<Photo> searchAny() {
+		return index.searchAny(pair);
+	}
+}
@@ -0,0 +1,56 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of looking up a User's Albums by name, for Albums found and not found
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserBench {
+	/** Albums of the User */
+	@Param({ "10", "1000" })
+	public int albums;
+
+	/** the User */
+	private User user;
+	/** name of an Album of the User */
+	private String hit;
+	/** name no Album of the User has */
+	private String miss;
+
+	/**
+	 * Builds the User, with ten Photos to each Album
+	 */
+	@Setup(Level.Trial)
+	public void build() {
+		user = Libraries.user("bench", albums, albums * 10, 1);
+		// names built at run time, as those typed by the user would be
+		hit = new StringBuilder("album ").append(albums / 2).toString();
+		miss = new StringBuilder("album ").append(albums).toString();
+	}
+
+	@Benchmark
+	public Album getAlbumHit() {
+		return user.getAlbum(hit);
+	}
+
+	@Benchmark
+	public Album getAlbumMiss() {
+		return user.getAlbum(miss);
+	}
+}
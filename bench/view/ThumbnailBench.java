@@ -0,0 +1,89 @@
+package view;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of decoding a thumbnail through ImageIO, reading the whole image as before the
+ * ThumbnailLoader and subsampled as the ThumbnailLoader does now. The image is generated into
+ * a temporary file, a gradient with noise over it so it compresses like a photo
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ThumbnailBench {
+	/** longest side of the image */
+	@Param({ "1024", "4000" })
+	public int side;
+	/** format the image is written in */
+	@Param({ "jpg", "png" })
+	public String format;
+
+	/** the image file */
+	private File file;
+
+	/**
+	 * Writes the image
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void build() throws IOException {
+		int w = side;
+		int h = side * 3 / 4;
+		BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = img.createGraphics();
+		try {
+			g.setPaint(new GradientPaint(0, 0, Color.ORANGE, w, h, Color.BLUE));
+			g.fillRect(0, 0, w, h);
+		} finally {
+			g.dispose();
+		}
+		Random rnd = new Random(1);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				img.setRGB(x, y, img.getRGB(x, y) ^ rnd.nextInt(8) * 0x010101);
+			}
+		}
+		file = File.createTempFile("bench", "." + format);
+		if (!ImageIO.write(img, format, file)) throw new IOException("No writer for " + format);
+	}
+
+	/**
+	 * Deletes the image
+	 */
+	@TearDown(Level.Trial)
+	public void delete() {
+		if (file != null) file.delete();
+	}
+
+	@Benchmark
+	public BufferedImage decodeFull() throws IOException {
+		return ImageIO.read(file);
+	}
+
+	@Benchmark
+	public BufferedImage decodeThumbnail() throws IOException {
+		return ThumbnailLoader.decode(file, ThumbnailGrid.THUMB_SIZE);
+	}
+}
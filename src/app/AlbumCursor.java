@@ -0,0 +1,50 @@
+package app;
+
+import java.io.IOException;
+import java.util.List;
+import model.PageCursor;
+import model.Photo;
+
+/**
+ * Pages through the Photos of one Album in a PhotoStore, in Album order
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class AlbumCursor implements PageCursor<Photo> {
+	/** store holding the Album */
+	private final PhotoStore store;
+	/** name of the User owning the Album */
+	private final String user;
+	/** name of the Album */
+	private final String album;
+
+	/**
+	 * Constructor for a cursor over the given Album
+	 * @param store the store
+	 * @param user name of the User owning the Album
+	 * @param album name of the Album
+	 */
+	public AlbumCursor(PhotoStore store, String user, String album) {
+		this.store = store;
+		this.user = user;
+		this.album = album;
+	}
+
+	/**
+	 * Counts the Photos of the Album
+	 */
+	@Override
+	public int size() throws IOException {
+		return store.countPhotos(user, album);
+	}
+
+	/**
+	 * Reads one page of the Album through PhotoStore.pagePhotos
+	 */
+	@Override
+	public List<Photo> page(int offset, int limit) throws IOException {
+		return store.pagePhotos(user, album, offset, limit);
+	}
+}
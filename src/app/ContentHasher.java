@@ -0,0 +1,233 @@
+package app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import model.PhotoRegistry;
+
+/**
+ * SHA-256 of the content of image files, so copies of a file at different paths can be told
+ * to be the same image. A file is read through memory mapped windows, one window at a time,
+ * and many files are hashed at once on the fork-join pool. Hashes are kept in a file of their
+ * own together with the length and lastModified of the file they were computed from; a
+ * lookup for a file whose length or time changed since finds nothing, and the file is hashed
+ * again. The cache is written on close
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class ContentHasher implements Closeable {
+	/** marks the start of the cache file */
+	private static final int MAGIC = 0x48415348;
+	/** version of the cache file layout */
+	private static final int VERSION = 1;
+	/** bytes mapped at a time */
+	private static final long WINDOW = 16L << 20;
+
+	/**
+	 * A hash and the state of the file it was computed from
+	 */
+	private static final class Entry {
+		/** the file's length */
+		final long size;
+		/** the file's lastModified */
+		final long mtime;
+		/** the hash, in hex */
+		final String hash;
+
+		Entry(long size, long mtime, String hash) {
+			this.size = size;
+			this.mtime = mtime;
+			this.hash = hash;
+		}
+	}
+
+	/** file the cache is kept in */
+	private final File file;
+	/** hashes by canonical path */
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	/** files hashed since the cache was opened */
+	private final AtomicLong hashed = new AtomicLong();
+	/** whether entries changed since the cache was read */
+	private volatile boolean dirty;
+
+	/**
+	 * Opens the cache kept in the given file, starting empty if it is missing or damaged
+	 * @param file the file
+	 */
+	public ContentHasher(File file) {
+		this.file = file;
+		if (!file.isFile()) return;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+			int count = in.readInt();
+			HashMap<String, Entry> read = new HashMap<String, Entry>();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long mtime = in.readLong();
+				read.put(path, new Entry(size, mtime, in.readUTF()));
+			}
+			entries.putAll(read);
+		} catch (IOException e) {
+			// a damaged cache only costs hashing the files again
+		}
+	}
+
+	/**
+	 * Returns the cached hash of a file without reading it
+	 * @param address the file address
+	 * @return the hash, or null if the file was not hashed since it last changed
+	 */
+	public String cached(String address) {
+		File f = new File(address);
+		Entry e = entries.get(PhotoRegistry.canonical(address));
+		if (e == null || e.size != f.length() || e.mtime != f.lastModified()) return null;
+		return e.hash;
+	}
+
+	/**
+	 * Returns the hash of a file, reading it unless the cached hash is current. May be called
+	 * from any thread
+	 * @param address the file address
+	 * @return the hash, in hex
+	 * @throws IOException if the file cannot be read
+	 */
+	public String hash(String address) throws IOException {
+		String path = PhotoRegistry.canonical(address);
+		File f = new File(path);
+		long size = f.length();
+		long mtime = f.lastModified();
+		Entry e = entries.get(path);
+		if (e != null && e.size == size && e.mtime == mtime) return e.hash;
+		if (!f.isFile()) throw new IOException("Cannot read " + address);
+
+		MessageDigest digest = digest();
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			long length = ch.size();
+			for (long pos = 0; pos < length; pos += WINDOW) {
+				MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, length - pos));
+				digest.update(window);
+			}
+		}
+		String hash = hex(digest.digest());
+		// a file changed while it was read is hashed again next time
+		if (f.length() == size && f.lastModified() == mtime) {
+			entries.put(path, new Entry(size, mtime, hash));
+			dirty = true;
+		}
+		hashed.incrementAndGet();
+		return hash;
+	}
+
+	/**
+	 * Hashes many files at once on the fork-join pool, leaving out those that cannot be read
+	 * @param addresses the file addresses
+	 * @return the hashes by address
+	 */
+	public Map<String, String> hashAll(Collection<String> addresses) {
+		ConcurrentHashMap<String, String> hashes = new ConcurrentHashMap<String, String>();
+		addresses.parallelStream().forEach(address -> {
+			try {
+				hashes.put(address, hash(address));
+			} catch (IOException e) {
+				// a file that cannot be read has no content to compare
+			}
+		});
+		return hashes;
+	}
+
+	/**
+	 * Returns the number of files read since the cache was opened
+	 * @return the count
+	 */
+	public long hashed() {
+		return hashed.get();
+	}
+
+	/**
+	 * Returns the number of hashes cached
+	 * @return the count
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Writes the cache unless nothing changed
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!dirty) return;
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(tmp);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			HashMap<String, Entry> snapshot = new HashMap<String, Entry>(entries);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+				out.writeUTF(e.getKey());
+				out.writeLong(e.getValue().size);
+				out.writeLong(e.getValue().mtime);
+				out.writeUTF(e.getValue().hash);
+			}
+			out.flush();
+			stream.getChannel().force(true);
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		dirty = false;
+	}
+
+	/**
+	 * Creates the digest the hashes are computed with
+	 * @return a new SHA-256 digest
+	 */
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to provide SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes bytes as lower case hex
+	 * @param bytes the bytes
+	 * @return the hex string
+	 */
+	private static String hex(byte[] bytes) {
+		char[] out = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			out[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+			out[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+		}
+		return new String(out);
+	}
+}
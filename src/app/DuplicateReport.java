@@ -0,0 +1,127 @@
+package app;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import model.Photo;
+import model.PhotoRegistry;
+import model.User;
+
+/**
+ * The Photos of a User whose files have the same content under different paths. Only files
+ * sharing their length with another file can be copies, so files are first grouped by length
+ * and only those groups are hashed; a library without copies is mostly never read
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class DuplicateReport {
+	/** Photos sharing content, each group ordered by address, the most wasteful group first */
+	public final List<List<Photo>> groups;
+	/** bytes taken by every copy beyond the first of each group */
+	public final long wasted;
+
+	/**
+	 * Constructor for a report of the given groups
+	 * @param groups the groups
+	 * @param wasted bytes taken by the extra copies
+	 */
+	private DuplicateReport(List<List<Photo>> groups, long wasted) {
+		this.groups = groups;
+		this.wasted = wasted;
+	}
+
+	/**
+	 * Lists a User's Photos for a report. Must be called on the thread that owns the User
+	 * @param us the User
+	 * @return every Photo of the User, once
+	 */
+	public static List<Photo> photosOf(User us) {
+		ArrayList<Photo> photos = new ArrayList<Photo>();
+		PhotoRegistry registry = us.getRegistry();
+		for (int id = 0; id < registry.capacity(); id++) {
+			Photo x = registry.get(id);
+			if (x != null) photos.add(x);
+		}
+		return photos;
+	}
+
+	/**
+	 * Finds the copies among Photos. Only their addresses are read, so it may be called from
+	 * any thread; the hashing runs on the fork-join pool
+	 * @param list the Photos, such as those listed by photosOf
+	 * @param hasher the content hasher
+	 * @return the report
+	 */
+	public static DuplicateReport of(Collection<Photo> list, ContentHasher hasher) {
+		HashMap<String, Photo> photos = new HashMap<String, Photo>();
+		for (Photo x : list) {
+			photos.put(x.address, x);
+		}
+		HashMap<String, Long> sizes = new HashMap<String, Long>();
+		Map<String, String> hashed = twins(photos.keySet(), sizes, hasher);
+
+		HashMap<String, List<Photo>> byHash = new HashMap<String, List<Photo>>();
+		for (Map.Entry<String, String> e : hashed.entrySet()) {
+			List<Photo> same = byHash.get(e.getValue());
+			if (same == null) byHash.put(e.getValue(), same = new ArrayList<Photo>());
+			same.add(photos.get(e.getKey()));
+		}
+		ArrayList<List<Photo>> groups = new ArrayList<List<Photo>>();
+		long wasted = 0;
+		for (List<Photo> same : byHash.values()) {
+			if (same.size() < 2) continue;
+			same.sort(Comparator.comparing((Photo x) -> x.address));
+			groups.add(same);
+			wasted += (same.size() - 1) * sizes.get(same.get(0).address);
+		}
+		groups.sort(Comparator.comparingLong((List<Photo> g) -> -(g.size() - 1) * sizes.get(g.get(0).address)));
+		return new DuplicateReport(groups, wasted);
+	}
+
+	/**
+	 * Hashes the files that share their length with another of the given files. May be called
+	 * from any thread
+	 * @param addresses the file addresses, each given once
+	 * @param sizes filled with the length of every file
+	 * @param hasher the content hasher
+	 * @return the hashes of the files that were hashed, by address
+	 */
+	static Map<String, String> twins(Collection<String> addresses, Map<String, Long> sizes, ContentHasher hasher) {
+		HashMap<Long, List<String>> bySize = new HashMap<Long, List<String>>();
+		for (String address : addresses) {
+			long size = new File(address).length();
+			if (size == 0) continue;
+			sizes.put(address, size);
+			List<String> same = bySize.get(size);
+			if (same == null) bySize.put(size, same = new ArrayList<String>());
+			same.add(address);
+		}
+		ArrayList<String> candidates = new ArrayList<String>();
+		for (List<String> same : bySize.values()) {
+			if (same.size() > 1) candidates.addAll(same);
+		}
+		return hasher.hashAll(candidates);
+	}
+
+	/**
+	 * Lists the groups, one per line
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (List<Photo> same : groups) {
+			sb.append(same.size()).append(" copies:");
+			for (Photo x : same) {
+				sb.append("\n    ").append(x.address);
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
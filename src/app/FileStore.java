@@ -0,0 +1,487 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import model.*;
+
+/**
+ * The default PhotoStore, keeping the library in files: a user directory with one shard per
+ * User in the LibraryCodec format, plus a journal of the changes made since the last checkpoint.
+ * Users are loaded on demand and every query runs over the loaded User's indexes in memory
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class FileStore implements PhotoStore {
+	/** number of journaled changes after which a new checkpoint is taken */
+	private static final int COMPACT_AFTER = 500;
+	/** milliseconds of changes gathered into one write, configurable with -Dphotos.flushWindow */
+	private static final long FLUSH_WINDOW = Long.getLong("photos.flushWindow", 250);
+	/** location of the single-file snapshot used before the library was sharded */
+	private final File data;
+	/** journal of changes made since the last checkpoint */
+	private final Journal journal;
+	/** background writer persisting the journal and shards */
+	private final WriteBehind writer;
+	/** files holding the user directory and shards */
+	private final ShardStore store;
+	/** names of all the application's users, mapped to the id of the shard holding each one */
+	private LinkedHashMap<String, Integer> directory = new LinkedHashMap<String, Integer>();
+	/** id the next new User's shard will get */
+	private int nextShard;
+	/** Users currently held in memory, keyed by name */
+	private HashMap<String, User> loaded = new HashMap<String, User>();
+	/** sequence number each loaded User's shard was read or last written at */
+	private HashMap<String, Long> stamps = new HashMap<String, Long>();
+	/** names of loaded Users changed since their shard was last written */
+	private HashSet<String> dirty = new HashSet<String>();
+	/** shards of removed Users, deleted at the next checkpoint */
+	private ArrayList<Integer> removed = new ArrayList<Integer>();
+	/** name of the User currently logged in, whose shard is never evicted */
+	private String active;
+	/** sequence number of the last journaled change contained in the user directory */
+	private long lsn;
+
+	/**
+	 * Constructor for a store keeping its files in the given folder
+	 * @param root folder holding users.dat, users.log and the library folder
+	 */
+	public FileStore(File root) {
+		data = new File(root, "users.dat");
+		journal = new Journal(new File(root, "users.log"));
+		writer = new WriteBehind(journal, FLUSH_WINDOW);
+		store = new ShardStore(new File(root, "library"), writer);
+	}
+
+	/**
+	 * Reads the user directory of the previous session and replays the changes journaled after
+	 * the last checkpoint, loading only the shards those changes touch. A library still stored
+	 * as a single users.dat file (in either the old serialized or the LibraryCodec format) is
+	 * split into shards on first load
+	 * @throws IOException
+	 */
+	@Override
+	public void open() throws IOException {
+		store.create();
+		boolean convert = false;
+		if (store.exists()) {
+			LibraryCodec.Directory dir = store.readDirectory();
+			directory = dir.shards;
+			nextShard = dir.nextShard;
+			lsn = dir.lsn;
+		}
+		else {
+			ArrayList<User> users = new ArrayList<User>();
+			try {
+				lsn = Migrator.isLegacy(data) ? Migrator.readLegacy(data, users) : LibraryCodec.read(data, users);
+			} catch (Exception e) {
+				users.clear();
+				users.add(stockUser());
+				lsn = 0;
+			}
+			for (User us : users) {
+				addUser(us);
+			}
+			convert = true;
+		}
+		int replayed = journal.replay(this);
+		writer.start();
+		if (convert || replayed > 0) checkpoint();
+		evictExcept(null);
+	}
+
+	/**
+	 * Generates the User every new library starts with, holding the stock images
+	 * @return the stock User
+	 */
+	static User stockUser() {
+		User stock = new User("stock");
+		Album stockAlbum = new Album("stock");
+
+		stockAlbum.addPhoto(new Photo("data/stock1.jpg"));
+		stockAlbum.addPhoto(new Photo("data/stock2.jpg"));
+		stockAlbum.addPhoto(new Photo("data/stock3.jpg"));
+		stockAlbum.addPhoto(new Photo("data/stock4.jpg"));
+		stockAlbum.addPhoto(new Photo("data/stock5.jpg"));
+		stock.addAlbum(stockAlbum);
+		return stock;
+	}
+
+	/**
+	 * Hands a checkpoint to the background writer: every changed shard is encoded in parallel
+	 * and written, followed by the user directory, and the journal is emptied
+	 * @throws IOException
+	 */
+	private void checkpoint() throws IOException {
+		final long stamp = writer.getLastLsn();
+		ArrayList<User> changed = new ArrayList<User>();
+		for (String name : dirty) {
+			changed.add(loaded.get(name));
+		}
+
+		Map<File, byte[]> shards;
+		try {
+			shards = changed.parallelStream().collect(Collectors.toMap(
+					us -> store.shardFile(directory.get(us.name)),
+					us -> {
+						try {
+							return LibraryCodec.encode(us, stamp);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		for (User us : changed) {
+			stamps.put(us.name, stamp);
+		}
+		dirty.clear();
+
+		for (int id : removed) {
+			writer.delete(store.shardFile(id));
+		}
+		removed.clear();
+
+		lsn = stamp;
+		writer.checkpoint(shards, store.directoryFile(),
+				LibraryCodec.encodeDirectory(stamp, nextShard, directory), stamp);
+	}
+
+	/**
+	 * Applies a change to the loaded Users and hands it to the background writer, taking a new
+	 * checkpoint once enough changes have accumulated. The change is encoded first, so one that
+	 * cannot be journaled is refused before any User is touched
+	 * @param m the change being made
+	 * @throws IOException if the change cannot be journaled or its User cannot be loaded
+	 */
+	@Override
+	public void apply(Mutation m) throws IOException {
+		byte[] record = Journal.encode(m);
+		try {
+			change(m);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.append(record);
+		markDirty(m);
+		if (writer.sinceSnapshot() >= COMPACT_AFTER) checkpoint();
+	}
+
+	/**
+	 * Applies the changes to the loaded Users and hands them to the background writer together,
+	 * so they are journaled in the same group, checking for a checkpoint once at the end. Every
+	 * change is encoded first, so none are made if one of them cannot be journaled
+	 * @param changes the changes being made
+	 * @throws IOException if a change cannot be journaled or its User cannot be loaded
+	 */
+	@Override
+	public void applyAll(List<Mutation> changes) throws IOException {
+		ArrayList<byte[]> records = new ArrayList<byte[]>(changes.size());
+		for (Mutation m : changes) {
+			records.add(Journal.encode(m));
+		}
+		try {
+			for (Mutation m : changes) {
+				change(m);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.append(records);
+		for (Mutation m : changes) {
+			markDirty(m);
+		}
+		if (writer.sinceSnapshot() >= COMPACT_AFTER) checkpoint();
+	}
+
+	/**
+	 * Applies a change to the directory or to the User it targets
+	 * @param m the change being made
+	 */
+	private void change(Mutation m) {
+		switch (m.kind) {
+		case ADD_USER:
+			if (!directory.containsKey(m.user)) addUser(new User(m.user));
+			break;
+		case REMOVE_USER:
+			removeUser(m.user);
+			break;
+		default:
+			m.applyTo(getUser(m.user));
+			break;
+		}
+	}
+
+	/**
+	 * Applies a journaled change while replaying, unless the shard it targets already contains it
+	 * @param seq sequence number of the change
+	 * @param m the change
+	 * @return whether the change was applied
+	 */
+	boolean replay(long seq, Mutation m) {
+		if (m.isUserLevel()) {
+			if (seq <= lsn) return false;
+			change(m);
+			markDirty(m);
+			if (m.kind == Mutation.Kind.ADD_USER) reloadShard(m.user, seq);
+			return true;
+		}
+		if (getUser(m.user) == null || seq <= stamps.get(m.user)) return false;
+		change(m);
+		markDirty(m);
+		return true;
+	}
+
+	/**
+	 * Swaps a User re-created by replay for its shard, if the shard was written after the User
+	 * was added (because it was evicted before the last checkpoint)
+	 * @param name name of the User
+	 * @param seq sequence number of the change that added the User
+	 */
+	private void reloadShard(String name, long seq) {
+		Integer id = directory.get(name);
+		if (id == null || !store.hasShard(id)) return;
+		try {
+			ShardStore.Shard shard = store.readShard(id);
+			if (shard.lsn < seq) return;
+			loaded.put(name, shard.user);
+			stamps.put(name, shard.lsn);
+			dirty.remove(name);
+		} catch (IOException e) {
+			// keep the empty User, the rest of the journal is replayed onto it
+		}
+	}
+
+	/**
+	 * Marks the shard changed by the given change as needing to be written
+	 * @param m the change that was made
+	 */
+	private void markDirty(Mutation m) {
+		if (m.kind != Mutation.Kind.REMOVE_USER && loaded.containsKey(m.user)) dirty.add(m.user);
+	}
+
+	/**
+	 * Starts a session for the given User, evicting every other User's shard from memory
+	 */
+	@Override
+	public void login(String name) throws IOException {
+		active = name;
+		evictExcept(name);
+	}
+
+	/**
+	 * Ends the current session, evicting every shard from memory
+	 */
+	@Override
+	public void logout() throws IOException {
+		active = null;
+		evictExcept(null);
+	}
+
+	/**
+	 * Drops every loaded User except the given one, handing changed shards to the writer first
+	 * @param keep name of the User kept in memory, or null
+	 * @throws IOException
+	 */
+	private void evictExcept(String keep) throws IOException {
+		long stamp = writer.getLastLsn();
+		Iterator<Map.Entry<String, User>> it = loaded.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, User> e = it.next();
+			String name = e.getKey();
+			if (name.equals(keep)) continue;
+			if (dirty.remove(name)) {
+				writer.write(store.shardFile(directory.get(name)), LibraryCodec.encode(e.getValue(), stamp));
+			}
+			stamps.remove(name);
+			it.remove();
+		}
+	}
+
+	/**
+	 * Blocks until the background writer has put every change on disk
+	 */
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	/**
+	 * Flushes every change, then stops the background writer
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	/**
+	 * Returns the sequence number of the last journaled change contained in the user directory
+	 * @return the last sequence number
+	 */
+	public long getLsn() {
+		return lsn;
+	}
+
+	/**
+	 * Returns the name of the User currently logged in
+	 * @return the active User's name, or null for the admin
+	 */
+	public String getActive() {
+		return active;
+	}
+
+	/**
+	 * Checks the directory for the given User without loading it
+	 */
+	@Override
+	public boolean containsUser(String name) {
+		return directory.containsKey(name);
+	}
+
+	/**
+	 * Returns the User names held in the directory
+	 */
+	@Override
+	public List<String> listUsers() {
+		return new ArrayList<String>(directory.keySet());
+	}
+
+	/**
+	 * Returns the given User, reading its shard if it is not loaded
+	 */
+	@Override
+	public User loadUser(String name) throws IOException {
+		try {
+			return getUser(name);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Returns the Albums of the loaded User
+	 */
+	@Override
+	public List<Album> listAlbums(String user) throws IOException {
+		User us = loadUser(user);
+		return us == null ? Collections.<Album>emptyList() : us.getAlbums();
+	}
+
+	/**
+	 * Returns a copy of one page of the loaded Album
+	 */
+	@Override
+	public List<Photo> pagePhotos(String user, String album, int offset, int limit) throws IOException {
+		User us = loadUser(user);
+		Album ab = us == null ? null : us.getAlbum(album);
+		if (ab == null || offset >= ab.photos.size()) return Collections.emptyList();
+		return new ArrayList<Photo>(ab.photos.subList(offset, (int) Math.min((long) offset + limit, ab.photos.size())));
+	}
+
+	/**
+	 * Returns the size of the loaded Album
+	 */
+	@Override
+	public int countPhotos(String user, String album) throws IOException {
+		User us = loadUser(user);
+		Album ab = us == null ? null : us.getAlbum(album);
+		return ab == null ? 0 : ab.photos.size();
+	}
+
+	/**
+	 * Answers a Tag search from the loaded User's TagIndex, sorted from the index's id order
+	 * into the order the database store gives
+	 */
+	@Override
+	public List<Photo> queryTags(String user, List<Tag> tags, boolean all) throws IOException {
+		User us = loadUser(user);
+		if (us == null) return new ArrayList<Photo>();
+		List<Photo> found = all ? us.getTagIndex().searchAll(tags) : us.getTagIndex().searchAny(tags);
+		found.sort(Comparator.comparingLong((Photo x) -> x.time.getTimeInMillis()).thenComparing(x -> x.address));
+		return found;
+	}
+
+	/**
+	 * Answers a date search from the loaded User's TimeIndex
+	 */
+	@Override
+	public List<Photo> queryDates(String user, Calendar start, Calendar end) throws IOException {
+		User us = loadUser(user);
+		if (us == null) return new ArrayList<Photo>();
+		return us.getTimeIndex().search(start, end);
+	}
+
+	/**
+	 * Runs a Query over the loaded User's indexes
+	 */
+	@Override
+	public List<Photo> query(String user, Query q) throws IOException {
+		User us = loadUser(user);
+		if (us == null) return new ArrayList<Photo>();
+		return q.run(us);
+	}
+
+	/**
+	 * Adds the given user to the directory as a loaded, dirty shard
+	 * @param newUser the new User
+	 */
+	private void addUser(User newUser) {
+		directory.put(newUser.name, nextShard++);
+		loaded.put(newUser.name, newUser);
+		stamps.put(newUser.name, lsn);
+		dirty.add(newUser.name);
+	}
+
+	/**
+	 * Removes the given user from the directory, deleting its shard at the next checkpoint
+	 * @param name name of the User being removed
+	 */
+	private void removeUser(String name) {
+		Integer id = directory.remove(name);
+		if (id == null) return;
+		removed.add(id);
+		loaded.remove(name);
+		stamps.remove(name);
+		dirty.remove(name);
+	}
+
+	/**
+	 * Returns an instance of the User based off the given username, loading its shard if needed
+	 * @param str the username being searched for
+	 * @return an instance of the User, or null if there is no such User
+	 */
+	private User getUser(String str) {
+		User us = loaded.get(str);
+		Integer id = directory.get(str);
+		if (us != null || id == null) return us;
+
+		long stamp = 0;
+		if (store.hasShard(id)) {
+			try {
+				ShardStore.Shard shard = store.readShard(id);
+				us = shard.user;
+				stamp = shard.lsn;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		else us = new User(str);
+		loaded.put(str, us);
+		stamps.put(str, stamp);
+		return us;
+	}
+}
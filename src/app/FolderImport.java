@@ -0,0 +1,272 @@
+package app;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Album;
+import model.ImageMetadata;
+import model.Photo;
+import model.PhotoRegistry;
+import model.User;
+
+/**
+ * Imports every image under a folder into an Album. The folder tree is walked on the
+ * fork-join pool, one task per directory. Each file is read with a single attribute call,
+ * which yields its type, size and modification time together. Files are kept if they are
+ * named like images, their header agrees by its magic bytes, and they have not been seen
+ * under another spelling of the same path. The header is read in the same task, so each Photo
+ * is dated by its capture date. The Photos found are then added to the Album with one
+ * PhotoStore.applyAll, so a run is persisted as a single batch however many files it brings
+ * in. Given the hashes computed by hashAhead, files whose content the User already holds under
+ * another path are not added again. The walk can be cancelled at any point, and reports how many files it
+ * has looked at and how many Photos it has found
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class FolderImport {
+	/** extensions of the accepted formats */
+	private static final String[] EXTENSIONS = { "png", "jpeg", "jpg", "gif", "bmp" };
+
+	/**
+	 * Lists one directory, forking a task for each subdirectory
+	 */
+	private final class Walk extends RecursiveTask<List<Photo>> {
+		/** serial ID for version */
+		private static final long serialVersionUID = 1L;
+		/** the directory */
+		private final Path dir;
+
+		Walk(Path dir) {
+			this.dir = dir;
+		}
+
+		@Override
+		protected List<Photo> compute() {
+			ArrayList<Photo> photos = new ArrayList<Photo>();
+			ArrayList<Walk> subdirs = new ArrayList<Walk>();
+			if (cancelled) return photos;
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+				for (Path p : entries) {
+					if (cancelled) break;
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException e) {
+						continue;
+					}
+					if (attrs.isDirectory()) {
+						Walk w = new Walk(p);
+						w.fork();
+						subdirs.add(w);
+						continue;
+					}
+					scanned.incrementAndGet();
+					if (!attrs.isRegularFile() || attrs.size() == 0 || !isImage(p.getFileName().toString())) continue;
+					String address = PhotoRegistry.canonical(p.toString());
+					if (!seen.add(address)) continue;
+					Calendar t = Calendar.getInstance();
+					t.setTimeInMillis(attrs.lastModifiedTime().toMillis());
+					// a file named like an image but holding something else is left out
+					ImageMetadata m = ImageMetadata.read(address);
+					if (m == null) continue;
+					Photo x = new Photo(address, t);
+					m.applyTo(x);
+					photos.add(x);
+					found.incrementAndGet();
+				}
+			} catch (IOException e) {
+				// an unreadable directory is skipped like an unreadable file
+			}
+			for (Walk w : subdirs) {
+				photos.addAll(w.join());
+			}
+			return photos;
+		}
+	}
+
+	/** top of the tree being imported */
+	private final Path root;
+	/** files looked at so far */
+	private final AtomicInteger scanned = new AtomicInteger();
+	/** Photos found so far */
+	private final AtomicInteger found = new AtomicInteger();
+	/** addresses found so far, so a file is only taken once */
+	private final Set<String> seen = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	/** whether cancel was called */
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor for an import of the given folder
+	 * @param root the folder
+	 */
+	public FolderImport(Path root) {
+		this.root = root;
+	}
+
+	/**
+	 * Checks whether a file name has the extension of an accepted format, in any case
+	 * @param name the file name
+	 * @return whether the file is PNG, JPEG, JPG, GIF or BMP by name
+	 */
+	public static boolean isImage(String name) {
+		int i = name.lastIndexOf('.');
+		if (i < 0) return false;
+		String extension = name.substring(i + 1).toLowerCase(Locale.ROOT);
+		for (String e : EXTENSIONS) {
+			if (e.equals(extension)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Walks the folder tree. May be called from any thread
+	 * @return the Photos found, ordered by address, or what was found before cancel was called
+	 */
+	public List<Photo> scan() {
+		List<Photo> photos = ForkJoinPool.commonPool().invoke(new Walk(root));
+		photos.sort(Comparator.comparing((Photo x) -> x.address));
+		return photos;
+	}
+
+	/**
+	 * Adds the Photos an Album does not hold yet, persisting them as one batch. Must be called
+	 * on the thread that owns the User
+	 * @param store the store holding the Album
+	 * @param us the User owning the Album
+	 * @param album the Album
+	 * @param photos Photos found by scan
+	 * @return the Album's instances of the Photos added, in order
+	 * @throws IOException
+	 */
+	public static List<Photo> commit(PhotoStore store, User us, Album album, List<Photo> photos) throws IOException {
+		ArrayList<Mutation> changes = new ArrayList<Mutation>();
+		ArrayList<String> added = new ArrayList<String>();
+		HashSet<String> queued = new HashSet<String>();
+		for (Photo x : photos) {
+			if (album.contains(x.address) || !queued.add(x.address)) continue;
+			changes.add(Mutation.addPhoto(us.name, album.name, x));
+			added.add(x.address);
+		}
+		if (changes.isEmpty()) return Collections.emptyList();
+		store.applyAll(changes);
+		ArrayList<Photo> result = new ArrayList<Photo>(added.size());
+		for (String address : added) {
+			Photo x = album.getPhoto(address);
+			if (x != null) result.add(x);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the Photos whose content the User does not hold yet, persisting them as one batch.
+	 * A file with the same content as one of the User's Photos adds that Photo to the Album
+	 * instead, sharing its caption and Tags, and of several copies among the files only the
+	 * first is added. Content is compared through the hashes computed by hashAhead, so no file
+	 * is read or looked at here; a Photo the User gained since is compared by address only.
+	 * Must be called on the thread that owns the User
+	 * @param store the store holding the Album
+	 * @param us the User owning the Album
+	 * @param album the Album
+	 * @param photos Photos found by scan
+	 * @param hashes hashes returned by hashAhead, or null to compare addresses only
+	 * @return the Album's instances of the Photos added, in order
+	 * @throws IOException
+	 */
+	public static List<Photo> commit(PhotoStore store, User us, Album album, List<Photo> photos,
+			Map<String, String> hashes) throws IOException {
+		if (hashes == null) return commit(store, us, album, photos);
+
+		// the User's own Photos come first, so a copy resolves to the Photo already held
+		HashMap<String, Photo> byHash = new HashMap<String, Photo>();
+		PhotoRegistry registry = us.getRegistry();
+		for (int id = 0; id < registry.capacity(); id++) {
+			Photo x = registry.get(id);
+			String h = x == null ? null : hashes.get(x.address);
+			if (h != null && !byHash.containsKey(h)) byHash.put(h, x);
+		}
+		ArrayList<Photo> unique = new ArrayList<Photo>(photos.size());
+		for (Photo x : photos) {
+			String h = hashes.get(x.address);
+			Photo twin = h == null ? null : byHash.get(h);
+			if (twin == null) {
+				if (h != null) byHash.put(h, x);
+				unique.add(x);
+			} else if (twin.address.equals(x.address) || twin.id >= 0) {
+				// the same file, or a copy of a Photo the User holds
+				unique.add(twin);
+			}
+			// otherwise a second copy among the files, dropped
+		}
+		return commit(store, us, album, unique);
+	}
+
+	/**
+	 * Hashes the files commit will compare: those among the found files and the User's whose
+	 * length matches another's. Reads and hashes files, so it is meant for a background thread;
+	 * may be called from any thread
+	 * @param photos Photos found by scan
+	 * @param held addresses of the User's Photos, taken on the thread that owns the User
+	 * @param hasher the content hasher
+	 * @return the hashes by address, to be handed to commit
+	 */
+	public static Map<String, String> hashAhead(List<Photo> photos, Collection<String> held, ContentHasher hasher) {
+		LinkedHashSet<String> all = new LinkedHashSet<String>();
+		for (Photo x : photos) {
+			all.add(x.address);
+		}
+		all.addAll(held);
+		return DuplicateReport.twins(all, new HashMap<String, Long>(), hasher);
+	}
+
+	/**
+	 * Stops the walk; scan returns what was found so far
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Checks whether cancel was called
+	 * @return whether the import was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns the number of files looked at so far
+	 * @return the count
+	 */
+	public int scanned() {
+		return scanned.get();
+	}
+
+	/**
+	 * Returns the number of Photos found so far
+	 * @return the count
+	 */
+	public int found() {
+		return found.get();
+	}
+}
@@ -0,0 +1,776 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import model.*;
+
+/**
+ * PhotoStore keeping the library in an embedded SQL database opened in-process through JDBC,
+ * so large libraries can be paged and queried on disk. Photo paths, times and Tag pairs are
+ * indexed. Only the logged in User is held in memory; paging and queries for any other User
+ * read straight from the database. The JDBC driver is not bundled: put one on the classpath
+ * (H2 by default) and point -Dphotos.jdbc.url at the database
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class JdbcStore implements PhotoStore {
+	/** statements creating the schema, safe to run against an existing database */
+	private static final String[] SCHEMA = {
+		"CREATE TABLE IF NOT EXISTS users (name VARCHAR(255) NOT NULL PRIMARY KEY, pos BIGINT NOT NULL)",
+		"CREATE TABLE IF NOT EXISTS albums (user_name VARCHAR(255) NOT NULL, name VARCHAR(255) NOT NULL, "
+				+ "pos BIGINT NOT NULL, PRIMARY KEY (user_name, name))",
+		"CREATE TABLE IF NOT EXISTS photos (user_name VARCHAR(255) NOT NULL, path VARCHAR(4096) NOT NULL, "
+				+ "taken BIGINT NOT NULL, caption VARCHAR(4096) NOT NULL, width INT DEFAULT 0 NOT NULL, "
+				+ "height INT DEFAULT 0 NOT NULL, orientation INT DEFAULT 0 NOT NULL, PRIMARY KEY (user_name, path))",
+		"ALTER TABLE photos ADD COLUMN IF NOT EXISTS width INT DEFAULT 0 NOT NULL",
+		"ALTER TABLE photos ADD COLUMN IF NOT EXISTS height INT DEFAULT 0 NOT NULL",
+		"ALTER TABLE photos ADD COLUMN IF NOT EXISTS orientation INT DEFAULT 0 NOT NULL",
+		"CREATE TABLE IF NOT EXISTS album_photos (user_name VARCHAR(255) NOT NULL, album VARCHAR(255) NOT NULL, "
+				+ "path VARCHAR(4096) NOT NULL, pos BIGINT NOT NULL, PRIMARY KEY (user_name, album, path))",
+		"CREATE TABLE IF NOT EXISTS tags (user_name VARCHAR(255) NOT NULL, path VARCHAR(4096) NOT NULL, "
+				+ "tname VARCHAR(255) NOT NULL, tvalue VARCHAR(255) NOT NULL, pos BIGINT NOT NULL, "
+				+ "PRIMARY KEY (user_name, path, tname, tvalue))",
+		"CREATE INDEX IF NOT EXISTS photos_path ON photos (path)",
+		"CREATE INDEX IF NOT EXISTS photos_taken ON photos (user_name, taken)",
+		"CREATE INDEX IF NOT EXISTS tags_pair ON tags (tname, tvalue, user_name)",
+		"CREATE INDEX IF NOT EXISTS tags_order ON tags (user_name, pos)",
+		"CREATE INDEX IF NOT EXISTS album_photos_order ON album_photos (user_name, album, pos)"
+	};
+	/** largest number of parameters bound in one IN list */
+	private static final int CHUNK = 500;
+	/** JDBC URL of the database */
+	private final String url;
+	/** connection held for the lifetime of the store */
+	private Connection conn;
+	/** Users handed out by loadUser, kept in step with every applied change */
+	private HashMap<String, User> loaded = new HashMap<String, User>();
+
+	/**
+	 * Constructor for a store backed by the database at the given JDBC URL
+	 * @param url JDBC URL of an embedded database, e.g. jdbc:h2:/path/to/photos
+	 */
+	public JdbcStore(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * Connects to the database and creates the schema, adding the stock User to an empty database.
+	 * Paths stored before they were made canonical are rewritten
+	 * @throws IOException if no driver accepts the URL or the schema cannot be created
+	 */
+	@Override
+	public void open() throws IOException {
+		try {
+			conn = DriverManager.getConnection(url);
+			conn.setAutoCommit(false);
+			try (Statement st = conn.createStatement()) {
+				for (String sql : SCHEMA) {
+					st.execute(sql);
+				}
+			}
+			canonicalize();
+			conn.commit();
+			if (listUsers().isEmpty()) insertUser(FileStore.stockUser());
+		} catch (SQLException e) {
+			throw new IOException("Cannot open " + url, e);
+		}
+	}
+
+	/**
+	 * Rewrites stored paths that are not canonical, so rows are keyed the way Mutations and
+	 * PhotoRegistry key Photos. A path whose canonical form is stored already for the same User
+	 * is merged into it: memberships and Tags the canonical path lacks move over, and the rest
+	 * of the rows are dropped
+	 * @throws SQLException
+	 */
+	private void canonicalize() throws SQLException {
+		ArrayList<String[]> stale = new ArrayList<String[]>();
+		try (ResultSet rs = query("SELECT user_name, path FROM photos")) {
+			while (rs.next()) {
+				String path = rs.getString(2);
+				String canon = PhotoRegistry.canonical(path);
+				if (!canon.equals(path)) stale.add(new String[] { rs.getString(1), path, canon });
+			}
+		}
+		for (String[] row : stale) {
+			String us = row[0];
+			String path = row[1];
+			String canon = row[2];
+			if (exists("SELECT 1 FROM photos WHERE user_name = ? AND path = ?", us, canon)) {
+				update("DELETE FROM photos WHERE user_name = ? AND path = ?", us, path);
+			} else {
+				update("UPDATE photos SET path = ? WHERE user_name = ? AND path = ?", canon, us, path);
+			}
+			update("DELETE FROM album_photos WHERE user_name = ? AND path = ? AND album IN "
+					+ "(SELECT a.album FROM album_photos a WHERE a.user_name = ? AND a.path = ?)", us, path, us, canon);
+			update("UPDATE album_photos SET path = ? WHERE user_name = ? AND path = ?", canon, us, path);
+			update("DELETE FROM tags WHERE user_name = ? AND path = ? AND EXISTS (SELECT 1 FROM tags t "
+					+ "WHERE t.user_name = tags.user_name AND t.path = ? AND t.tname = tags.tname AND t.tvalue = tags.tvalue)",
+					us, path, canon);
+			update("UPDATE tags SET path = ? WHERE user_name = ? AND path = ?", canon, us, path);
+		}
+	}
+
+	/**
+	 * Copies every User of another store into this one, replacing Users of the same name
+	 * @param source the store being copied
+	 * @throws IOException
+	 */
+	public void importFrom(PhotoStore source) throws IOException {
+		for (String name : source.listUsers()) {
+			User us = source.loadUser(name);
+			if (us == null) continue;
+			if (containsUser(name)) apply(Mutation.removeUser(name));
+			insertUser(us);
+			source.login(null);
+		}
+	}
+
+	/**
+	 * Inserts a whole User in one transaction
+	 * @param us the User being inserted
+	 * @throws IOException
+	 */
+	private void insertUser(User us) throws IOException {
+		try {
+			update("INSERT INTO users (name, pos) VALUES (?, ?)", us.name, nextPos("users", null, null));
+			long albumPos = 0;
+			LinkedHashMap<String, Photo> photos = new LinkedHashMap<String, Photo>();
+			try (PreparedStatement albums = conn.prepareStatement("INSERT INTO albums (user_name, name, pos) VALUES (?, ?, ?)");
+					PreparedStatement members = conn.prepareStatement(
+							"INSERT INTO album_photos (user_name, album, path, pos) VALUES (?, ?, ?, ?)")) {
+				for (Album ab : us.albums) {
+					bind(albums, us.name, ab.name, ++albumPos).addBatch();
+					long photoPos = 0;
+					for (Photo x : ab.photos) {
+						String path = PhotoRegistry.canonical(x.address);
+						photos.put(path, x);
+						bind(members, us.name, ab.name, path, ++photoPos).addBatch();
+					}
+				}
+				albums.executeBatch();
+				members.executeBatch();
+			}
+			try (PreparedStatement rows = conn.prepareStatement(
+							"INSERT INTO photos (user_name, path, taken, caption, width, height, orientation) VALUES (?, ?, ?, ?, ?, ?, ?)");
+					PreparedStatement tags = conn.prepareStatement(
+							"INSERT INTO tags (user_name, path, tname, tvalue, pos) VALUES (?, ?, ?, ?, ?)")) {
+				long tagPos = 0;
+				for (Map.Entry<String, Photo> e : photos.entrySet()) {
+					Photo x = e.getValue();
+					bind(rows, us.name, e.getKey(), x.time.getTimeInMillis(), x.caption == null ? "" : x.caption,
+							x.width, x.height, x.orientation).addBatch();
+					for (Tag tg : x.tags) {
+						bind(tags, us.name, e.getKey(), tg.tname, tg.tvalue, ++tagPos).addBatch();
+					}
+				}
+				rows.executeBatch();
+				tags.executeBatch();
+			}
+			conn.commit();
+		} catch (SQLException e) {
+			throw rollback(e);
+		}
+	}
+
+	/**
+	 * Runs the change against the database in one transaction, then applies it to the loaded User
+	 * @param m the change being made
+	 * @throws IOException
+	 */
+	@Override
+	public void apply(Mutation m) throws IOException {
+		try {
+			execute(m);
+			conn.commit();
+		} catch (SQLException e) {
+			throw rollback(e);
+		}
+		if (m.kind == Mutation.Kind.REMOVE_USER) loaded.remove(m.user);
+		else if (!m.isUserLevel()) m.applyTo(loaded.get(m.user));
+	}
+
+	/**
+	 * Runs all the changes against the database in one transaction, then applies them to the
+	 * loaded Users; if any fails, none of them is kept
+	 * @param changes the changes being made
+	 * @throws IOException
+	 */
+	@Override
+	public void applyAll(List<Mutation> changes) throws IOException {
+		try {
+			for (Mutation m : changes) {
+				execute(m);
+			}
+			conn.commit();
+		} catch (SQLException e) {
+			throw rollback(e);
+		}
+		for (Mutation m : changes) {
+			if (m.kind == Mutation.Kind.REMOVE_USER) loaded.remove(m.user);
+			else if (!m.isUserLevel()) m.applyTo(loaded.get(m.user));
+		}
+	}
+
+	/**
+	 * Issues the statements making the given change, skipping changes whose targets no longer exist
+	 * @param m the change being made
+	 * @throws SQLException
+	 */
+	private void execute(Mutation m) throws SQLException {
+		String us = m.user;
+		switch (m.kind) {
+		case ADD_USER:
+			if (!exists("SELECT 1 FROM users WHERE name = ?", us)) {
+				update("INSERT INTO users (name, pos) VALUES (?, ?)", us, nextPos("users", null, null));
+			}
+			return;
+		case REMOVE_USER:
+			update("DELETE FROM tags WHERE user_name = ?", us);
+			update("DELETE FROM album_photos WHERE user_name = ?", us);
+			update("DELETE FROM photos WHERE user_name = ?", us);
+			update("DELETE FROM albums WHERE user_name = ?", us);
+			update("DELETE FROM users WHERE name = ?", us);
+			return;
+		case ADD_ALBUM:
+			if (exists("SELECT 1 FROM users WHERE name = ?", us) && !hasAlbum(us, m.album)) {
+				update("INSERT INTO albums (user_name, name, pos) VALUES (?, ?, ?)", us, m.album, nextPos("albums", us, null));
+			}
+			return;
+		case SET_TIME:
+			update("UPDATE photos SET taken = ? WHERE user_name = ? AND path = ?", m.time, us, m.address);
+			return;
+		case SET_METADATA:
+			Photo meta = stamped(m);
+			update("UPDATE photos SET taken = ?, width = ?, height = ?, orientation = ? WHERE user_name = ? AND path = ?",
+					m.time, meta.width, meta.height, meta.orientation, us, m.address);
+			return;
+		default:
+			break;
+		}
+		if (!hasAlbum(us, m.album)) return;
+
+		switch (m.kind) {
+		case REMOVE_ALBUM:
+			update("DELETE FROM album_photos WHERE user_name = ? AND album = ?", us, m.album);
+			update("DELETE FROM albums WHERE user_name = ? AND name = ?", us, m.album);
+			collect(us);
+			return;
+		case RENAME_ALBUM:
+			if (hasAlbum(us, m.arg1)) return;
+			update("UPDATE albums SET name = ? WHERE user_name = ? AND name = ?", m.arg1, us, m.album);
+			update("UPDATE album_photos SET album = ? WHERE user_name = ? AND album = ?", m.arg1, us, m.album);
+			return;
+		case ADD_PHOTO:
+			if (inAlbum(us, m.album, m.address)) return;
+			if (!exists("SELECT 1 FROM photos WHERE user_name = ? AND path = ?", us, m.address)) {
+				Photo x = stamped(m);
+				update("INSERT INTO photos (user_name, path, taken, caption, width, height, orientation) VALUES (?, ?, ?, ?, ?, ?, ?)",
+						us, m.address, m.time, "", x.width, x.height, x.orientation);
+			}
+			addMember(us, m.album, m.address);
+			return;
+		default:
+			break;
+		}
+		if (!inAlbum(us, m.album, m.address)) return;
+
+		switch (m.kind) {
+		case REMOVE_PHOTO:
+			update("DELETE FROM album_photos WHERE user_name = ? AND album = ? AND path = ?", us, m.album, m.address);
+			collect(us);
+			break;
+		case COPY_PHOTO:
+		case MOVE_PHOTO:
+			if (!hasAlbum(us, m.arg1) || inAlbum(us, m.arg1, m.address)) break;
+			addMember(us, m.arg1, m.address);
+			if (m.kind == Mutation.Kind.MOVE_PHOTO) {
+				update("DELETE FROM album_photos WHERE user_name = ? AND album = ? AND path = ?", us, m.album, m.address);
+			}
+			break;
+		case SET_CAPTION:
+			update("UPDATE photos SET caption = ? WHERE user_name = ? AND path = ?", m.arg1, us, m.address);
+			break;
+		case ADD_TAG:
+			if (!exists("SELECT 1 FROM tags WHERE user_name = ? AND path = ? AND tname = ? AND tvalue = ?",
+					us, m.address, m.arg1, m.arg2)) {
+				update("INSERT INTO tags (user_name, path, tname, tvalue, pos) VALUES (?, ?, ?, ?, ?)",
+						us, m.address, m.arg1, m.arg2, nextPos("tags", us, null));
+			}
+			break;
+		case DELETE_TAG:
+			update("DELETE FROM tags WHERE user_name = ? AND path = ? AND tname = ? AND tvalue = ?",
+					us, m.address, m.arg1, m.arg2);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Appends a Photo to the end of an Album
+	 * @param us name of the User owning the Album
+	 * @param album name of the Album
+	 * @param path file address of the Photo
+	 * @throws SQLException
+	 */
+	private void addMember(String us, String album, String path) throws SQLException {
+		update("INSERT INTO album_photos (user_name, album, path, pos) VALUES (?, ?, ?, ?)",
+				us, album, path, nextPos("album_photos", us, album));
+	}
+
+	/**
+	 * Deletes the Photos (and their Tags) of a User that no Album holds anymore
+	 * @param us name of the User
+	 * @throws SQLException
+	 */
+	private void collect(String us) throws SQLException {
+		String orphan = " WHERE user_name = ? AND NOT EXISTS (SELECT 1 FROM album_photos ap "
+				+ "WHERE ap.user_name = %s.user_name AND ap.path = %s.path)";
+		update("DELETE FROM tags" + String.format(orphan, "tags", "tags"), us);
+		update("DELETE FROM photos" + String.format(orphan, "photos", "photos"), us);
+	}
+
+	/**
+	 * Starts a session for the given User, dropping every other User from memory
+	 */
+	@Override
+	public void login(String name) {
+		loaded.keySet().retainAll(Collections.singleton(name));
+	}
+
+	/**
+	 * Ends the current session, dropping every User from memory
+	 */
+	@Override
+	public void logout() {
+		loaded.clear();
+	}
+
+	/**
+	 * Does nothing, every change is committed before apply returns
+	 */
+	@Override
+	public void flush() { }
+
+	/**
+	 * Closes the connection to the database
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		if (conn == null) return;
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		} finally {
+			conn = null;
+		}
+	}
+
+	/**
+	 * Returns the User names stored in the database
+	 * @throws IOException
+	 */
+	@Override
+	public List<String> listUsers() throws IOException {
+		ArrayList<String> names = new ArrayList<String>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT name FROM users ORDER BY pos");
+				ResultSet rs = ps.executeQuery()) {
+			while (rs.next()) names.add(rs.getString(1));
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+		return names;
+	}
+
+	/**
+	 * Checks the users table for the given User
+	 * @throws IOException
+	 */
+	@Override
+	public boolean containsUser(String name) throws IOException {
+		try {
+			return exists("SELECT 1 FROM users WHERE name = ?", name);
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Returns the given User, reading all of its rows if it is not loaded
+	 * @throws IOException
+	 */
+	@Override
+	public User loadUser(String name) throws IOException {
+		User us = loaded.get(name);
+		if (us != null) return us;
+		if (!containsUser(name)) return null;
+
+		us = new User(name);
+		LinkedHashMap<String, Album> albums = new LinkedHashMap<String, Album>();
+		HashMap<String, Photo> photos = new HashMap<String, Photo>();
+		try {
+			try (ResultSet rs = query("SELECT name FROM albums WHERE user_name = ? ORDER BY pos", name)) {
+				while (rs.next()) {
+					Album ab = new Album(rs.getString(1));
+					albums.put(ab.name, ab);
+				}
+			}
+			try (ResultSet rs = query("SELECT path, taken, caption, width, height, orientation FROM photos WHERE user_name = ?", name)) {
+				while (rs.next()) {
+					Photo x = photo(rs);
+					photos.put(x.address, x);
+				}
+			}
+			try (ResultSet rs = query("SELECT path, tname, tvalue FROM tags WHERE user_name = ? ORDER BY pos", name)) {
+				while (rs.next()) {
+					Photo x = photos.get(rs.getString(1));
+					if (x != null) x.tags.add(Tag.of(rs.getString(2), rs.getString(3)));
+				}
+			}
+			try (ResultSet rs = query("SELECT album, path FROM album_photos WHERE user_name = ? ORDER BY album, pos", name)) {
+				while (rs.next()) {
+					Album ab = albums.get(rs.getString(1));
+					Photo x = photos.get(rs.getString(2));
+					if (ab != null && x != null) ab.photos.add(x);
+				}
+			}
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+		for (Album ab : albums.values()) {
+			us.addAlbum(ab);
+		}
+		loaded.put(name, us);
+		return us;
+	}
+
+	/**
+	 * Returns the Albums of the given User, loading it if needed
+	 * @throws IOException
+	 */
+	@Override
+	public List<Album> listAlbums(String user) throws IOException {
+		User us = loadUser(user);
+		return us == null ? Collections.<Album>emptyList() : us.getAlbums();
+	}
+
+	/**
+	 * Reads one page of an Album with LIMIT/OFFSET, in Album order
+	 * @throws IOException
+	 */
+	@Override
+	public List<Photo> pagePhotos(String user, String album, int offset, int limit) throws IOException {
+		try {
+			return resolve(user, query("SELECT p.path, p.taken, p.caption, p.width, p.height, p.orientation FROM album_photos ap "
+					+ "JOIN photos p ON p.user_name = ap.user_name AND p.path = ap.path "
+					+ "WHERE ap.user_name = ? AND ap.album = ? ORDER BY ap.pos LIMIT ? OFFSET ?",
+					user, album, limit, offset));
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Counts an Album's rows through the (user_name, album, pos) index
+	 * @throws IOException
+	 */
+	@Override
+	public int countPhotos(String user, String album) throws IOException {
+		try (ResultSet rs = query("SELECT COUNT(*) FROM album_photos WHERE user_name = ? AND album = ?", user, album)) {
+			return rs.next() ? rs.getInt(1) : 0;
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Finds the Photos carrying the given Tags through the (name, value) index, oldest first
+	 * and by path among Photos taken at the same time
+	 * @throws IOException
+	 */
+	@Override
+	public List<Photo> queryTags(String user, List<Tag> tags, boolean all) throws IOException {
+		LinkedHashSet<List<String>> pairs = new LinkedHashSet<List<String>>();
+		for (Tag tg : tags) {
+			pairs.add(Arrays.asList(tg.tname, tg.tvalue));
+		}
+		if (pairs.isEmpty()) return new ArrayList<Photo>();
+
+		StringBuilder sql = new StringBuilder("SELECT p.path, p.taken, p.caption, p.width, p.height, p.orientation FROM photos p WHERE p.user_name = ? "
+				+ "AND p.path IN (SELECT t.path FROM tags t WHERE t.user_name = ? AND (");
+		ArrayList<Object> args = new ArrayList<Object>();
+		args.add(user);
+		args.add(user);
+		String or = "";
+		for (List<String> pair : pairs) {
+			sql.append(or).append("(t.tname = ? AND t.tvalue = ?)");
+			args.addAll(pair);
+			or = " OR ";
+		}
+		sql.append(") GROUP BY t.path");
+		if (all) {
+			sql.append(" HAVING COUNT(*) = ?");
+			args.add(pairs.size());
+		}
+		sql.append(") ORDER BY p.taken, p.path");
+		try {
+			return resolve(user, query(sql.toString(), args.toArray()));
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Finds the Photos taken between two dates through the time index, oldest first
+	 * @throws IOException
+	 */
+	@Override
+	public List<Photo> queryDates(String user, Calendar start, Calendar end) throws IOException {
+		try {
+			return resolve(user, query("SELECT path, taken, caption, width, height, orientation FROM photos WHERE user_name = ? "
+					+ "AND taken > ? AND taken < ? ORDER BY taken",
+					user, start.getTimeInMillis(), end.getTimeInMillis()));
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Runs a Query over the in-memory indexes of the User, loading it if needed, so the
+	 * planner's estimates and profile are the same as with the file store
+	 * @throws IOException
+	 */
+	@Override
+	public List<Photo> query(String user, Query q) throws IOException {
+		User us = loadUser(user);
+		if (us == null) return new ArrayList<Photo>();
+		return q.run(us);
+	}
+
+	/**
+	 * Turns rows of (path, taken, caption, width, height, orientation) into Photos: the loaded
+	 * instances when the User is in memory, so results can be added to its Albums, otherwise
+	 * new Photos with their Tags read
+	 * @param user name of the User owning the Photos
+	 * @param rs the rows, closed once read
+	 * @return the Photos in row order
+	 * @throws SQLException
+	 */
+	private List<Photo> resolve(String user, ResultSet rs) throws SQLException {
+		ArrayList<Photo> found = new ArrayList<Photo>();
+		User us = loaded.get(user);
+		LinkedHashMap<String, Photo> fresh = new LinkedHashMap<String, Photo>();
+		try (ResultSet rows = rs) {
+			while (rows.next()) {
+				Photo x = us == null ? null : us.getRegistry().get(rows.getString(1));
+				if (x == null) {
+					x = photo(rows);
+					fresh.put(x.address, x);
+				}
+				found.add(x);
+			}
+		}
+
+		ArrayList<String> paths = new ArrayList<String>(fresh.keySet());
+		for (int i = 0; i < paths.size(); i += CHUNK) {
+			List<String> chunk = paths.subList(i, Math.min(i + CHUNK, paths.size()));
+			StringBuilder sql = new StringBuilder("SELECT path, tname, tvalue FROM tags WHERE user_name = ? AND path IN (");
+			for (int j = 0; j < chunk.size(); j++) {
+				sql.append(j == 0 ? "?" : ", ?");
+			}
+			sql.append(") ORDER BY pos");
+			ArrayList<Object> args = new ArrayList<Object>();
+			args.add(user);
+			args.addAll(chunk);
+			try (ResultSet tags = query(sql.toString(), args.toArray())) {
+				while (tags.next()) {
+					fresh.get(tags.getString(1)).tags.add(Tag.of(tags.getString(2), tags.getString(3)));
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Builds a Photo holding the size and orientation recorded with a change
+	 * @param m the change
+	 * @return the Photo, dated by the change
+	 */
+	private static Photo stamped(Mutation m) {
+		Calendar t = Calendar.getInstance();
+		t.setTimeInMillis(m.time);
+		Photo x = new Photo(m.address, t);
+		m.stamp(x);
+		return x;
+	}
+
+	/**
+	 * Builds a Photo from a row of (path, taken, caption, width, height, orientation)
+	 * @param rs the row
+	 * @return the Photo, without Tags
+	 * @throws SQLException
+	 */
+	private static Photo photo(ResultSet rs) throws SQLException {
+		Calendar t = Calendar.getInstance();
+		t.setTimeInMillis(rs.getLong(2));
+		Photo x = new Photo(rs.getString(1), t);
+		x.caption = rs.getString(3);
+		x.width = rs.getInt(4);
+		x.height = rs.getInt(5);
+		x.orientation = rs.getInt(6);
+		return x;
+	}
+
+	/**
+	 * Checks whether a User has an Album with the given name
+	 * @param us name of the User
+	 * @param album name of the Album
+	 * @return whether the Album exists
+	 * @throws SQLException
+	 */
+	private boolean hasAlbum(String us, String album) throws SQLException {
+		return exists("SELECT 1 FROM albums WHERE user_name = ? AND name = ?", us, album);
+	}
+
+	/**
+	 * Checks whether an Album holds the Photo with the given path
+	 * @param us name of the User owning the Album
+	 * @param album name of the Album
+	 * @param path file address of the Photo
+	 * @return whether the Album holds the Photo
+	 * @throws SQLException
+	 */
+	private boolean inAlbum(String us, String album, String path) throws SQLException {
+		return exists("SELECT 1 FROM album_photos WHERE user_name = ? AND album = ? AND path = ?", us, album, path);
+	}
+
+	/**
+	 * Returns the position after the last row of a table, optionally within one User and Album.
+	 * Within a User, MAX(pos) is read from the end of the tags_order or album_photos_order index
+	 * @param table the table
+	 * @param us name of the User, or null for the whole table
+	 * @param album name of the Album, or null for every Album
+	 * @return the next free position
+	 * @throws SQLException
+	 */
+	private long nextPos(String table, String us, String album) throws SQLException {
+		String sql = "SELECT COALESCE(MAX(pos), 0) + 1 FROM " + table;
+		ResultSet rs;
+		if (us == null) rs = query(sql);
+		else if (album == null) rs = query(sql + " WHERE user_name = ?", us);
+		else rs = query(sql + " WHERE user_name = ? AND album = ?", us, album);
+		try (ResultSet row = rs) {
+			row.next();
+			return row.getLong(1);
+		}
+	}
+
+	/**
+	 * Checks whether a query returns any row
+	 * @param sql the query
+	 * @param args values bound to its parameters
+	 * @return whether a row was found
+	 * @throws SQLException
+	 */
+	private boolean exists(String sql, Object... args) throws SQLException {
+		try (PreparedStatement ps = bind(conn.prepareStatement(sql), args); ResultSet rs = ps.executeQuery()) {
+			return rs.next();
+		}
+	}
+
+	/**
+	 * Runs a query; closing the returned ResultSet also closes its statement
+	 * @param sql the query
+	 * @param args values bound to its parameters
+	 * @return the rows
+	 * @throws SQLException
+	 */
+	private ResultSet query(String sql, Object... args) throws SQLException {
+		PreparedStatement ps = bind(conn.prepareStatement(sql), args);
+		ps.closeOnCompletion();
+		return ps.executeQuery();
+	}
+
+	/**
+	 * Runs an insert, update or delete
+	 * @param sql the statement
+	 * @param args values bound to its parameters
+	 * @throws SQLException
+	 */
+	private void update(String sql, Object... args) throws SQLException {
+		try (PreparedStatement ps = bind(conn.prepareStatement(sql), args)) {
+			ps.executeUpdate();
+		}
+	}
+
+	/**
+	 * Binds values to the parameters of a statement in order
+	 * @param ps the statement
+	 * @param args the values
+	 * @return the statement
+	 * @throws SQLException
+	 */
+	private static PreparedStatement bind(PreparedStatement ps, Object... args) throws SQLException {
+		for (int i = 0; i < args.length; i++) {
+			ps.setObject(i + 1, args[i]);
+		}
+		return ps;
+	}
+
+	/**
+	 * Rolls back the current transaction after a failed statement
+	 * @param e the failure
+	 * @return the failure to throw
+	 */
+	private IOException rollback(SQLException e) {
+		try {
+			conn.rollback();
+		} catch (SQLException r) {
+			e.addSuppressed(r);
+		}
+		return new IOException(e);
+	}
+
+	/**
+	 * Copies the file library in the given folder into the database at the given JDBC URL
+	 * @param args JDBC URL, then optionally the folder holding the file library (src/model by default)
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("usage: JdbcStore <jdbc url> [data folder]");
+			return;
+		}
+		FileStore source = new FileStore(new File(args.length > 1 ? args[1] : "src/model"));
+		JdbcStore target = new JdbcStore(args[0]);
+		source.open();
+		target.open();
+		try {
+			target.importFrom(source);
+		} finally {
+			target.close();
+			source.close();
+		}
+		System.out.println("Imported " + target.url);
+	}
+}
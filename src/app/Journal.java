@@ -0,0 +1,235 @@
+package app;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of Mutations made since the last snapshot of the library.
+ * Every record is framed as [length][crc32][sequence number][Mutation] so a
+ * record torn by a crash can be detected and cut off on the next startup.
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Journal {
+	/** bytes in a record frame before the payload */
+	private static final int HEADER = 8;
+	/** largest payload a record can hold, anything bigger is treated as corruption */
+	private static final int MAX_RECORD = 1 << 20;
+
+	/** file the journal is stored in */
+	private final File file;
+	/** open handle used for appending records */
+	private FileOutputStream out;
+	/** records waiting to be committed together */
+	private final ByteArrayOutputStream group = new ByteArrayOutputStream();
+	/** sequence number of the last record appended or replayed */
+	private long lastLsn;
+	/** number of records in the journal */
+	private int records;
+	/** number of records in the group waiting to be committed */
+	private int grouped;
+	/** length of the journal file up to the end of the last committed record */
+	private long committed;
+
+	/**
+	 * Constructor for a Journal stored in the given file
+	 * @param file the journal file
+	 */
+	public Journal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Applies every record to the given library that its shards do not already contain, then
+	 * cuts off a torn or corrupt tail so that new records are appended after the last good one
+	 * @param fs the library loaded from the last checkpoint
+	 * @return the number of records that were applied
+	 * @throws IOException
+	 */
+	public int replay(FileStore fs) throws IOException {
+		close();
+		group.reset();
+		lastLsn = fs.getLsn();
+		records = 0;
+		grouped = 0;
+		committed = 0;
+		if (!file.exists()) return 0;
+
+		byte[] data = Files.readAllBytes(file.toPath());
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		CRC32 crc = new CRC32();
+		int applied = 0;
+
+		while (buf.remaining() >= HEADER) {
+			int start = buf.position();
+			int length = buf.getInt();
+			int checksum = buf.getInt();
+			if (length < 8 || length > MAX_RECORD || length > buf.remaining()) {
+				buf.position(start);
+				break;
+			}
+			crc.reset();
+			crc.update(data, buf.position(), length);
+			if ((int) crc.getValue() != checksum) {
+				buf.position(start);
+				break;
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, buf.position(), length));
+			buf.position(buf.position() + length);
+			long lsn = in.readLong();
+			Mutation m;
+			try {
+				m = Mutation.read(in);
+			} catch (IOException e) {
+				buf.position(start);
+				break;
+			}
+
+			records++;
+			lastLsn = Math.max(lastLsn, lsn);
+			if (fs.replay(lsn, m)) applied++;
+		}
+
+		if (buf.position() < data.length) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(buf.position());
+			}
+		}
+		committed = buf.position();
+		return applied;
+	}
+
+	/**
+	 * Encodes a Mutation as the body of a record, so a change that cannot be journaled is
+	 * refused before it is made rather than when its group is written
+	 * @param m the change being recorded
+	 * @return the encoded change
+	 * @throws IOException if the record would be larger than replay accepts
+	 */
+	public static byte[] encode(Mutation m) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		m.write(out);
+		out.flush();
+		if (bytes.size() + 8 > MAX_RECORD) {
+			throw new IOException("Record of " + (bytes.size() + 8) + " bytes exceeds the journal limit of " + MAX_RECORD);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Adds a record for the given Mutation to the group waiting to be committed
+	 * @param lsn the sequence number assigned to the change
+	 * @param m the change being recorded
+	 * @throws IOException if the record is larger than replay accepts
+	 */
+	public void append(long lsn, Mutation m) throws IOException {
+		append(lsn, encode(m));
+	}
+
+	/**
+	 * Adds a record for a change already encoded to the group waiting to be committed
+	 * @param lsn the sequence number assigned to the change
+	 * @param change the change as returned by encode
+	 */
+	public void append(long lsn, byte[] change) {
+		ByteBuffer body = ByteBuffer.allocate(8 + change.length);
+		body.putLong(lsn).put(change);
+
+		CRC32 crc = new CRC32();
+		crc.update(body.array(), 0, body.capacity());
+		ByteBuffer frame = ByteBuffer.allocate(HEADER + body.capacity());
+		frame.putInt(body.capacity());
+		frame.putInt((int) crc.getValue());
+		frame.put(body.array());
+
+		group.write(frame.array(), 0, frame.capacity());
+		records++;
+		grouped++;
+		lastLsn = lsn;
+	}
+
+	/**
+	 * Writes every record added since the last commit with a single write, then forces them to disk
+	 * @throws IOException
+	 */
+	public void commit() throws IOException {
+		if (group.size() == 0) return;
+		if (out == null) out = new FileOutputStream(file, true);
+		group.writeTo(out);
+		out.getChannel().force(false);
+		committed += group.size();
+		group.reset();
+		grouped = 0;
+	}
+
+	/**
+	 * Drops the records added since the last commit and cuts off any part of them that reached
+	 * the file, so the same changes can be appended again after a failed commit
+	 * @throws IOException
+	 */
+	public void abort() throws IOException {
+		records -= grouped;
+		grouped = 0;
+		group.reset();
+		close();
+		if (!file.exists()) return;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (raf.length() > committed) raf.setLength(committed);
+		}
+	}
+
+	/**
+	 * Empties the journal once a snapshot containing all of its records has been written
+	 * @throws IOException
+	 */
+	public void reset() throws IOException {
+		close();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+		}
+		group.reset();
+		records = 0;
+		grouped = 0;
+		committed = 0;
+	}
+
+	/**
+	 * Returns the sequence number of the last record in the journal
+	 * @return the last sequence number
+	 */
+	public long getLastLsn() {
+		return lastLsn;
+	}
+
+	/**
+	 * Returns how many records have accumulated since the last snapshot
+	 * @return the number of records in the journal
+	 */
+	public int size() {
+		return records;
+	}
+
+	/**
+	 * Closes the handle used for appending
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+}
@@ -0,0 +1,416 @@
+package app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import model.*;
+
+/**
+ * Compact binary format for the library, replacing default Java serialization.
+ * A file starts with the magic bytes "PHLB", the schema version and a flags byte,
+ * followed by the (optionally deflated) body. Strings are written once and then
+ * referenced by their index in a string table, and times are varint epoch millis.
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class LibraryCodec {
+	/** bytes every library or shard file starts with */
+	private static final byte[] MAGIC = {'P', 'H', 'L', 'B'};
+	/** bytes every user directory file starts with */
+	private static final byte[] DIRECTORY_MAGIC = {'P', 'H', 'L', 'D'};
+	/** schema version written by this codec; 2 added each Photo's width, height and orientation */
+	public static final int VERSION = 2;
+	/** flag marking a deflated body */
+	private static final int FLAG_DEFLATE = 1;
+	/** whether new files are deflated, configurable with -Dphotos.compress */
+	private static final boolean COMPRESS = !"false".equals(System.getProperty("photos.compress"));
+
+	/**
+	 * A user directory: every User's name and the id of the shard holding it
+	 */
+	public static class Directory {
+		/** User names mapped to shard ids, in directory order */
+		public final LinkedHashMap<String, Integer> shards;
+		/** id the next new User's shard will get */
+		public final int nextShard;
+		/** sequence number of the last journaled change contained in the directory */
+		public final long lsn;
+
+		Directory(LinkedHashMap<String, Integer> shards, int nextShard, long lsn) {
+			this.shards = shards;
+			this.nextShard = nextShard;
+			this.lsn = lsn;
+		}
+	}
+
+	/**
+	 * Writes a single User to a byte array, in the same format as a library holding one User
+	 * @param us the User being written
+	 * @param lsn sequence number of the last journaled change contained in the User
+	 * @return the encoded User
+	 * @throws IOException
+	 */
+	public static byte[] encode(User us, long lsn) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		write(lsn, Collections.singletonList(us), bytes, COMPRESS);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the given Users to a stream
+	 * @param lsn sequence number of the last journaled change contained in the Users
+	 * @param users the Users being written
+	 * @param out the stream being written to
+	 * @param compress whether the body is deflated
+	 * @throws IOException
+	 */
+	public static void write(long lsn, Collection<User> users, OutputStream out, boolean compress) throws IOException {
+		out.write(MAGIC);
+		writeVarint(out, VERSION);
+		out.write(compress ? FLAG_DEFLATE : 0);
+
+		DeflaterOutputStream deflater = null;
+		OutputStream body = out;
+		if (compress) {
+			deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), 8192);
+			body = deflater;
+		}
+		Encoder enc = new Encoder(new BufferedOutputStream(body, 8192));
+		enc.writeVarlong(lsn);
+		enc.writeVarint(users.size());
+		for (User us : users) {
+			enc.writeUser(us);
+		}
+		enc.out.flush();
+		if (deflater != null) deflater.finish();
+		out.flush();
+	}
+
+	/**
+	 * Reads the Users stored in the given file
+	 * @param file the file being read
+	 * @param users list the Users are added to
+	 * @return sequence number of the last journaled change contained in the Users
+	 * @throws IOException if the file is not in this format or is damaged
+	 */
+	public static long read(File file, List<User> users) throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file), 8192)) {
+			return read(in, users);
+		}
+	}
+
+	/**
+	 * Reads the Users stored in the given stream
+	 * @param in the stream being read
+	 * @param users list the Users are added to
+	 * @return sequence number of the last journaled change contained in the Users
+	 * @throws IOException if the stream is not in this format or is damaged
+	 */
+	public static long read(InputStream in, List<User> users) throws IOException {
+		for (byte b : MAGIC) {
+			if (in.read() != b) throw new IOException("Not a library file");
+		}
+		int version = (int) readVarlong(in);
+		if (version > VERSION) throw new IOException("Unsupported library version " + version);
+		int flags = in.read();
+		if (flags < 0) throw new EOFException();
+
+		InputStream body = in;
+		if ((flags & FLAG_DEFLATE) != 0) body = new BufferedInputStream(new InflaterInputStream(in), 8192);
+		Decoder dec = new Decoder(body);
+		long lsn = dec.readVarlong();
+		int count = dec.readVarint();
+		for (int i = 0; i < count; i++) {
+			users.add(dec.readUser(version));
+		}
+		return lsn;
+	}
+
+	/**
+	 * Writes the user directory: every User's name and the id of the shard holding it
+	 * @param lsn sequence number of the last journaled change contained in the directory
+	 * @param nextShard id the next new User's shard will get
+	 * @param shards User names mapped to shard ids, in directory order
+	 * @return the encoded directory
+	 * @throws IOException
+	 */
+	public static byte[] encodeDirectory(long lsn, int nextShard, Map<String, Integer> shards) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(DIRECTORY_MAGIC);
+		writeVarint(bytes, VERSION);
+		Encoder enc = new Encoder(bytes);
+		enc.writeVarlong(lsn);
+		enc.writeVarint(nextShard);
+		enc.writeVarint(shards.size());
+		for (Map.Entry<String, Integer> e : shards.entrySet()) {
+			enc.writeString(e.getKey());
+			enc.writeVarint(e.getValue());
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a user directory written by encodeDirectory
+	 * @param in the stream being read
+	 * @return the directory that was read
+	 * @throws IOException if the stream is not a directory or is damaged
+	 */
+	public static Directory readDirectory(InputStream in) throws IOException {
+		for (byte b : DIRECTORY_MAGIC) {
+			if (in.read() != b) throw new IOException("Not a user directory");
+		}
+		int version = (int) readVarlong(in);
+		if (version > VERSION) throw new IOException("Unsupported directory version " + version);
+		Decoder dec = new Decoder(in);
+		long lsn = dec.readVarlong();
+		int nextShard = dec.readVarint();
+		int count = dec.readVarint();
+		LinkedHashMap<String, Integer> shards = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < count; i++) {
+			shards.put(dec.readString(), dec.readVarint());
+		}
+		return new Directory(shards, nextShard, lsn);
+	}
+
+	/**
+	 * Checks whether the given file starts with the magic bytes of this format
+	 * @param file the file being checked
+	 * @return whether the file is in this format
+	 * @throws IOException
+	 */
+	public static boolean isLibrary(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			for (byte b : MAGIC) {
+				if (in.read() != b) return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Writes an unsigned LEB128 varint
+	 * @param out the stream being written to
+	 * @param v the value being written
+	 * @throws IOException
+	 */
+	static void writeVarint(OutputStream out, long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	/**
+	 * Reads an unsigned LEB128 varint
+	 * @param in the stream being read from
+	 * @return the value that was read
+	 * @throws IOException
+	 */
+	static long readVarlong(InputStream in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0) throw new EOFException();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return v;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Writes Users, sharing one string table across everything it writes
+	 */
+	static class Encoder {
+		/** stream being written to */
+		final OutputStream out;
+		/** index of every string written so far */
+		private final HashMap<String, Integer> strings = new HashMap<String, Integer>();
+
+		Encoder(OutputStream out) {
+			this.out = out;
+		}
+
+		void writeVarint(int v) throws IOException {
+			LibraryCodec.writeVarint(out, v & 0xFFFFFFFFL);
+		}
+
+		void writeVarlong(long v) throws IOException {
+			LibraryCodec.writeVarint(out, v);
+		}
+
+		/**
+		 * Writes a signed value with zigzag encoding, so times before 1970 stay short
+		 * @param v the value being written
+		 * @throws IOException
+		 */
+		void writeZigzag(long v) throws IOException {
+			LibraryCodec.writeVarint(out, (v << 1) ^ (v >> 63));
+		}
+
+		/**
+		 * Writes a reference to a string already in the table, or the string itself the first time
+		 * @param str the string being written
+		 * @throws IOException
+		 */
+		void writeString(String str) throws IOException {
+			Integer index = strings.get(str);
+			if (index != null) {
+				writeVarint(index + 1);
+				return;
+			}
+			strings.put(str, strings.size());
+			byte[] utf = str.getBytes(StandardCharsets.UTF_8);
+			writeVarint(0);
+			writeVarint(utf.length);
+			out.write(utf);
+		}
+
+		/**
+		 * Writes a User as a table of its Photos followed by Albums listing Photo indexes,
+		 * so a Photo shared by several Albums is written once
+		 * @param us the User being written
+		 * @throws IOException
+		 */
+		void writeUser(User us) throws IOException {
+			writeString(us.name);
+			IdentityHashMap<Photo, Integer> index = new IdentityHashMap<Photo, Integer>();
+			ArrayList<Photo> table = new ArrayList<Photo>();
+			for (Album ab : us.albums) {
+				for (Photo x : ab.photos) {
+					if (!index.containsKey(x)) {
+						index.put(x, table.size());
+						table.add(x);
+					}
+				}
+			}
+
+			writeVarint(table.size());
+			for (Photo x : table) {
+				writeString(x.address);
+				writeZigzag(x.time.getTimeInMillis());
+				writeString(x.caption);
+				writeVarint(x.width);
+				writeVarint(x.height);
+				writeVarint(x.orientation);
+				writeVarint(x.tags.size());
+				for (Tag tg : x.tags) {
+					writeString(tg.tname);
+					writeString(tg.tvalue);
+				}
+			}
+
+			writeVarint(us.albums.size());
+			for (Album ab : us.albums) {
+				writeString(ab.name);
+				writeVarint(ab.photos.size());
+				for (Photo x : ab.photos) {
+					writeVarint(index.get(x));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads Users written by an Encoder
+	 */
+	static class Decoder {
+		/** stream being read from */
+		final InputStream in;
+		/** every string read so far, in table order */
+		private final ArrayList<String> strings = new ArrayList<String>();
+
+		Decoder(InputStream in) {
+			this.in = in;
+		}
+
+		int readVarint() throws IOException {
+			return (int) LibraryCodec.readVarlong(in);
+		}
+
+		long readVarlong() throws IOException {
+			return LibraryCodec.readVarlong(in);
+		}
+
+		long readZigzag() throws IOException {
+			long v = LibraryCodec.readVarlong(in);
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		String readString() throws IOException {
+			int ref = readVarint();
+			if (ref > 0) {
+				if (ref > strings.size()) throw new IOException("Bad string reference " + ref);
+				return strings.get(ref - 1);
+			}
+			int length = readVarint();
+			byte[] utf = new byte[length];
+			int off = 0;
+			while (off < length) {
+				int n = in.read(utf, off, length - off);
+				if (n < 0) throw new EOFException();
+				off += n;
+			}
+			String str = new String(utf, StandardCharsets.UTF_8);
+			strings.add(str);
+			return str;
+		}
+
+		User readUser(int version) throws IOException {
+			User us = new User(readString());
+			int count = readVarint();
+			Photo[] table = new Photo[count];
+			for (int i = 0; i < count; i++) {
+				String address = readString();
+				Calendar time = Calendar.getInstance();
+				time.setTimeInMillis(readZigzag());
+				Photo x = new Photo(address, time);
+				x.caption = readString();
+				if (version >= 2) {
+					x.width = readVarint();
+					x.height = readVarint();
+					x.orientation = readVarint();
+				}
+				int tags = readVarint();
+				for (int j = 0; j < tags; j++) {
+					x.tags.add(Tag.of(readString(), readString()));
+				}
+				table[i] = x;
+			}
+
+			int albums = readVarint();
+			for (int i = 0; i < albums; i++) {
+				Album ab = new Album(readString());
+				int size = readVarint();
+				for (int j = 0; j < size; j++) {
+					int ref = readVarint();
+					if (ref >= count) throw new IOException("Bad photo reference " + ref);
+					ab.photos.add(table[ref]);
+				}
+				us.addAlbum(ab);
+			}
+			return us;
+		}
+	}
+}
@@ -0,0 +1,478 @@
+package app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import model.Album;
+import model.ImageMetadata;
+import model.Photo;
+import model.PhotoRegistry;
+import model.User;
+
+/**
+ * Keeps the logged-in User's Photos in step with their files. Every directory holding one of
+ * the User's Photos is watched through a WatchService. Events are gathered on a background
+ * thread until the directories go quiet for a moment. The same thread then looks at each file
+ * once, reading the headers of the User's Photos and of hot folder arrivals and hashing the
+ * arrivals that may be copies, and hands what it read as a single batch to the thread that
+ * owns the Users, which only compares it with the Photos and applies the changes:
+ * <ul>
+ * <li>a Photo whose file changed has its header read again, and gets its capture date, or its
+ * new modification time if the header has none, all in one PhotoStore.applyAll</li>
+ * <li>a Photo whose file is gone is flagged missing, and unflagged when the file comes back</li>
+ * </ul>
+ * A directory can also be made a hot folder of an Album, and images appearing in it are then
+ * added to that Album. The listener is told what changed, so views can refresh their images.
+ * Nothing is rescanned; only the files named by events are looked at
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class LibraryWatcher implements Closeable {
+	/** milliseconds without events that end a batch */
+	private static final long QUIET = 300;
+	/** longest a batch is held back while events keep coming */
+	private static final long MAX_DELAY = 2000;
+
+	/**
+	 * Receives the changes of each batch, on the thread owning the Users
+	 */
+	public interface Listener {
+		/**
+		 * Called after a batch was applied
+		 * @param s what changed
+		 */
+		void synced(Sync s);
+	}
+
+	/**
+	 * What one batch changed
+	 */
+	public static final class Sync {
+		/** Photos whose time or metadata was updated */
+		public final List<Photo> retimed = new ArrayList<Photo>();
+		/** Photos whose file was written or found again, so images decoded from it are stale */
+		public final List<Photo> changed = new ArrayList<Photo>();
+		/** Photos whose file was found gone */
+		public final List<Photo> missing = new ArrayList<Photo>();
+		/** Photos whose file was found again */
+		public final List<Photo> restored = new ArrayList<Photo>();
+		/** Photos added from hot folders, by Album name */
+		public final Map<String, List<Photo>> imported = new LinkedHashMap<String, List<Photo>>();
+		/** failure persisting the batch, null if there was none */
+		public IOException failure;
+
+		/**
+		 * Checks whether the batch changed anything
+		 * @return whether every list is empty and nothing failed
+		 */
+		public boolean isEmpty() {
+			return retimed.isEmpty() && changed.isEmpty() && missing.isEmpty() && restored.isEmpty()
+					&& imported.isEmpty() && failure == null;
+		}
+	}
+
+	/**
+	 * A file as read on the watcher thread
+	 */
+	private static final class Seen {
+		/** whether the file exists */
+		final boolean present;
+		/** the file's lastModified, 0 if it is gone */
+		final long mtime;
+		/** the file's header, null if it was not read or is not an image */
+		final ImageMetadata meta;
+
+		Seen(boolean present, long mtime, ImageMetadata meta) {
+			this.present = present;
+			this.mtime = mtime;
+			this.meta = meta;
+		}
+	}
+
+	/**
+	 * The files of one batch, read on the watcher thread for the User watched at the time
+	 */
+	private static final class Batch {
+		/** the User watched when the batch was read */
+		final User user;
+		/** addresses of the User's Photos, taken on the owner thread */
+		final List<String> held;
+		/** the files looked at, by canonical address */
+		final Map<String, Seen> files = new LinkedHashMap<String, Seen>();
+		/** Photos arriving in hot folders, by Album name */
+		final Map<String, List<Photo>> arrivals = new LinkedHashMap<String, List<Photo>>();
+		/** hashes the arrivals are compared by, null to compare addresses only */
+		Map<String, String> hashes;
+
+		Batch(User user, List<String> held) {
+			this.user = user;
+			this.held = held;
+		}
+	}
+
+	/** store the changes are persisted to */
+	private final PhotoStore store;
+	/** hashes keeping copies out of hot folder Albums, null to compare addresses only */
+	private final ContentHasher hasher;
+	/** runs batches on the thread owning the Users */
+	private final Executor owner;
+	/** the watch service */
+	private final WatchService service;
+	/** watched directories by key */
+	private final Map<WatchKey, Path> dirs = new ConcurrentHashMap<WatchKey, Path>();
+	/** keys by watched directory */
+	private final Map<Path, WatchKey> keys = new ConcurrentHashMap<Path, WatchKey>();
+	/** Albums fed by hot folders, by directory */
+	private final Map<Path, String> hot = new ConcurrentHashMap<Path, String>();
+	/** thread gathering events */
+	private final Thread thread;
+	/** User being watched, only used on the owner thread */
+	private User user;
+	/** receiver of the batches, null if there is none */
+	private volatile Listener listener;
+
+	/**
+	 * Constructor for a watcher persisting to the given store, which starts watching nothing
+	 * @param store the store
+	 * @param hasher the content hasher, or null to compare addresses only
+	 * @param owner runs tasks on the thread owning the Users, such as Platform::runLater
+	 * @throws IOException if the file system cannot be watched
+	 */
+	public LibraryWatcher(PhotoStore store, ContentHasher hasher, Executor owner) throws IOException {
+		this.store = store;
+		this.hasher = hasher;
+		this.owner = owner;
+		this.service = FileSystems.getDefault().newWatchService();
+		thread = new Thread(this::gather, "library-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Sets the receiver of the batches
+	 * @param l the listener, or null for none
+	 */
+	public void setListener(Listener l) {
+		listener = l;
+	}
+
+	/**
+	 * Watches the directories of a User's Photos instead of the last User's, dropping hot
+	 * folders. Photos in directories that cannot be watched because they are gone are flagged
+	 * missing at once. Does nothing if the User is already watched, so its hot folders last
+	 * until another User is watched or watching stops. Must be called on the owner thread
+	 * @param us the User, or null to stop watching
+	 */
+	public void watch(User us) {
+		if (us == user) return;
+		for (WatchKey k : keys.values()) {
+			k.cancel();
+		}
+		keys.clear();
+		dirs.clear();
+		hot.clear();
+		user = us;
+		if (us == null) return;
+		ArrayList<Photo> photos = new ArrayList<Photo>();
+		PhotoRegistry registry = us.getRegistry();
+		for (int id = 0; id < registry.capacity(); id++) {
+			Photo x = registry.get(id);
+			if (x != null) photos.add(x);
+		}
+		include(photos);
+	}
+
+	/**
+	 * Watches the directories of Photos the User just gained. Must be called on the owner thread
+	 * @param photos the Photos
+	 */
+	public void include(Collection<Photo> photos) {
+		HashMap<Path, List<Photo>> byDir = new HashMap<Path, List<Photo>>();
+		for (Photo x : photos) {
+			Path dir = directory(x.address);
+			if (dir == null || keys.containsKey(dir)) continue;
+			List<Photo> in = byDir.get(dir);
+			if (in == null) byDir.put(dir, in = new ArrayList<Photo>());
+			in.add(x);
+		}
+		Sync s = new Sync();
+		for (Map.Entry<Path, List<Photo>> e : byDir.entrySet()) {
+			if (register(e.getKey())) continue;
+			for (Photo x : e.getValue()) {
+				if (!x.missing) {
+					x.missing = true;
+					s.missing.add(x);
+				}
+			}
+		}
+		notify(s);
+	}
+
+	/**
+	 * Makes a directory a hot folder: images appearing in it are added to the given Album of
+	 * the watched User, until another User is watched or watching stops. Must be called on the
+	 * owner thread
+	 * @param dir the directory
+	 * @param album name of the Album
+	 * @return whether the directory could be watched
+	 */
+	public boolean addHotFolder(File dir, String album) {
+		Path p = Paths.get(PhotoRegistry.canonical(dir.getPath()));
+		if (!register(p)) return false;
+		hot.put(p, album);
+		return true;
+	}
+
+	/**
+	 * Stops a directory from being a hot folder
+	 * @param dir the directory
+	 */
+	public void removeHotFolder(File dir) {
+		hot.remove(Paths.get(PhotoRegistry.canonical(dir.getPath())));
+	}
+
+	/**
+	 * Returns the hot folders and the Albums they feed
+	 * @return the Album names by directory
+	 */
+	public Map<Path, String> getHotFolders() {
+		return Collections.unmodifiableMap(hot);
+	}
+
+	/**
+	 * Stops watching
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		service.close();
+		thread.interrupt();
+	}
+
+	/**
+	 * Returns the normalized directory of a file address
+	 * @param address the file address
+	 * @return the directory, or null if the address has none
+	 */
+	private static Path directory(String address) {
+		return Paths.get(PhotoRegistry.canonical(address)).getParent();
+	}
+
+	/**
+	 * Watches a directory unless it already is
+	 * @param dir the directory
+	 * @return whether the directory is watched
+	 */
+	private boolean register(Path dir) {
+		if (keys.containsKey(dir)) return true;
+		try {
+			WatchKey k = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			dirs.put(k, dir);
+			keys.put(dir, k);
+			return true;
+		} catch (IOException | UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gathers events into batches until the service is closed
+	 */
+	private void gather() {
+		try {
+			while (true) {
+				WatchKey k = service.take();
+				LinkedHashSet<Path> changed = new LinkedHashSet<Path>();
+				LinkedHashSet<Path> lost = new LinkedHashSet<Path>();
+				long deadline = System.currentTimeMillis() + MAX_DELAY;
+				while (k != null) {
+					Path dir = dirs.get(k);
+					for (WatchEvent<?> e : k.pollEvents()) {
+						if (dir == null) continue;
+						if (e.kind() == StandardWatchEventKinds.OVERFLOW) lost.add(dir);
+						else changed.add(dir.resolve((Path) e.context()));
+					}
+					// a key that cannot be reset belongs to a directory that is gone
+					if (!k.reset() && dir != null) {
+						lost.add(dir);
+						dirs.remove(k);
+						keys.remove(dir, k);
+					}
+					long left = deadline - System.currentTimeMillis();
+					k = left <= 0 ? null : service.poll(Math.min(QUIET, left), TimeUnit.MILLISECONDS);
+				}
+				Batch b = read(changed, lost);
+				if (b != null) owner.execute(() -> apply(b));
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	/**
+	 * Reads the files of a batch on the watcher thread: whether each is there, the headers of
+	 * the User's Photos and of images arriving in hot folders, and the hashes of the arrivals
+	 * that may be copies of the User's Photos
+	 * @param changed files named by events
+	 * @param lost directories whose events were lost or which are gone, every Photo in them
+	 * is looked at
+	 * @return the batch, or null if no User is watched
+	 * @throws InterruptedException if the watcher was closed while waiting on the owner thread
+	 */
+	private Batch read(Set<Path> changed, Set<Path> lost) throws InterruptedException {
+		// the User and its Photos may only be looked at on the owner thread
+		FutureTask<Batch> ask = new FutureTask<Batch>(() -> {
+			User us = user;
+			return us == null ? null : new Batch(us, addresses(us));
+		});
+		owner.execute(ask);
+		Batch b;
+		try {
+			b = ask.get();
+		} catch (ExecutionException e) {
+			return null;
+		}
+		if (b == null) return null;
+
+		LinkedHashMap<String, Path> files = new LinkedHashMap<String, Path>();
+		for (Path p : changed) {
+			files.put(PhotoRegistry.canonical(p.toString()), p);
+		}
+		HashSet<String> held = new HashSet<String>();
+		for (String address : b.held) {
+			Path p = Paths.get(PhotoRegistry.canonical(address));
+			held.add(p.toString());
+			if (lost.contains(p.getParent())) files.put(p.toString(), p);
+		}
+
+		ArrayList<Photo> arrived = new ArrayList<Photo>();
+		for (Map.Entry<String, Path> e : files.entrySet()) {
+			String address = e.getKey();
+			File f = e.getValue().toFile();
+			boolean present = f.isFile();
+			long mtime = present ? f.lastModified() : 0;
+			String album = hot.get(e.getValue().getParent());
+			boolean arrival = album != null && present && f.length() > 0 && FolderImport.isImage(f.getName());
+			ImageMetadata m = present && (arrival || held.contains(address)) ? ImageMetadata.read(address) : null;
+			b.files.put(address, new Seen(present, mtime, m));
+			if (!arrival || m == null) continue;
+
+			List<Photo> in = b.arrivals.get(album);
+			if (in == null) b.arrivals.put(album, in = new ArrayList<Photo>());
+			Calendar t = Calendar.getInstance();
+			t.setTimeInMillis(mtime);
+			Photo x = new Photo(address, t);
+			m.applyTo(x);
+			in.add(x);
+			arrived.add(x);
+		}
+		if (hasher != null && !arrived.isEmpty()) b.hashes = FolderImport.hashAhead(arrived, b.held, hasher);
+		return b;
+	}
+
+	/**
+	 * Applies what a batch read, on the owner thread. Nothing is read from disk here
+	 * @param b the batch
+	 */
+	private void apply(Batch b) {
+		User us = user;
+		// dropped if another User is watched since it was read
+		if (us == null || us != b.user) return;
+
+		Sync s = new Sync();
+		ArrayList<Mutation> changes = new ArrayList<Mutation>();
+		for (Map.Entry<String, Seen> e : b.files.entrySet()) {
+			Photo x = us.findPhoto(e.getKey());
+			if (x == null) continue;
+			Seen f = e.getValue();
+			if (!f.present) {
+				if (!x.missing) {
+					x.missing = true;
+					s.missing.add(x);
+				}
+				continue;
+			}
+			s.changed.add(x);
+			if (x.missing) {
+				x.missing = false;
+				s.restored.add(x);
+			}
+			// a file keeps its capture date however often it is touched
+			ImageMetadata m = f.meta;
+			if (m == null) {
+				if (f.mtime != x.time.getTimeInMillis()) {
+					changes.add(Mutation.setTime(us.name, x.address, f.mtime));
+					s.retimed.add(x);
+				}
+			} else if (m.timeOr(f.mtime) != x.time.getTimeInMillis() || m.width != x.width
+					|| m.height != x.height || m.orientation != x.orientation) {
+				changes.add(Mutation.setMetadata(us.name, x.address, m.timeOr(f.mtime), m));
+				s.retimed.add(x);
+			}
+		}
+
+		try {
+			if (!changes.isEmpty()) store.applyAll(changes);
+			for (Map.Entry<String, List<Photo>> e : b.arrivals.entrySet()) {
+				Album ab = us.getAlbum(e.getKey());
+				if (ab == null) continue;
+				List<Photo> added = FolderImport.commit(store, us, ab, e.getValue(), b.hashes);
+				if (!added.isEmpty()) s.imported.put(ab.name, added);
+			}
+		} catch (IOException ex) {
+			s.failure = ex;
+		}
+		notify(s);
+	}
+
+	/**
+	 * Lists the addresses of a User's Photos
+	 * @param us the User
+	 * @return the addresses
+	 */
+	private static List<String> addresses(User us) {
+		ArrayList<String> held = new ArrayList<String>();
+		PhotoRegistry registry = us.getRegistry();
+		for (int id = 0; id < registry.capacity(); id++) {
+			Photo x = registry.get(id);
+			if (x != null) held.add(x.address);
+		}
+		return held;
+	}
+
+	/**
+	 * Hands a batch to the listener unless it is empty
+	 * @param s the batch
+	 */
+	private void notify(Sync s) {
+		Listener l = listener;
+		if (l != null && !s.isEmpty()) l.synced(s);
+	}
+}
@@ -0,0 +1,134 @@
+package app;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.ImageMetadata;
+import model.Photo;
+import model.User;
+
+/**
+ * Reads the headers of Photos whose metadata is not known yet, such as those of a library
+ * saved before capture dates were kept. Headers are read on a small pool of threads fed
+ * through a bounded queue; when the queue is full the thread handing out the work reads a
+ * header itself, so no more than a queue's worth of files is ever pending. The results are
+ * then recorded with one PhotoStore.applyAll, which moves each Photo to its capture date
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class MetadataScan {
+	/** threads reading headers, configurable with -Dphotos.metadataThreads */
+	private static final int THREADS = Integer.getInteger("photos.metadataThreads",
+			Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+	/** headers waiting for a thread at most */
+	private static final int QUEUED = THREADS * 8;
+
+	/** addresses of the files to read */
+	private final List<String> addresses;
+	/** headers read so far */
+	private final AtomicInteger read = new AtomicInteger();
+	/** whether cancel was called */
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor for a scan of the given Photos. Must be called on the thread that owns them
+	 * @param photos the Photos; those whose metadata is known already are left out
+	 */
+	public MetadataScan(Collection<Photo> photos) {
+		addresses = new ArrayList<String>();
+		for (Photo x : photos) {
+			if (!x.hasMetadata()) addresses.add(x.address);
+		}
+	}
+
+	/**
+	 * Reads the headers. May be called from any thread
+	 * @return the metadata of every readable file by address, or of those read before cancel
+	 * was called
+	 */
+	public Map<String, ImageMetadata> scan() {
+		ConcurrentHashMap<String, ImageMetadata> found = new ConcurrentHashMap<String, ImageMetadata>();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 1, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUED), r -> {
+					Thread t = new Thread(r, "metadata-reader");
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			for (String address : addresses) {
+				if (cancelled) break;
+				pool.execute(() -> {
+					if (cancelled) return;
+					ImageMetadata m = ImageMetadata.read(address);
+					if (m != null) found.put(address, m);
+					read.incrementAndGet();
+				});
+			}
+		} finally {
+			pool.shutdown();
+		}
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			cancelled = true;
+			Thread.currentThread().interrupt();
+		}
+		return found;
+	}
+
+	/**
+	 * Records metadata read by scan, dating each Photo by its capture date when the header has
+	 * one. Must be called on the thread that owns the User
+	 * @param store the store holding the User
+	 * @param us the User owning the Photos
+	 * @param found the metadata by address
+	 * @return the User's Photos that were changed
+	 * @throws IOException
+	 */
+	public static List<Photo> commit(PhotoStore store, User us, Map<String, ImageMetadata> found) throws IOException {
+		ArrayList<Mutation> changes = new ArrayList<Mutation>();
+		LinkedHashMap<String, Photo> changed = new LinkedHashMap<String, Photo>();
+		for (Map.Entry<String, ImageMetadata> e : found.entrySet()) {
+			Photo x = us.findPhoto(e.getKey());
+			if (x == null) continue;
+			ImageMetadata m = e.getValue();
+			changes.add(Mutation.setMetadata(us.name, x.address, m.timeOr(x.time.getTimeInMillis()), m));
+			changed.put(x.address, x);
+		}
+		if (!changes.isEmpty()) store.applyAll(changes);
+		return new ArrayList<Photo>(changed.values());
+	}
+
+	/**
+	 * Stops the scan; scan returns what was read so far
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns the number of Photos the scan will read
+	 * @return the count
+	 */
+	public int size() {
+		return addresses.size();
+	}
+
+	/**
+	 * Returns the number of headers read so far
+	 * @return the count
+	 */
+	public int read() {
+		return read.get();
+	}
+}
@@ -0,0 +1,175 @@
+package app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import model.*;
+
+/**
+ * One-shot migration of data files written by default Java serialization into the
+ * LibraryCodec format. Old files are read through the mirror classes in app.legacy,
+ * so they stay readable whatever happens to the live model classes.
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Migrator {
+	/** first two bytes of every Java serialization stream */
+	private static final int STREAM_MAGIC = 0xACED;
+	/** serialized class names and the mirror classes used to read them */
+	private static final Map<String, Class<?>> MIRRORS = new HashMap<String, Class<?>>();
+
+	static {
+		MIRRORS.put("app.Photos", app.legacy.Photos.class);
+		MIRRORS.put("model.User", app.legacy.User.class);
+		MIRRORS.put("model.Album", app.legacy.Album.class);
+		MIRRORS.put("model.Photo", app.legacy.Photo.class);
+		MIRRORS.put("model.Tag", app.legacy.Tag.class);
+	}
+
+	/**
+	 * Reads serialization streams, swapping the application's classes for their mirrors
+	 */
+	private static class LegacyInputStream extends ObjectInputStream {
+		LegacyInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			Class<?> mirror = MIRRORS.get(desc.getName());
+			return mirror != null ? mirror : super.resolveClass(desc);
+		}
+	}
+
+	/**
+	 * Migrates the given data file, or src/model/users.dat by default
+	 * @param args the file being migrated, and optionally where to write the result
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		File in = new File(args.length > 0 ? args[0] : "src/model/users.dat");
+		File out = args.length > 1 ? new File(args[1]) : in;
+		if (!isLegacy(in)) {
+			System.out.println(in + " does not need migration");
+			return;
+		}
+		long before = in.length();
+		migrate(in, out, true);
+		System.out.println("Migrated " + in + " (" + before + " bytes) to " + out + " (" + out.length() + " bytes)");
+	}
+
+	/**
+	 * Checks whether the given file was written by default Java serialization
+	 * @param file the file being checked
+	 * @return whether the file needs migration
+	 * @throws IOException
+	 */
+	public static boolean isLegacy(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return ((in.read() << 8) | in.read()) == STREAM_MAGIC;
+		}
+	}
+
+	/**
+	 * Reads the Users stored in a file written by default Java serialization
+	 * @param file the file being read
+	 * @param users list the Users are added to
+	 * @return sequence number of the last journaled change contained in the file
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static long readLegacy(File file, List<User> users) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new LegacyInputStream(new BufferedInputStream(new FileInputStream(file), 8192))) {
+			app.legacy.Photos old = (app.legacy.Photos) ois.readObject();
+			convert(old, users);
+			return old.lsn;
+		}
+	}
+
+	/**
+	 * Rewrites a file written by default Java serialization in the LibraryCodec format,
+	 * streaming the result to a temporary file that then replaces the target
+	 * @param in the file being migrated
+	 * @param out where the migrated file is written, may be the same as in
+	 * @param compress whether the result is deflated
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static void migrate(File in, File out, boolean compress) throws IOException, ClassNotFoundException {
+		ArrayList<User> users = new ArrayList<User>();
+		long lsn = readLegacy(in, users);
+		File temp = new File(out.getPath() + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(temp)) {
+			OutputStream buffered = new BufferedOutputStream(file, 8192);
+			LibraryCodec.write(lsn, users, buffered, compress);
+			buffered.flush();
+			file.getChannel().force(true);
+		}
+		Files.move(temp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Copies a mirrored library into the model, keeping Photos shared between Albums shared
+	 * @param old the mirrored library
+	 * @param users list the library's Users are added to as model objects
+	 */
+	private static void convert(app.legacy.Photos old, List<User> users) {
+		if (old.users != null) {
+			for (app.legacy.User ou : old.users) {
+				User us = new User(ou.name);
+				IdentityHashMap<app.legacy.Photo, Photo> shared = new IdentityHashMap<app.legacy.Photo, Photo>();
+				for (app.legacy.Album oa : ou.albums) {
+					Album ab = new Album(oa.name);
+					for (app.legacy.Photo op : oa.photos) {
+						Photo x = shared.get(op);
+						if (x == null) {
+							x = convert(op);
+							shared.put(op, x);
+						}
+						ab.photos.add(x);
+					}
+					us.addAlbum(ab);
+				}
+				users.add(us);
+			}
+		}
+	}
+
+	/**
+	 * Copies a mirrored Photo into the model
+	 * @param op the mirrored Photo
+	 * @return the same Photo as a model object
+	 */
+	private static Photo convert(app.legacy.Photo op) {
+		Calendar time = op.time;
+		if (time == null) {
+			time = Calendar.getInstance();
+			time.set(Calendar.MILLISECOND, 0);
+		}
+		Photo x = new Photo(op.address, time);
+		x.caption = op.caption == null ? "" : op.caption;
+		if (op.tags != null) {
+			for (app.legacy.Tag ot : op.tags) {
+				x.tags.add(Tag.of(ot.tname, ot.tvalue));
+			}
+		}
+		return x;
+	}
+}
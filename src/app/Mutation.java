@@ -0,0 +1,413 @@
+package app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import model.*;
+
+/**
+ * A single change to the library, small enough to be appended to the journal
+ * instead of rewriting every User, Album, Photo and Tag
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Mutation {
+
+	/** types of changes that can be made to the library */
+	public enum Kind {
+		ADD_USER, REMOVE_USER, ADD_ALBUM, REMOVE_ALBUM, RENAME_ALBUM,
+		ADD_PHOTO, REMOVE_PHOTO, COPY_PHOTO, MOVE_PHOTO,
+		SET_CAPTION, ADD_TAG, DELETE_TAG, SET_TIME, SET_METADATA
+	}
+
+	/** marks an absent String in a record */
+	private static final int ABSENT = 0;
+	/** marks a String written with writeUTF, as journals of earlier versions hold them */
+	private static final int MODIFIED_UTF = 1;
+	/** marks a String written as a varint length followed by its UTF-8 bytes */
+	private static final int UTF8 = 2;
+
+	/** type of the current change */
+	public final Kind kind;
+	/** name of the User being changed */
+	public final String user;
+	/** name of the Album being changed, null for User level changes */
+	public final String album;
+	/** canonical file address of the Photo being changed, null for Album level changes */
+	public final String address;
+	/** first argument of the change (new name, destination, caption, tag key, or size as WxH) */
+	public final String arg1;
+	/** second argument of the change (tag value or orientation) */
+	public final String arg2;
+	/** time of the Photo being added or retimed, in epoch millis */
+	public final long time;
+
+	/**
+	 * Constructor for a new Mutation. The address is made canonical, so every store keys a
+	 * Photo by the same path its User's PhotoRegistry does
+	 * @param kind the type of change
+	 * @param user name of the User being changed
+	 * @param album name of the Album being changed
+	 * @param address file address of the Photo being changed
+	 * @param arg1 first argument of the change
+	 * @param arg2 second argument of the change
+	 * @param time time of the Photo being added
+	 */
+	private Mutation(Kind kind, String user, String album, String address, String arg1, String arg2, long time) {
+		this.kind = kind;
+		this.user = user;
+		this.album = album;
+		this.address = address == null ? null : PhotoRegistry.canonical(address);
+		this.arg1 = arg1;
+		this.arg2 = arg2;
+		this.time = time;
+	}
+
+	/**
+	 * Records a new User
+	 * @param user name of the new User
+	 * @return the Mutation
+	 */
+	public static Mutation addUser(String user) {
+		return new Mutation(Kind.ADD_USER, user, null, null, null, null, 0);
+	}
+
+	/**
+	 * Records a deleted User
+	 * @param user name of the deleted User
+	 * @return the Mutation
+	 */
+	public static Mutation removeUser(String user) {
+		return new Mutation(Kind.REMOVE_USER, user, null, null, null, null, 0);
+	}
+
+	/**
+	 * Records a new empty Album
+	 * @param user name of the User owning the Album
+	 * @param album name of the new Album
+	 * @return the Mutation
+	 */
+	public static Mutation addAlbum(String user, String album) {
+		return new Mutation(Kind.ADD_ALBUM, user, album, null, null, null, 0);
+	}
+
+	/**
+	 * Records a deleted Album
+	 * @param user name of the User owning the Album
+	 * @param album name of the deleted Album
+	 * @return the Mutation
+	 */
+	public static Mutation removeAlbum(String user, String album) {
+		return new Mutation(Kind.REMOVE_ALBUM, user, album, null, null, null, 0);
+	}
+
+	/**
+	 * Records a renamed Album
+	 * @param user name of the User owning the Album
+	 * @param album previous name of the Album
+	 * @param newName new name of the Album
+	 * @return the Mutation
+	 */
+	public static Mutation renameAlbum(String user, String album, String newName) {
+		return new Mutation(Kind.RENAME_ALBUM, user, album, null, newName, null, 0);
+	}
+
+	/**
+	 * Records a Photo added to an Album
+	 * @param user name of the User owning the Album
+	 * @param album name of the Album
+	 * @param x the Photo being added
+	 * @return the Mutation
+	 */
+	public static Mutation addPhoto(String user, String album, Photo x) {
+		if (!x.hasMetadata()) return new Mutation(Kind.ADD_PHOTO, user, album, x.address, null, null, x.time.getTimeInMillis());
+		return new Mutation(Kind.ADD_PHOTO, user, album, x.address, x.width + "x" + x.height,
+				Integer.toString(x.orientation), x.time.getTimeInMillis());
+	}
+
+	/**
+	 * Records a new time for a Photo, wherever the User's Albums hold it
+	 * @param user name of the User owning the Photo
+	 * @param address file address of the Photo
+	 * @param time the new time, in epoch millis
+	 * @return the Mutation
+	 */
+	public static Mutation setTime(String user, String address, long time) {
+		return new Mutation(Kind.SET_TIME, user, null, address, null, null, time);
+	}
+
+	/**
+	 * Records the metadata read from a Photo's header, wherever the User's Albums hold it
+	 * @param user name of the User owning the Photo
+	 * @param address file address of the Photo
+	 * @param time the time the Photo is dated by, in epoch millis
+	 * @param m the metadata
+	 * @return the Mutation
+	 */
+	public static Mutation setMetadata(String user, String address, long time, ImageMetadata m) {
+		return new Mutation(Kind.SET_METADATA, user, null, address, m.width + "x" + m.height,
+				Integer.toString(m.orientation), time);
+	}
+
+	/**
+	 * Records a Photo removed from an Album
+	 * @param user name of the User owning the Album
+	 * @param album name of the Album
+	 * @param address file address of the Photo
+	 * @return the Mutation
+	 */
+	public static Mutation removePhoto(String user, String album, String address) {
+		return new Mutation(Kind.REMOVE_PHOTO, user, album, address, null, null, 0);
+	}
+
+	/**
+	 * Records a Photo copied to another Album
+	 * @param user name of the User owning the Albums
+	 * @param album name of the source Album
+	 * @param address file address of the Photo
+	 * @param destination name of the destination Album
+	 * @return the Mutation
+	 */
+	public static Mutation copyPhoto(String user, String album, String address, String destination) {
+		return new Mutation(Kind.COPY_PHOTO, user, album, address, destination, null, 0);
+	}
+
+	/**
+	 * Records a Photo moved to another Album
+	 * @param user name of the User owning the Albums
+	 * @param album name of the source Album
+	 * @param address file address of the Photo
+	 * @param destination name of the destination Album
+	 * @return the Mutation
+	 */
+	public static Mutation movePhoto(String user, String album, String address, String destination) {
+		return new Mutation(Kind.MOVE_PHOTO, user, album, address, destination, null, 0);
+	}
+
+	/**
+	 * Records a captioned/recaptioned Photo
+	 * @param user name of the User owning the Album
+	 * @param album name of the Album
+	 * @param address file address of the Photo
+	 * @param caption the new caption
+	 * @return the Mutation
+	 */
+	public static Mutation setCaption(String user, String album, String address, String caption) {
+		return new Mutation(Kind.SET_CAPTION, user, album, address, caption, null, 0);
+	}
+
+	/**
+	 * Records a Tag added to a Photo
+	 * @param user name of the User owning the Album
+	 * @param album name of the Album
+	 * @param address file address of the Photo
+	 * @param x the new Tag
+	 * @return the Mutation
+	 */
+	public static Mutation addTag(String user, String album, String address, Tag x) {
+		return new Mutation(Kind.ADD_TAG, user, album, address, x.tname, x.tvalue, 0);
+	}
+
+	/**
+	 * Records a Tag deleted from a Photo
+	 * @param user name of the User owning the Album
+	 * @param album name of the Album
+	 * @param address file address of the Photo
+	 * @param x the deleted Tag
+	 * @return the Mutation
+	 */
+	public static Mutation deleteTag(String user, String album, String address, Tag x) {
+		return new Mutation(Kind.DELETE_TAG, user, album, address, x.tname, x.tvalue, 0);
+	}
+
+	/**
+	 * Checks whether the change adds or removes a whole User
+	 * @return whether the change is User level
+	 */
+	public boolean isUserLevel() {
+		return kind == Kind.ADD_USER || kind == Kind.REMOVE_USER;
+	}
+
+	/**
+	 * Applies an Album or Photo level change to the given User, ignoring changes whose targets
+	 * no longer exist. User level changes are applied by the PhotoStore owning the Users
+	 * @param us the User being changed
+	 */
+	public void applyTo(User us) {
+		if (us == null) return;
+		if (kind == Kind.ADD_ALBUM) {
+			if (!us.contains(album)) us.addAlbum(new Album(album));
+			return;
+		}
+		if (kind == Kind.SET_TIME || kind == Kind.SET_METADATA) {
+			Photo x = us.findPhoto(address);
+			if (x != null) {
+				if (kind == Kind.SET_METADATA) stamp(x);
+				Calendar t = Calendar.getInstance();
+				t.setTimeInMillis(time);
+				us.retime(x, t);
+			}
+			return;
+		}
+		Album ab = us.getAlbum(album);
+		if (ab == null) return;
+
+		switch (kind) {
+		case REMOVE_ALBUM:
+			us.removeAlbum(ab);
+			return;
+		case RENAME_ALBUM:
+			if (!us.contains(arg1)) us.renameAlbum(ab, arg1);
+			return;
+		case ADD_PHOTO:
+			if (!ab.contains(address)) ab.addPhoto(findPhoto(us));
+			return;
+		default:
+			break;
+		}
+
+		Photo ph1 = ab.getPhoto(address);
+		if (ph1 == null) return;
+		Album destination;
+
+		switch (kind) {
+		case REMOVE_PHOTO:
+			ab.removePhoto(ph1);
+			break;
+		case COPY_PHOTO:
+			destination = us.getAlbum(arg1);
+			if (destination != null && !destination.contains(address)) ab.copyPhoto(ph1, destination);
+			break;
+		case MOVE_PHOTO:
+			destination = us.getAlbum(arg1);
+			if (destination != null && !destination.contains(address)) ab.movePhoto(ph1, destination);
+			break;
+		case SET_CAPTION:
+			ph1.setCaption(arg1);
+			break;
+		case ADD_TAG:
+			Tag tg = Tag.of(arg1, arg2);
+			if (!ph1.hasTag(tg)) ph1.addTag(tg);
+			break;
+		case DELETE_TAG:
+			Tag match = TagDictionary.find(arg1, arg2);
+			if (match != null) ph1.deleteTag(match);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Finds the Photo being added among the User's Albums, so the same file shares one Photo
+	 * @param us the User owning the Albums
+	 * @return the existing Photo, or a new Photo stamped with the recorded time
+	 */
+	private Photo findPhoto(User us) {
+		Photo x = us.findPhoto(address);
+		if (x != null) return x;
+		Calendar t = Calendar.getInstance();
+		t.setTimeInMillis(time);
+		x = new Photo(address, t);
+		stamp(x);
+		return x;
+	}
+
+	/**
+	 * Sets the size and orientation recorded with the change on a Photo, if there are any
+	 * @param x the Photo
+	 */
+	void stamp(Photo x) {
+		if (arg1 == null || arg2 == null) return;
+		int i = arg1.indexOf('x');
+		if (i < 0) return;
+		try {
+			x.width = Integer.parseInt(arg1.substring(0, i));
+			x.height = Integer.parseInt(arg1.substring(i + 1));
+			x.orientation = Integer.parseInt(arg2);
+		} catch (NumberFormatException e) {
+			// a damaged record leaves the metadata to be read again
+		}
+	}
+
+	/**
+	 * Writes the current change to the given stream
+	 * @param out the stream being written to
+	 * @throws IOException
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeByte(kind.ordinal());
+		writeString(out, user);
+		writeString(out, album);
+		writeString(out, address);
+		writeString(out, arg1);
+		writeString(out, arg2);
+		out.writeLong(time);
+	}
+
+	/**
+	 * Reads a change from the given stream
+	 * @param in the stream being read from
+	 * @return the Mutation that was read
+	 * @throws IOException
+	 */
+	public static Mutation read(DataInputStream in) throws IOException {
+		int k = in.readUnsignedByte();
+		if (k >= Kind.values().length) throw new IOException("Unknown mutation " + k);
+		return new Mutation(Kind.values()[k], readString(in), readString(in), readString(in),
+				readString(in), readString(in), in.readLong());
+	}
+
+	/**
+	 * Writes a String that may be null, with a varint length so captions of any length fit
+	 * @param out the stream being written to
+	 * @param str the String being written
+	 * @throws IOException
+	 */
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		if (str == null) {
+			out.writeByte(ABSENT);
+			return;
+		}
+		byte[] utf = str.getBytes(StandardCharsets.UTF_8);
+		out.writeByte(UTF8);
+		LibraryCodec.writeVarint(out, utf.length);
+		out.write(utf);
+	}
+
+	/**
+	 * Reads a String that may be null, in either the current or the earlier layout
+	 * @param in the stream being read from
+	 * @return the String that was read
+	 * @throws IOException
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case ABSENT:
+			return null;
+		case MODIFIED_UTF:
+			return in.readUTF();
+		case UTF8:
+			long length = LibraryCodec.readVarlong(in);
+			if (length < 0 || length > in.available()) throw new IOException("String of " + length + " bytes overruns the record");
+			byte[] utf = new byte[(int) length];
+			in.readFully(utf);
+			return new String(utf, StandardCharsets.UTF_8);
+		default:
+			throw new IOException("Bad string tag " + tag);
+		}
+	}
+
+	/**
+	 * toString for journal diagnostics
+	 */
+	@Override
+	public String toString() {
+		return kind + " " + user + "/" + album + "/" + address + " " + arg1 + " " + arg2;
+	}
+}
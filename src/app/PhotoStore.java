@@ -0,0 +1,146 @@
+package app;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.List;
+import model.*;
+
+/**
+ * Persistence behind the Photos application. Controllers read Users, Albums and Photos through
+ * a PhotoStore and make every change by handing it a Mutation, which the store applies to the
+ * Users it handed out and persists. The backend is chosen with -Dphotos.store
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public interface PhotoStore {
+
+	/**
+	 * Opens the store, creating an empty library holding the stock User if there is none yet
+	 * @throws IOException
+	 */
+	void open() throws IOException;
+
+	/**
+	 * Returns the names of the application's Users without loading them
+	 * @return the current User names, in the order they were added
+	 * @throws IOException
+	 */
+	List<String> listUsers() throws IOException;
+
+	/**
+	 * Checks if the given User is registered in the application
+	 * @param name the name of the User being searched for
+	 * @return whether the User exists in the application
+	 * @throws IOException
+	 */
+	boolean containsUser(String name) throws IOException;
+
+	/**
+	 * Returns the given User with all of its Albums, loading it if needed. Mutations applied
+	 * afterwards are reflected in the returned instance
+	 * @param name the name of the User
+	 * @return the User, or null if there is no such User
+	 * @throws IOException
+	 */
+	User loadUser(String name) throws IOException;
+
+	/**
+	 * Returns the Albums of the given User
+	 * @param user the name of the User
+	 * @return the User's Albums, in the order they were added
+	 * @throws IOException
+	 */
+	List<Album> listAlbums(String user) throws IOException;
+
+	/**
+	 * Returns one page of the Photos in an Album
+	 * @param user the name of the User owning the Album
+	 * @param album the name of the Album
+	 * @param offset index of the first Photo returned
+	 * @param limit largest number of Photos returned
+	 * @return the Photos of the page, in Album order
+	 * @throws IOException
+	 */
+	List<Photo> pagePhotos(String user, String album, int offset, int limit) throws IOException;
+
+	/**
+	 * Counts the Photos in an Album
+	 * @param user the name of the User owning the Album
+	 * @param album the name of the Album
+	 * @return the number of Photos, 0 if there is no such Album
+	 * @throws IOException
+	 */
+	int countPhotos(String user, String album) throws IOException;
+
+	/**
+	 * Applies a change to the library and persists it
+	 * @param m the change being made
+	 * @throws IOException
+	 */
+	void apply(Mutation m) throws IOException;
+
+	/**
+	 * Applies several changes to the library and persists them together, as one transaction
+	 * where the store has them, for bulk work such as a folder import
+	 * @param changes the changes being made, in order
+	 * @throws IOException
+	 */
+	void applyAll(List<Mutation> changes) throws IOException;
+
+	/**
+	 * Finds the Photos of a User carrying the given Tags
+	 * @param user the name of the User
+	 * @param tags the Tags being searched on
+	 * @param all whether a Photo needs every Tag (AND) rather than any of them (OR)
+	 * @return every matching Photo once, oldest first and by address among Photos taken at
+	 * the same time
+	 * @throws IOException
+	 */
+	List<Photo> queryTags(String user, List<Tag> tags, boolean all) throws IOException;
+
+	/**
+	 * Finds the Photos of a User taken strictly between two dates
+	 * @param user the name of the User
+	 * @param start the lower bound date
+	 * @param end the upper bound date
+	 * @return every matching Photo once
+	 * @throws IOException
+	 */
+	List<Photo> queryDates(String user, Calendar start, Calendar end) throws IOException;
+
+	/**
+	 * Runs a parsed Query over the Photos of a User, leaving its profile for Query.explain()
+	 * @param user the name of the User
+	 * @param q the query
+	 * @return every matching Photo once
+	 * @throws IOException
+	 */
+	List<Photo> query(String user, Query q) throws IOException;
+
+	/**
+	 * Starts a session for the given User, letting the store drop every other User from memory
+	 * @param name name of the User logging in, or null for the admin
+	 * @throws IOException
+	 */
+	void login(String name) throws IOException;
+
+	/**
+	 * Ends the current session
+	 * @throws IOException
+	 */
+	void logout() throws IOException;
+
+	/**
+	 * Blocks until every change applied so far is on disk
+	 * @throws IOException
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Flushes every change and releases the store
+	 * @throws IOException
+	 */
+	void close() throws IOException;
+}
@@ -1,19 +1,14 @@
 package app;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-import java.util.ArrayList;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
-import model.*;
 import view.*;
 
 /**
@@ -23,32 +18,32 @@ import view.*;
  *
  */
 
-public class Photos extends Application implements Serializable {
+public class Photos extends Application {
 	
-	/** serial ID for version */
-	private static final long serialVersionUID = 1L;
-	/** list of all the application's users */
-	private ArrayList<User> users;
+	/** folder holding the application's data files, configurable with -Dphotos.dir */
+	private static final String DATA_DIR = System.getProperty("photos.dir", "src/model");
+	/** backend holding the library, "file" or "jdbc", configurable with -Dphotos.store */
+	private static final String STORE = System.getProperty("photos.store", "file");
+	/** JDBC URL used by the jdbc backend, configurable with -Dphotos.jdbc.url */
+	private static final String JDBC_URL = System.getProperty("photos.jdbc.url",
+			"jdbc:h2:" + new File(DATA_DIR, "photos").getAbsolutePath());
+	/** most megabytes of thumbnails kept on disk, configurable with -Dphotos.thumbCache */
+	private static final long THUMB_CACHE = Long.getLong("photos.thumbCache", 256);
+	/** most megabytes of decoded pixels kept in memory, configurable with -Dphotos.imageCache */
+	private static final long IMAGE_CACHE = Long.getLong("photos.imageCache", 128);
 	/** temporary stage for scene changes */
 	private static Stage tempStage;
+	/** session shared by every scene for the lifetime of the process */
+	private static Photos session;
+	/** store holding the library */
+	private PhotoStore store;
+	/** background thumbnail loader, with its disk cache under the data folder */
+	private ThumbnailLoader thumbnails;
+	/** watcher keeping the library in step with its files */
+	private LibraryWatcher watcher;
+	/** content hashes of the library's files, cached under the data folder */
+	private ContentHasher hasher;
 	
-	/**
-	 * Constructor for Photos, generates an instance containing stock images
-	 */
-	public Photos() {
-		User stock = new User("stock");
-		Album stockAlbum = new Album("stock");
-		
-		stockAlbum.addPhoto(new Photo("data/stock1.jpg"));
-		stockAlbum.addPhoto(new Photo("data/stock2.jpg"));
-		stockAlbum.addPhoto(new Photo("data/stock3.jpg"));
-		stockAlbum.addPhoto(new Photo("data/stock4.jpg"));
-		stockAlbum.addPhoto(new Photo("data/stock5.jpg"));
-		stock.albums.add(stockAlbum);
-		
-		users = new ArrayList<User>();
-		users.add(stock);
-	}
 	/**
 	 * Sets the stage to login scene, which is out root for the application
 	 * @param primaryStage main stage for the application to load scenes on
@@ -70,6 +65,37 @@ public class Photos extends Application implements Serializable {
 		primaryStage.show();
 	}
 	
+	/**
+	 * Writes every pending change to disk before the application exits. The watcher is closed
+	 * first so no batch reaches a closed store, and every part is closed even if one fails
+	 */
+	@Override
+	public void stop() throws Exception {
+		if (session == null) return;
+		IOException first = close(session.watcher, null);
+		first = close(session.thumbnails, first);
+		first = close(session.store::close, first);
+		first = close(session.hasher, first);
+		if (first != null) throw first;
+	}
+	
+	/**
+	 * Closes one part of the session, keeping the first failure of several
+	 * @param part the part, or null if it was never opened
+	 * @param first the first failure so far, or null
+	 * @return the first failure including this one, or null
+	 */
+	private static IOException close(Closeable part, IOException first) {
+		if (part == null) return first;
+		try {
+			part.close();
+		} catch (IOException e) {
+			if (first == null) return e;
+			first.addSuppressed(e);
+		}
+		return first;
+	}
+	
 	/**
 	 * Launches application
 	 * @param args no command-line arguments for this application
@@ -118,80 +144,95 @@ public class Photos extends Application implements Serializable {
 	}
 	
 	/**
-	 * Reads the serialized version of the previous session, or creates a new file to store for future sessions
-	 * @return an instance of Photos from the previous session
+	 * Returns the session shared by every scene, opening the library the first time it is needed
+	 * @return the shared instance of Photos
 	 * @throws IOException
-	 * @throws ClassNotFoundException
 	 */
-	public static Photos readApp() throws IOException, ClassNotFoundException {
-		try {
-			ObjectInputStream ois = new ObjectInputStream(
-					new FileInputStream("src/model/users.dat"));
-			Photos ph = (Photos) ois.readObject();
-			return ph;
-		} catch (Exception e) {
-			File newFile = new File("src/model/users.dat");
-			newFile.createNewFile();
-			return new Photos();
+	public static Photos getSession() throws IOException {
+		if (session == null) {
+			Photos ph = new Photos();
+			ph.store = openStore();
+			session = ph;
 		}
+		return session;
 	}
 	
 	/**
-	 * Writes the current session to the data file
-	 * @param ph the current instance of the Photos application
-	 * @throws IOException
+	 * Returns the store holding the library
+	 * @return the current PhotoStore
 	 */
-	public static void writeApp(Photos ph) throws IOException {
-		ObjectOutputStream oos = new ObjectOutputStream(
-				new FileOutputStream("src/model/users.dat"));
-		oos.writeObject(ph);
+	public PhotoStore getStore() {
+		return store;
 	}
 	
 	/**
-	 * Checks if the given User is registered in the application
-	 * @param str the name of the User being searched for
-	 * @return whether the User exists in the application
+	 * Returns the thumbnail loader, opening its disk cache the first time it is needed; if the
+	 * cache cannot be opened thumbnails are decoded every time instead
+	 * @return the shared ThumbnailLoader
 	 */
-	public boolean contains(String str) {
-		for (User us : users) {
-			if (us.name.equals(str)) return true;
+	public synchronized ThumbnailLoader getThumbnails() {
+		if (thumbnails == null) {
+			ThumbnailCache cache;
+			try {
+				cache = new ThumbnailCache(new File(DATA_DIR, "thumbs"), THUMB_CACHE << 20);
+			} catch (IOException e) {
+				cache = null;
+			}
+			thumbnails = new ThumbnailLoader(cache, new ImageCache(IMAGE_CACHE << 20), getHasher());
 		}
-		return false;
+		return thumbnails;
 	}
 	
 	/**
-	 * Adds the given user to the application's User list
-	 * @param newUser the new User
+	 * Returns the content hasher, reading its cache the first time it is needed
+	 * @return the shared ContentHasher
 	 */
-	public void addUser(User newUser) {
-		users.add(newUser);
+	public synchronized ContentHasher getHasher() {
+		if (hasher == null) hasher = new ContentHasher(new File(DATA_DIR, "hashes.dat"));
+		return hasher;
 	}
 	
 	/**
-	 * Removes the given user from the application's user list
-	 * @param currUser the given User
+	 * Stops the library watcher following the User being logged out, if it was started, so
+	 * no change is made to a User nobody is logged in as
 	 */
-	public void removeUser(User currUser) {
-		users.remove(currUser);
+	public synchronized void unwatch() {
+		if (watcher != null) watcher.watch(null);
 	}
 	
 	/**
-	 * Returns an instance of the User based off the given username
-	 * @param str the username being searched for
-	 * @return an instance of the User from the application's User list
+	 * Returns the library watcher, starting it the first time it is needed
+	 * @return the shared LibraryWatcher, or null if the file system cannot be watched
 	 */
-	public User getUser(String str) {
-		for (User us : users) {
-			if (us.name.equals(str)) return us;
+	public synchronized LibraryWatcher getWatcher() {
+		if (watcher == null) {
+			try {
+				watcher = new LibraryWatcher(store, getHasher(), Platform::runLater);
+			} catch (IOException e) {
+				return null;
+			}
 		}
-		return null;
+		return watcher;
 	}
 	
 	/**
-	 * Returns the application's current User list
-	 * @return the current User list
+	 * Opens the store selected with -Dphotos.store
+	 * @return the open PhotoStore
+	 * @throws IOException
 	 */
-	public ArrayList<User> getUsers() {
-		return users;
+	private static PhotoStore openStore() throws IOException {
+		PhotoStore st;
+		switch (STORE) {
+		case "jdbc":
+			st = new JdbcStore(JDBC_URL);
+			break;
+		case "file":
+			st = new FileStore(new File(DATA_DIR));
+			break;
+		default:
+			throw new IOException("Unknown store " + STORE);
+		}
+		st.open();
+		return st;
 	}
 }
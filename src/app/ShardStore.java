@@ -0,0 +1,133 @@
+package app;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import model.*;
+
+/**
+ * Layout of the sharded library on disk: a small user directory plus one shard file per User,
+ * each shard holding a single User in the LibraryCodec format. Reads go through the
+ * WriteBehind first, so a shard that was just evicted is read back even before it reaches disk.
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class ShardStore {
+	/** folder holding the directory and shard files */
+	private final File root;
+	/** writer that may still hold newer contents than the files on disk */
+	private final WriteBehind writer;
+
+	/**
+	 * A User read from its shard, with the sequence number the shard was written at
+	 */
+	public static class Shard {
+		/** the User stored in the shard */
+		public final User user;
+		/** sequence number of the last journaled change contained in the shard */
+		public final long lsn;
+
+		Shard(User user, long lsn) {
+			this.user = user;
+			this.lsn = lsn;
+		}
+	}
+
+	/**
+	 * Constructor for a store rooted at the given folder
+	 * @param root folder holding the directory and shard files
+	 * @param writer writer that persists the files
+	 */
+	public ShardStore(File root, WriteBehind writer) {
+		this.root = root;
+		this.writer = writer;
+	}
+
+	/**
+	 * Returns the user directory file
+	 * @return the directory file
+	 */
+	public File directoryFile() {
+		return new File(root, "users.idx");
+	}
+
+	/**
+	 * Returns the file holding the shard with the given id
+	 * @param id the shard id
+	 * @return the shard file
+	 */
+	public File shardFile(int id) {
+		return new File(root, "user-" + id + ".shard");
+	}
+
+	/**
+	 * Checks whether a sharded library has been written
+	 * @return whether the directory file exists
+	 */
+	public boolean exists() {
+		return directoryFile().exists();
+	}
+
+	/**
+	 * Reads the user directory
+	 * @return the directory that was read
+	 * @throws IOException
+	 */
+	public LibraryCodec.Directory readDirectory() throws IOException {
+		try (InputStream in = open(directoryFile())) {
+			return LibraryCodec.readDirectory(in);
+		}
+	}
+
+	/**
+	 * Checks whether the shard with the given id has been written
+	 * @param id the shard id
+	 * @return whether the shard exists on disk or in the writer
+	 */
+	public boolean hasShard(int id) {
+		File file = shardFile(id);
+		return writer.pending(file) != null || file.exists();
+	}
+
+	/**
+	 * Reads the shard with the given id
+	 * @param id the shard id
+	 * @return the User stored in the shard
+	 * @throws IOException
+	 */
+	public Shard readShard(int id) throws IOException {
+		ArrayList<User> users = new ArrayList<User>(1);
+		long lsn;
+		try (InputStream in = open(shardFile(id))) {
+			lsn = LibraryCodec.read(in, users);
+		}
+		if (users.size() != 1) throw new IOException("Shard " + id + " holds " + users.size() + " users");
+		return new Shard(users.get(0), lsn);
+	}
+
+	/**
+	 * Opens a file, preferring contents the writer has not put on disk yet
+	 * @param file the file being read
+	 * @return a stream over the newest contents of the file
+	 * @throws IOException
+	 */
+	private InputStream open(File file) throws IOException {
+		byte[] pending = writer.pending(file);
+		if (pending != null) return new ByteArrayInputStream(pending);
+		return new BufferedInputStream(new FileInputStream(file), 8192);
+	}
+
+	/**
+	 * Creates the folder holding the directory and shard files
+	 * @throws IOException
+	 */
+	public void create() throws IOException {
+		if (!root.isDirectory() && !root.mkdirs()) throw new IOException("Cannot create " + root);
+	}
+}
@@ -0,0 +1,485 @@
+package app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Persists the library on a dedicated thread so the application thread never waits on disk.
+ * Changes arriving within one window are committed as a group with a single fsync. Shard
+ * and directory files are written to a temporary file that atomically replaces the previous
+ * one, with the shards of one group written in parallel. A group that fails to be written is
+ * put back in front of the changes that arrived since and tried again after a growing pause;
+ * the failure is reported to callers of flush, but the changes are never counted as durable.
+ * Changes arrive already encoded by Journal.encode, so a change that can never be written is
+ * refused to its caller and only failures of the disk itself are retried.
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class WriteBehind implements Runnable {
+
+	/**
+	 * A change waiting to be journaled
+	 */
+	private static class Pending {
+		/** sequence number assigned to the change */
+		final long lsn;
+		/** the change, encoded by Journal.encode */
+		final byte[] change;
+
+		Pending(long lsn, byte[] change) {
+			this.lsn = lsn;
+			this.change = change;
+		}
+	}
+
+	/** first pause after a failed group, in milliseconds */
+	private static final long RETRY_MIN = 100;
+	/** longest pause between attempts at a failing group, in milliseconds */
+	private static final long RETRY_MAX = 10000;
+
+	/** journal of changes made since the last snapshot */
+	private final Journal journal;
+	/** milliseconds spent gathering changes before a group is written */
+	private final long window;
+	/** guards every field below */
+	private final Object lock = new Object();
+
+	/** changes waiting to be journaled */
+	private ArrayList<Pending> queue = new ArrayList<Pending>();
+	/** files waiting to be written, only the newest contents of each are kept */
+	private LinkedHashMap<File, byte[]> files = new LinkedHashMap<File, byte[]>();
+	/** files being written by the current group */
+	private Map<File, byte[]> inflight = Collections.emptyMap();
+	/** files waiting to be deleted */
+	private ArrayList<File> deletes = new ArrayList<File>();
+	/** directory file of the waiting checkpoint, null if there is none */
+	private File directory;
+	/** contents of the waiting checkpoint's directory file */
+	private byte[] directoryBytes;
+	/** sequence number of the last change contained in the waiting checkpoint */
+	private long checkpointLsn;
+	/** sequence number of the last change handed to the writer */
+	private long lastLsn;
+	/** changes handed to the writer since the last snapshot */
+	private int sinceSnapshot;
+	/** number of requests handed to the writer */
+	private long submitted;
+	/** number of requests known to be on disk */
+	private long durable;
+	/** whether a caller is waiting, so the window should be cut short */
+	private boolean urgent;
+	/** whether the writer has been asked to stop */
+	private boolean closed;
+	/** first failure seen by the writer, reported to the next caller of flush */
+	private IOException failure;
+	/** pause before the next attempt at a failed group, 0 after a group succeeds */
+	private long retry;
+	/** thread doing the writing */
+	private Thread thread;
+	/** threads writing the files of one group in parallel */
+	private ExecutorService pool;
+
+	/**
+	 * Constructor for a writer persisting to the given journal
+	 * @param journal journal of changes made since the last snapshot
+	 * @param window milliseconds spent gathering changes before a group is written
+	 */
+	public WriteBehind(Journal journal, long window) {
+		this.journal = journal;
+		this.window = window;
+	}
+
+	/**
+	 * Starts writing after the journal has been replayed
+	 */
+	public void start() {
+		synchronized (lock) {
+			lastLsn = journal.getLastLsn();
+			sinceSnapshot = journal.size();
+			if (thread != null) return;
+			int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "photos-writer-shard");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			thread = new Thread(this, "photos-writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Hands several changes to the writer at once, so they are written in the same group and
+	 * made durable by the same commit
+	 * @param changes the changes that were made, encoded by Journal.encode
+	 * @return the sequence number assigned to the last change
+	 */
+	public long append(List<byte[]> changes) {
+		synchronized (lock) {
+			for (byte[] change : changes) {
+				lastLsn++;
+				sinceSnapshot++;
+				queue.add(new Pending(lastLsn, change));
+			}
+			submitted++;
+			lock.notifyAll();
+			return lastLsn;
+		}
+	}
+
+	/**
+	 * Hands a change to the writer
+	 * @param change the change that was made, encoded by Journal.encode
+	 * @return the sequence number assigned to the change
+	 */
+	public long append(byte[] change) {
+		synchronized (lock) {
+			lastLsn++;
+			sinceSnapshot++;
+			queue.add(new Pending(lastLsn, change));
+			submitted++;
+			lock.notifyAll();
+			return lastLsn;
+		}
+	}
+
+	/**
+	 * Hands a file to the writer, replacing any contents of it that have not been written yet
+	 * @param target the file being replaced
+	 * @param bytes the new contents
+	 */
+	public void write(File target, byte[] bytes) {
+		synchronized (lock) {
+			files.put(target, bytes);
+			submitted++;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Asks the writer to delete a file once the files already handed to it are written
+	 * @param target the file being deleted
+	 */
+	public void delete(File target) {
+		synchronized (lock) {
+			files.remove(target);
+			deletes.add(target);
+			submitted++;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Hands a checkpoint to the writer: the given shards are written in parallel, then the
+	 * directory, and only then is the journal emptied of the changes they contain
+	 * @param shards shard files mapped to their new contents
+	 * @param dir the directory file
+	 * @param dirBytes the new contents of the directory file
+	 * @param lsn sequence number of the last change contained in the checkpoint
+	 */
+	public void checkpoint(Map<File, byte[]> shards, File dir, byte[] dirBytes, long lsn) {
+		synchronized (lock) {
+			files.putAll(shards);
+			directory = dir;
+			directoryBytes = dirBytes;
+			checkpointLsn = lsn;
+			sinceSnapshot = 0;
+			submitted++;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns contents handed to the writer for the given file that may not be on disk yet
+	 * @param target the file being read
+	 * @return the newest contents of the file, or null if the file on disk is current
+	 */
+	public byte[] pending(File target) {
+		synchronized (lock) {
+			byte[] bytes = files.get(target);
+			if (bytes == null) bytes = inflight.get(target);
+			return bytes;
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the last change handed to the writer
+	 * @return the last sequence number
+	 */
+	public long getLastLsn() {
+		synchronized (lock) {
+			return lastLsn;
+		}
+	}
+
+	/**
+	 * Returns how many changes were handed to the writer since the last snapshot
+	 * @return the number of changes since the last snapshot
+	 */
+	public int sinceSnapshot() {
+		synchronized (lock) {
+			return sinceSnapshot;
+		}
+	}
+
+	/**
+	 * Blocks until everything handed to the writer before this call is on disk
+	 * @throws IOException if the writer failed to persist a change
+	 */
+	public void flush() throws IOException {
+		synchronized (lock) {
+			long target = submitted;
+			urgent = true;
+			lock.notifyAll();
+			try {
+				while (durable < target && failure == null) lock.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while flushing", e);
+			}
+			if (failure != null) {
+				IOException e = failure;
+				failure = null;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Flushes everything handed to the writer, then stops its thread
+	 * @throws IOException if the writer failed to persist a change
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			synchronized (lock) {
+				closed = true;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Gathers requests over the window and writes each group
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			ArrayList<Pending> batch;
+			Map<File, byte[]> group;
+			ArrayList<File> removed;
+			File dir;
+			byte[] dirBytes;
+			long cpLsn;
+			long target;
+
+			synchronized (lock) {
+				try {
+					while (isIdle() && !closed) lock.wait();
+					long deadline = System.currentTimeMillis() + window;
+					long left = window;
+					while (left > 0 && !urgent && !closed) {
+						lock.wait(left);
+						left = deadline - System.currentTimeMillis();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (closed && isIdle()) {
+					pool.shutdown();
+					return;
+				}
+
+				batch = queue;
+				queue = new ArrayList<Pending>();
+				group = files;
+				inflight = group;
+				files = new LinkedHashMap<File, byte[]>();
+				removed = deletes;
+				deletes = new ArrayList<File>();
+				dir = directory;
+				dirBytes = directoryBytes;
+				cpLsn = checkpointLsn;
+				directory = null;
+				directoryBytes = null;
+				target = submitted;
+				urgent = false;
+			}
+
+			IOException error = null;
+			try {
+				write(batch, group, removed, dir, dirBytes, cpLsn);
+			} catch (IOException e) {
+				error = e;
+				try {
+					journal.abort();
+				} catch (IOException ignored) {
+					// the retry fails the same way and is reported then
+				}
+			}
+
+			synchronized (lock) {
+				inflight = Collections.emptyMap();
+				if (error == null) {
+					retry = 0;
+					durable = target;
+					lock.notifyAll();
+					continue;
+				}
+				if (failure == null) failure = error;
+				requeue(batch, group, removed, dir, dirBytes, cpLsn);
+				lock.notifyAll();
+				if (closed) {
+					// close has reported the failure; nothing is left to retry for
+					pool.shutdown();
+					return;
+				}
+				retry = retry == 0 ? RETRY_MIN : Math.min(RETRY_MAX, retry * 2);
+				try {
+					long deadline = System.currentTimeMillis() + retry;
+					long left = retry;
+					while (left > 0 && !closed) {
+						lock.wait(left);
+						left = deadline - System.currentTimeMillis();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Puts a group that failed to be written back in front of the work handed over since, so
+	 * the next group writes it again. Must be called holding the lock
+	 * @param batch changes of the failed group
+	 * @param group files of the failed group
+	 * @param removed files the failed group was to delete
+	 * @param dir directory file of the failed group's checkpoint, or null
+	 * @param dirBytes contents of the directory file
+	 * @param cpLsn sequence number of the last change contained in the checkpoint
+	 */
+	private void requeue(ArrayList<Pending> batch, Map<File, byte[]> group, ArrayList<File> removed,
+			File dir, byte[] dirBytes, long cpLsn) {
+		batch.addAll(queue);
+		queue = batch;
+
+		// newer contents and newer deletions of a file win over those of the failed group
+		LinkedHashMap<File, byte[]> merged = new LinkedHashMap<File, byte[]>();
+		for (Map.Entry<File, byte[]> e : group.entrySet()) {
+			if (!deletes.contains(e.getKey())) merged.put(e.getKey(), e.getValue());
+		}
+		merged.putAll(files);
+		files = merged;
+		ArrayList<File> gone = new ArrayList<File>();
+		for (File f : removed) {
+			if (!files.containsKey(f)) gone.add(f);
+		}
+		gone.addAll(deletes);
+		deletes = gone;
+
+		// a newer checkpoint contains everything the failed one did
+		if (dir != null && directory == null) {
+			directory = dir;
+			directoryBytes = dirBytes;
+			checkpointLsn = cpLsn;
+		}
+	}
+
+	/**
+	 * Checks whether nothing is waiting to be written
+	 * @return whether the writer has no work
+	 */
+	private boolean isIdle() {
+		return queue.isEmpty() && files.isEmpty() && deletes.isEmpty() && directory == null;
+	}
+
+	/**
+	 * Writes one group: its files in parallel, then deletions, then the checkpoint's directory,
+	 * and finally the changes the checkpoint does not already contain
+	 * @param batch changes gathered in this group
+	 * @param group files gathered in this group
+	 * @param removed files deleted in this group
+	 * @param dir directory file of this group's checkpoint, or null
+	 * @param dirBytes contents of the directory file
+	 * @param cpLsn sequence number of the last change contained in the checkpoint
+	 * @throws IOException
+	 */
+	private void write(ArrayList<Pending> batch, Map<File, byte[]> group, ArrayList<File> removed,
+			File dir, byte[] dirBytes, long cpLsn) throws IOException {
+		ArrayList<Future<Void>> writes = new ArrayList<Future<Void>>();
+		for (final Map.Entry<File, byte[]> e : group.entrySet()) {
+			writes.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					replace(e.getKey(), e.getValue());
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> f : writes) {
+			try {
+				f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while writing", e);
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+			}
+		}
+		for (File f : removed) {
+			Files.deleteIfExists(f.toPath());
+		}
+
+		if (dir != null) {
+			replace(dir, dirBytes);
+			journal.reset();
+		}
+		for (Pending p : batch) {
+			if (dir == null || p.lsn > cpLsn) journal.append(p.lsn, p.change);
+		}
+		journal.commit();
+	}
+
+	/**
+	 * Writes the given bytes to a temporary file, forces it to disk, and renames it over the target
+	 * so a crash leaves either the old or the new file, never a partial one
+	 * @param target the file being replaced
+	 * @param bytes the new contents
+	 * @throws IOException
+	 */
+	static void replace(File target, byte[] bytes) throws IOException {
+		File temp = new File(target.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(temp)) {
+			out.write(bytes);
+			out.getChannel().force(true);
+		}
+		try {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
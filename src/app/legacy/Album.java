@@ -0,0 +1,20 @@
+package app.legacy;
+
+import java.io.Serializable;
+import java.util.LinkedList;
+
+/**
+ * Read-only mirror of model.Album as it was written by default Java serialization
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Album implements Serializable {
+	/** serial ID of the serialized class, computed from the original class */
+	private static final long serialVersionUID = 2744238888742597570L;
+	/** name of the Album */
+	public String name;
+	/** list of the Album's Photos */
+	public LinkedList<Photo> photos;
+}
@@ -0,0 +1,25 @@
+package app.legacy;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.LinkedList;
+
+/**
+ * Read-only mirror of model.Photo as it was written by default Java serialization
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Photo implements Serializable {
+	/** serial ID of the serialized class, computed from the original class */
+	private static final long serialVersionUID = -3302226366319563884L;
+	/** file address of the Photo */
+	public String address;
+	/** time that the Photo was last modified at */
+	public Calendar time;
+	/** caption of the Photo */
+	public String caption;
+	/** all Tags on the Photo */
+	public LinkedList<Tag> tags;
+}
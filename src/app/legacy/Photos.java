@@ -0,0 +1,21 @@
+package app.legacy;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Read-only mirror of app.Photos as it was written by default Java serialization,
+ * kept so old data files can be migrated however the live class changes
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Photos implements Serializable {
+	/** serial ID of the serialized class */
+	private static final long serialVersionUID = 1L;
+	/** list of all the application's users */
+	public ArrayList<User> users;
+	/** sequence number of the last journaled change, absent from the oldest files */
+	public long lsn;
+}
@@ -0,0 +1,19 @@
+package app.legacy;
+
+import java.io.Serializable;
+
+/**
+ * Read-only mirror of model.Tag as it was written by default Java serialization
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Tag implements Serializable {
+	/** serial ID of the serialized class, computed from the original class */
+	private static final long serialVersionUID = -1301633083112637234L;
+	/** key of the Tag */
+	public String tname;
+	/** value of the Tag */
+	public String tvalue;
+}
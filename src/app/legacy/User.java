@@ -0,0 +1,20 @@
+package app.legacy;
+
+import java.io.Serializable;
+import java.util.LinkedList;
+
+/**
+ * Read-only mirror of model.User as it was written by default Java serialization
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class User implements Serializable {
+	/** serial ID of the serialized class, computed from the original class */
+	private static final long serialVersionUID = -4711306504238244759L;
+	/** name of the User */
+	public String name;
+	/** list of the User's Albums */
+	public LinkedList<Album> albums;
+}
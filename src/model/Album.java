@@ -12,10 +12,16 @@ import java.util.*;
  */
 
 public class Album implements Serializable {
-	/** name of current Album */
+	/** serial ID for version */
+	private static final long serialVersionUID = 1L;
+	/** name of current Album, changed through User.renameAlbum so the owner's index follows */
 	public String name;
-	/** list of current Album's Photos */
-	public LinkedList<Photo> photos;
+	/** current Album's Photos, in order */
+	public PhotoSequence photos;
+	/** User the Album belongs to, told about membership changes so its indexes stay current */
+	transient User owner;
+	/** ids of the Photos held, from the owner's PhotoRegistry, null while the Album has no owner */
+	transient IntBitmap members;
 	
 	/**
 	 * Constructor for new Album, generates an empty list of Photos
@@ -23,7 +29,7 @@ public class Album implements Serializable {
 	 */
 	public Album (String n) {
 		name = n;
-		photos = new LinkedList<Photo>();
+		photos = new PhotoSequence();
 	}
 	
 	/**
@@ -40,6 +46,10 @@ public class Album implements Serializable {
 	 * @return an instance of a Photo containing the address, null otherwise
 	 */
 	public Photo getPhoto(String adr) {
+		if (owner != null) {
+			int id = owner.getRegistry().idOf(adr);
+			return id >= 0 && members.contains(id) ? owner.getRegistry().get(id) : null;
+		}
 		for (Photo ph : photos) {
 			if (ph.address.equals(adr)) return ph;
 		}
@@ -50,18 +60,35 @@ public class Album implements Serializable {
 	 * Returns all Photos inside of the Album
 	 * @return a list of Photos contained in the Album
 	 */
-	public LinkedList<Photo> getPhotos() {
+	public PhotoSequence getPhotos() {
 		return photos;
 	}
 	
 	/**
-	 * Adds the given Photo to the current Album
+	 * Adds the given Photo to the current Album. In an owned Album, a Photo whose path the
+	 * owner has already cataloged is added as the cataloged instance
 	 * @param x the Photo being added
 	 */
 	public void addPhoto(Photo x) {
-		if (!photos.contains(x)) {
-		photos.add(x);
+		if (owner != null) {
+			Photo canon = owner.getRegistry().get(x.address);
+			if (canon != null) x = canon;
+			if (contains(x)) return;
+			photos.add(x);
+			members.add(owner.photoAdded(x));
+			return;
 		}
+		photos.add(x);
+	}
+	
+	/**
+	 * Checks if the Album holds the given Photo
+	 * @param x the Photo
+	 * @return whether the Album holds the Photo
+	 */
+	public boolean contains(Photo x) {
+		if (owner != null) return owner.getRegistry().holds(x) && members.contains(x.id);
+		return photos.contains(x);
 	}
 	
 	/**
@@ -70,6 +97,10 @@ public class Album implements Serializable {
 	 * @return whether the Album contains a Photo matching the file address
 	 */
 	public boolean contains(String adr) {
+		if (owner != null) {
+			int id = owner.getRegistry().idOf(adr);
+			return id >= 0 && members.contains(id);
+		}
 		for (Photo ph : photos) {
 			if (ph.address.equals(adr)) return true;
 		}
@@ -81,7 +112,22 @@ public class Album implements Serializable {
 	 * @param x the Photo being removed
 	 */
 	public void removePhoto(Photo x) {
+		if (owner == null) {
+			photos.remove(x);
+			return;
+		}
+		if (!contains(x)) return;
 		photos.remove(x);
+		members.remove(x.id);
+		owner.photoRemoved(x);
+	}
+	
+	/**
+	 * Returns the ids of the Photos held by the Album
+	 * @return the ids from the owner's PhotoRegistry, or null if the Album has no owner
+	 */
+	public IntBitmap getMembers() {
+		return members;
 	}
 	
 	/**
@@ -94,13 +140,14 @@ public class Album implements Serializable {
 	}
 	
 	/**
-	 * Moves a Photo from the current Album to another
+	 * Moves a Photo from the current Album to another; moving it to the same Album keeps it
 	 * @param x the Photo being moved
 	 * @param y the destination Album
 	 */
 	public void movePhoto(Photo x, Album y) {
-		photos.remove(x);
+		if (y == this) return;
 		y.addPhoto(x);
+		removePhoto(x);
 	}
 	
 	/**
@@ -141,10 +188,17 @@ public class Album implements Serializable {
 	 */
 	public Album searchDate(Calendar start, Calendar end) {
 		Album temp = new Album("temp");
-		for (int i = 0; i< photos.size(); i++) {
-			if (photos.get(i).getTime().after(start) && photos.get(i).getTime().before(end)) {
-				temp.addPhoto(photos.get(i));
+		if (owner != null) {
+			for (int id : owner.getTimeIndex().range(start.getTimeInMillis(), end.getTimeInMillis())) {
+				if (members.contains(id)) temp.photos.add(owner.getRegistry().get(id));
 			}
+			return temp;
+		}
+		long from = start.getTimeInMillis();
+		long to = end.getTimeInMillis();
+		for (Photo ph : photos) {
+			long t = ph.time.getTimeInMillis();
+			if (t > from && t < to) temp.photos.add(ph);
 		}
 		return temp;
 	}
@@ -155,13 +209,7 @@ public class Album implements Serializable {
 	 * @return an Album containing all Photos with the Tag
 	 */
 	public Album searchTag(Tag x) {
-		Album temp = new Album("temp");
-		for (int i = 0; i< photos.size(); i++) {
-			if (photos.get(i).hasTag(x)) {
-			temp.addPhoto(photos.get(i));
-			}
-		}
-		return temp;
+		return searchTags(Collections.singletonList(x), true);
 	}
 	
 	/**
@@ -171,13 +219,7 @@ public class Album implements Serializable {
 	 * @return an Album containing all Photos with both Tags
 	 */
 	public Album searchConjunctive(Tag x, Tag y) {
-		Album temp = new Album("temp");
-		for (int i = 0; i< photos.size(); i++) {
-			if (photos.get(i).hasTag(x) && photos.get(i).hasTag(y)) {
-			temp.addPhoto(photos.get(i));
-			}
-		}
-		return temp;
+		return searchTags(Arrays.asList(x, y), true);
 	}
 	
 	/**
@@ -187,11 +229,33 @@ public class Album implements Serializable {
 	 * @return an Album containing all Photos with one of the given Tags
 	 */
 	public Album searchDisjunctive (Tag x, Tag y) {
+		return searchTags(Arrays.asList(x, y), false);
+	}
+	
+	/**
+	 * Finds the Photos carrying all or any of the given Tags, from the owner's TagIndex limited
+	 * to the Album's members, or by checking every Photo while the Album has no owner
+	 * @param tags the Tags being searched on
+	 * @param all whether every Tag must be carried, rather than any of them
+	 * @return an Album containing the matching Photos
+	 */
+	private Album searchTags(List<Tag> tags, boolean all) {
 		Album temp = new Album("temp");
-		for (int i = 0; i< photos.size(); i++) {
-			if (photos.get(i).hasTag(x) || photos.get(i).hasTag(y)) {
-			temp.addPhoto(photos.get(i));
+		if (owner != null) {
+			TagIndex index = owner.getTagIndex();
+			IntBitmap found = all ? index.matchAll(tags) : index.matchAny(tags);
+			temp.photos.addAll(index.resolve(IntBitmap.and(found, members)));
+			return temp;
+		}
+		for (Photo ph : photos) {
+			boolean hit = all;
+			for (Tag tg : tags) {
+				if (ph.hasTag(tg) != all) {
+					hit = !all;
+					break;
+				}
 			}
+			if (hit) temp.photos.add(ph);
 		}
 		return temp;
 	}
@@ -0,0 +1,316 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Format, capture date, orientation and dimensions of an image, read from its header alone.
+ * The format is told by the file's magic bytes, whatever its name says. Nothing is
+ * decoded: a JPEG is read segment by segment up to the start of its scan, keeping the EXIF
+ * block of APP1 and the frame header; a PNG is read chunk by chunk up to its first IDAT,
+ * keeping IHDR, eXIf and a "Creation Time" text chunk; GIF and BMP give their dimensions from
+ * the first few bytes. Every read is a small positioned read of the file's channel
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class ImageMetadata {
+	/** orientation of an image drawn as stored */
+	public static final int UPRIGHT = 1;
+	/** largest segment or chunk read whole */
+	private static final int MAX_BLOCK = 1 << 16;
+	/** EXIF tag of the orientation */
+	private static final int TAG_ORIENTATION = 0x0112;
+	/** EXIF tag of the last change, used when the capture date is absent */
+	private static final int TAG_DATE_TIME = 0x0132;
+	/** EXIF tag pointing to the Exif sub-IFD */
+	private static final int TAG_EXIF_IFD = 0x8769;
+	/** EXIF tag of the capture date */
+	private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+	/** EXIF tag of the digitization date */
+	private static final int TAG_DATE_TIME_DIGITIZED = 0x9004;
+	/** EXIF tag of the pixel width */
+	private static final int TAG_PIXEL_X = 0xA002;
+	/** EXIF tag of the pixel height */
+	private static final int TAG_PIXEL_Y = 0xA003;
+	/** date formats of EXIF and of PNG "Creation Time" text */
+	private static final String[] DATE_FORMATS = {
+		"yyyy:MM:dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd HH:mm:ss", "EEE, dd MMM yyyy HH:mm:ss Z"
+	};
+
+	/** format told by the magic bytes: JPEG, PNG, GIF or BMP */
+	public String format;
+	/** when the image was captured in epoch millis, -1 if the header does not say */
+	public long captured = -1;
+	/** width in pixels as stored, 0 if unknown */
+	public int width;
+	/** height in pixels as stored, 0 if unknown */
+	public int height;
+	/** EXIF orientation, 1 to 8 */
+	public int orientation = UPRIGHT;
+
+	/**
+	 * Reads the header of an image file
+	 * @param address the file address
+	 * @return the metadata, or null if the file cannot be read or is not a known format
+	 */
+	public static ImageMetadata read(String address) {
+		try (FileChannel ch = FileChannel.open(Paths.get(address), StandardOpenOption.READ)) {
+			ByteBuffer head = block(ch, 0, 26);
+			if (head == null || head.limit() < 8) return null;
+			ImageMetadata m = new ImageMetadata();
+			int b0 = head.get(0) & 0xFF;
+			int b1 = head.get(1) & 0xFF;
+			if (b0 == 0xFF && b1 == 0xD8 && (head.get(2) & 0xFF) == 0xFF) {
+				m.format = "JPEG";
+				m.readJpeg(ch);
+			} else if (b0 == 0x89 && b1 == 'P' && head.get(2) == 'N' && head.get(3) == 'G') {
+				m.format = "PNG";
+				m.readPng(ch);
+			} else if (b0 == 'G' && b1 == 'I' && head.get(2) == 'F' && head.get(3) == '8') {
+				m.format = "GIF";
+				head.order(ByteOrder.LITTLE_ENDIAN);
+				m.width = head.getShort(6) & 0xFFFF;
+				m.height = head.getShort(8) & 0xFFFF;
+			} else if (b0 == 'B' && b1 == 'M') {
+				if (head.limit() < 26) return null;
+				m.format = "BMP";
+				head.order(ByteOrder.LITTLE_ENDIAN);
+				m.width = Math.abs(head.getInt(18));
+				// a negative height marks rows stored top-down
+				m.height = Math.abs(head.getInt(22));
+			} else return null;
+			return m;
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Stamps a Photo that is not yet held by any Album with the metadata
+	 * @param x the Photo
+	 */
+	public void applyTo(Photo x) {
+		if (captured >= 0) x.time.setTimeInMillis(captured);
+		x.width = width;
+		x.height = height;
+		x.orientation = orientation;
+	}
+
+	/**
+	 * Returns the time a Photo should be dated by
+	 * @param modified when the file was last modified, in epoch millis
+	 * @return the capture date if known, otherwise the modification time
+	 */
+	public long timeOr(long modified) {
+		return captured >= 0 ? captured : modified;
+	}
+
+	/**
+	 * Walks the segments of a JPEG up to the start of its scan
+	 * @param ch the file
+	 * @throws IOException
+	 */
+	private void readJpeg(FileChannel ch) throws IOException {
+		long pos = 2;
+		while (true) {
+			ByteBuffer seg = block(ch, pos, 4);
+			if (seg == null || seg.limit() < 4 || (seg.get(0) & 0xFF) != 0xFF) return;
+			int marker = seg.get(1) & 0xFF;
+			if (marker == 0xFF) {
+				// fill byte before a marker
+				pos++;
+				continue;
+			}
+			if (marker == 0xDA || marker == 0xD9) return;
+			int length = seg.getShort(2) & 0xFFFF;
+			if (length < 2) return;
+			if (marker == 0xE1) {
+				ByteBuffer app1 = block(ch, pos + 4, Math.min(length - 2, MAX_BLOCK));
+				if (app1 != null && app1.limit() > 6 && app1.get(0) == 'E' && app1.get(1) == 'x'
+						&& app1.get(2) == 'i' && app1.get(3) == 'f') {
+					app1.position(6);
+					readTiff(app1.slice());
+				}
+			} else if (isFrame(marker)) {
+				ByteBuffer sof = block(ch, pos + 4, 5);
+				if (sof != null && sof.limit() == 5) {
+					height = sof.getShort(1) & 0xFFFF;
+					width = sof.getShort(3) & 0xFFFF;
+				}
+			}
+			pos += 2 + length;
+		}
+	}
+
+	/**
+	 * Checks whether a JPEG marker starts a frame header
+	 * @param marker the marker
+	 * @return whether it is one of SOF0 to SOF15, leaving out DHT, JPG and DAC
+	 */
+	private static boolean isFrame(int marker) {
+		return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+	}
+
+	/**
+	 * Walks the chunks of a PNG up to its first IDAT
+	 * @param ch the file
+	 * @throws IOException
+	 */
+	private void readPng(FileChannel ch) throws IOException {
+		long pos = 8;
+		while (true) {
+			ByteBuffer head = block(ch, pos, 8);
+			if (head == null || head.limit() < 8) return;
+			long length = head.getInt(0) & 0xFFFFFFFFL;
+			String type = new String(new byte[] { head.get(4), head.get(5), head.get(6), head.get(7) }, StandardCharsets.ISO_8859_1);
+			if (type.equals("IDAT") || type.equals("IEND")) return;
+			if (type.equals("IHDR") && length >= 8) {
+				ByteBuffer ihdr = block(ch, pos + 8, 8);
+				if (ihdr != null && ihdr.limit() == 8) {
+					width = ihdr.getInt(0);
+					height = ihdr.getInt(4);
+				}
+			} else if (type.equals("eXIf") && length <= MAX_BLOCK) {
+				ByteBuffer exif = block(ch, pos + 8, (int) length);
+				if (exif != null) readTiff(exif);
+			} else if (type.equals("tEXt") && length <= MAX_BLOCK && captured < 0) {
+				ByteBuffer text = block(ch, pos + 8, (int) length);
+				if (text != null) {
+					String s = new String(text.array(), 0, text.limit(), StandardCharsets.ISO_8859_1);
+					int nul = s.indexOf('\0');
+					if (nul > 0 && s.substring(0, nul).equals("Creation Time")) captured = parseDate(s.substring(nul + 1).trim());
+				}
+			}
+			// length, type, data and CRC
+			pos += 12 + length;
+		}
+	}
+
+	/**
+	 * Reads orientation, capture date and dimensions from an EXIF block
+	 * @param tiff the block, starting at its byte order mark
+	 */
+	private void readTiff(ByteBuffer tiff) {
+		if (tiff.limit() < 8) return;
+		if (tiff.get(0) == 'I' && tiff.get(1) == 'I') tiff.order(ByteOrder.LITTLE_ENDIAN);
+		else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') tiff.order(ByteOrder.BIG_ENDIAN);
+		else return;
+		long original = -1;
+		long digitized = -1;
+		long changed = -1;
+		int exifWidth = 0;
+		int exifHeight = 0;
+		int ifd = tiff.getInt(4);
+		int exif = -1;
+		// IFD0, then the Exif sub-IFD it points to
+		for (int pass = 0; pass < 2 && ifd > 0 && ifd + 2 <= tiff.limit(); pass++) {
+			int count = tiff.getShort(ifd) & 0xFFFF;
+			for (int k = 0; k < count; k++) {
+				int e = ifd + 2 + 12 * k;
+				if (e + 12 > tiff.limit()) break;
+				int tag = tiff.getShort(e) & 0xFFFF;
+				int type = tiff.getShort(e + 2) & 0xFFFF;
+				switch (tag) {
+				case TAG_ORIENTATION:
+					int o = tiff.getShort(e + 8) & 0xFFFF;
+					if (o >= 1 && o <= 8) orientation = o;
+					break;
+				case TAG_EXIF_IFD:
+					exif = tiff.getInt(e + 8);
+					break;
+				case TAG_DATE_TIME:
+					changed = parseDate(ascii(tiff, e));
+					break;
+				case TAG_DATE_TIME_ORIGINAL:
+					original = parseDate(ascii(tiff, e));
+					break;
+				case TAG_DATE_TIME_DIGITIZED:
+					digitized = parseDate(ascii(tiff, e));
+					break;
+				case TAG_PIXEL_X:
+					exifWidth = type == 3 ? tiff.getShort(e + 8) & 0xFFFF : tiff.getInt(e + 8);
+					break;
+				case TAG_PIXEL_Y:
+					exifHeight = type == 3 ? tiff.getShort(e + 8) & 0xFFFF : tiff.getInt(e + 8);
+					break;
+				default:
+					break;
+				}
+			}
+			ifd = exif;
+			exif = -1;
+		}
+		captured = original >= 0 ? original : digitized >= 0 ? digitized : changed >= 0 ? changed : captured;
+		// the frame header is authoritative; EXIF sizes only fill in for it
+		if (width == 0 && exifWidth > 0) width = exifWidth;
+		if (height == 0 && exifHeight > 0) height = exifHeight;
+	}
+
+	/**
+	 * Reads the ASCII value of an IFD entry
+	 * @param tiff the EXIF block
+	 * @param e offset of the entry
+	 * @return the value, or null if it lies outside the block
+	 */
+	private static String ascii(ByteBuffer tiff, int e) {
+		int count = tiff.getInt(e + 4);
+		if (count <= 0 || count > 64) return null;
+		int at = count <= 4 ? e + 8 : tiff.getInt(e + 8);
+		if (at < 0 || at + count > tiff.limit()) return null;
+		StringBuilder sb = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			char c = (char) (tiff.get(at + i) & 0xFF);
+			if (c == 0) break;
+			sb.append(c);
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Parses a date in one of the formats images use
+	 * @param s the date, as local time unless it names a zone
+	 * @return epoch millis, or -1 if it cannot be parsed or is left blank
+	 */
+	private static long parseDate(String s) {
+		if (s == null || s.isEmpty() || s.startsWith("0000")) return -1;
+		for (String f : DATE_FORMATS) {
+			SimpleDateFormat format = new SimpleDateFormat(f, Locale.ROOT);
+			format.setLenient(false);
+			try {
+				return format.parse(s).getTime();
+			} catch (ParseException e) {
+				// try the next format
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads up to the given number of bytes at a position of the file
+	 * @param ch the file
+	 * @param pos the position
+	 * @param length most bytes read
+	 * @return the bytes read, with the limit at their end, or null at the end of the file
+	 * @throws IOException
+	 */
+	private static ByteBuffer block(FileChannel ch, long pos, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining()) {
+			int n = ch.read(buf, pos + buf.position());
+			if (n < 0) break;
+		}
+		if (buf.position() == 0) return null;
+		buf.flip();
+		return buf;
+	}
+}
@@ -0,0 +1,449 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the style of a roaring bitmap. Values are split on
+ * their high 16 bits into containers, each holding the low 16 bits either as a sorted char
+ * array (sparse) or as a 65536 bit bitmap (dense), so intersections and unions work a
+ * container at a time and cost about as much as the smaller side
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class IntBitmap {
+	/** largest number of values a container keeps as a sorted array before switching to bits */
+	private static final int ARRAY_MAX = 4096;
+	/** number of longs in a bitmap container */
+	private static final int WORDS = 1024;
+
+	/**
+	 * The values sharing one high half, stored as an array or a bitmap
+	 */
+	private static final class Container {
+		/** sorted low halves while the container is an array, null otherwise */
+		char[] values;
+		/** 65536 bits while the container is a bitmap, null otherwise */
+		long[] bits;
+		/** number of values held */
+		int size;
+
+		Container(int capacity) {
+			values = new char[capacity];
+		}
+
+		Container(long[] bits, int size) {
+			this.bits = bits;
+			this.size = size;
+		}
+
+		boolean contains(char v) {
+			if (bits != null) return (bits[v >>> 6] & (1L << v)) != 0;
+			return Arrays.binarySearch(values, 0, size, v) >= 0;
+		}
+
+		boolean add(char v) {
+			if (bits != null) {
+				long mask = 1L << v;
+				if ((bits[v >>> 6] & mask) != 0) return false;
+				bits[v >>> 6] |= mask;
+				size++;
+				return true;
+			}
+			int i = Arrays.binarySearch(values, 0, size, v);
+			if (i >= 0) return false;
+			if (size == ARRAY_MAX) {
+				toBits();
+				return add(v);
+			}
+			i = -i - 1;
+			if (size == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, size * 2)));
+			System.arraycopy(values, i, values, i + 1, size - i);
+			values[i] = v;
+			size++;
+			return true;
+		}
+
+		boolean remove(char v) {
+			if (bits != null) {
+				long mask = 1L << v;
+				if ((bits[v >>> 6] & mask) == 0) return false;
+				bits[v >>> 6] &= ~mask;
+				size--;
+				if (size <= ARRAY_MAX / 2) toValues();
+				return true;
+			}
+			int i = Arrays.binarySearch(values, 0, size, v);
+			if (i < 0) return false;
+			System.arraycopy(values, i + 1, values, i, size - i - 1);
+			size--;
+			return true;
+		}
+
+		/**
+		 * Switches an array container to a bitmap
+		 */
+		void toBits() {
+			long[] b = new long[WORDS];
+			for (int i = 0; i < size; i++) {
+				b[values[i] >>> 6] |= 1L << values[i];
+			}
+			bits = b;
+			values = null;
+		}
+
+		/**
+		 * Switches a bitmap container to an array
+		 */
+		void toValues() {
+			char[] v = new char[Math.max(4, size)];
+			int n = 0;
+			for (int w = 0; w < WORDS; w++) {
+				long word = bits[w];
+				while (word != 0) {
+					v[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			values = v;
+			bits = null;
+		}
+
+		/**
+		 * Writes the values of the container, with the given high half, into an array
+		 * @param out the array being filled
+		 * @param pos index the first value is written at
+		 * @param high the high half shared by the values
+		 * @return index after the last value written
+		 */
+		int fill(int[] out, int pos, int high) {
+			if (bits == null) {
+				for (int i = 0; i < size; i++) {
+					out[pos++] = high | values[i];
+				}
+				return pos;
+			}
+			for (int w = 0; w < WORDS; w++) {
+				long word = bits[w];
+				while (word != 0) {
+					out[pos++] = high | ((w << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return pos;
+		}
+
+		Container copy() {
+			if (bits != null) return new Container(bits.clone(), size);
+			Container c = new Container(0);
+			c.values = Arrays.copyOf(values, Math.max(4, size));
+			c.size = size;
+			return c;
+		}
+
+		static Container and(Container a, Container b) {
+			if (a.bits != null && b.bits != null) {
+				long[] r = new long[WORDS];
+				int n = 0;
+				for (int w = 0; w < WORDS; w++) {
+					r[w] = a.bits[w] & b.bits[w];
+					n += Long.bitCount(r[w]);
+				}
+				Container c = new Container(r, n);
+				if (n <= ARRAY_MAX) c.toValues();
+				return c;
+			}
+			if (a.bits != null || (b.bits == null && a.size > b.size)) {
+				Container t = a;
+				a = b;
+				b = t;
+			}
+			// a is now an array no larger than b
+			Container c = new Container(Math.max(4, a.size));
+			if (b.bits != null || a.size * 16 < b.size) {
+				for (int i = 0; i < a.size; i++) {
+					if (b.contains(a.values[i])) c.values[c.size++] = a.values[i];
+				}
+				return c;
+			}
+			int i = 0;
+			int j = 0;
+			while (i < a.size && j < b.size) {
+				if (a.values[i] < b.values[j]) i++;
+				else if (a.values[i] > b.values[j]) j++;
+				else {
+					c.values[c.size++] = a.values[i];
+					i++;
+					j++;
+				}
+			}
+			return c;
+		}
+
+		static Container andNot(Container a, Container b) {
+			if (a.bits != null) {
+				long[] r = a.bits.clone();
+				if (b.bits != null) {
+					for (int w = 0; w < WORDS; w++) {
+						r[w] &= ~b.bits[w];
+					}
+				}
+				else {
+					for (int i = 0; i < b.size; i++) {
+						r[b.values[i] >>> 6] &= ~(1L << b.values[i]);
+					}
+				}
+				int n = 0;
+				for (int w = 0; w < WORDS; w++) {
+					n += Long.bitCount(r[w]);
+				}
+				Container c = new Container(r, n);
+				if (n <= ARRAY_MAX) c.toValues();
+				return c;
+			}
+			Container c = new Container(Math.max(4, a.size));
+			for (int i = 0; i < a.size; i++) {
+				if (!b.contains(a.values[i])) c.values[c.size++] = a.values[i];
+			}
+			return c;
+		}
+
+		static Container or(Container a, Container b) {
+			if (a.bits == null && b.bits == null && a.size + b.size <= ARRAY_MAX) {
+				Container c = new Container(Math.max(4, a.size + b.size));
+				int i = 0;
+				int j = 0;
+				while (i < a.size || j < b.size) {
+					if (j == b.size || (i < a.size && a.values[i] < b.values[j])) c.values[c.size++] = a.values[i++];
+					else if (i == a.size || b.values[j] < a.values[i]) c.values[c.size++] = b.values[j++];
+					else {
+						c.values[c.size++] = a.values[i++];
+						j++;
+					}
+				}
+				return c;
+			}
+			long[] r = new long[WORDS];
+			for (Container x : new Container[] {a, b}) {
+				if (x.bits != null) {
+					for (int w = 0; w < WORDS; w++) {
+						r[w] |= x.bits[w];
+					}
+				}
+				else {
+					for (int i = 0; i < x.size; i++) {
+						r[x.values[i] >>> 6] |= 1L << x.values[i];
+					}
+				}
+			}
+			int n = 0;
+			for (int w = 0; w < WORDS; w++) {
+				n += Long.bitCount(r[w]);
+			}
+			return new Container(r, n);
+		}
+	}
+
+	/** high halves of the containers, sorted */
+	private char[] keys = new char[4];
+	/** containers matching keys */
+	private Container[] containers = new Container[4];
+	/** number of containers */
+	private int count;
+	/** number of values held */
+	private int cardinality;
+
+	/**
+	 * Adds a value to the set
+	 * @param v the value, not negative
+	 * @return whether the value was not already in the set
+	 */
+	public boolean add(int v) {
+		char high = (char) (v >>> 16);
+		int i = Arrays.binarySearch(keys, 0, count, high);
+		if (i < 0) {
+			i = -i - 1;
+			insert(i, high, new Container(4));
+		}
+		if (!containers[i].add((char) v)) return false;
+		cardinality++;
+		return true;
+	}
+
+	/**
+	 * Removes a value from the set
+	 * @param v the value
+	 * @return whether the value was in the set
+	 */
+	public boolean remove(int v) {
+		int i = Arrays.binarySearch(keys, 0, count, (char) (v >>> 16));
+		if (i < 0 || !containers[i].remove((char) v)) return false;
+		cardinality--;
+		if (containers[i].size == 0) {
+			System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+			System.arraycopy(containers, i + 1, containers, i, count - i - 1);
+			containers[--count] = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a value is in the set
+	 * @param v the value
+	 * @return whether the set holds the value
+	 */
+	public boolean contains(int v) {
+		int i = Arrays.binarySearch(keys, 0, count, (char) (v >>> 16));
+		return i >= 0 && containers[i].contains((char) v);
+	}
+
+	/**
+	 * Returns the number of values in the set
+	 * @return the cardinality
+	 */
+	public int cardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * Checks whether the set is empty
+	 * @return whether the set holds no value
+	 */
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	/**
+	 * Returns the values of the set
+	 * @return the values in increasing order
+	 */
+	public int[] toArray() {
+		int[] out = new int[cardinality];
+		int pos = 0;
+		for (int i = 0; i < count; i++) {
+			pos = containers[i].fill(out, pos, keys[i] << 16);
+		}
+		return out;
+	}
+
+	/**
+	 * Returns a copy of the set that can be changed independently
+	 * @return the copy
+	 */
+	public IntBitmap copy() {
+		IntBitmap r = new IntBitmap();
+		r.keys = Arrays.copyOf(keys, Math.max(4, count));
+		r.containers = new Container[r.keys.length];
+		for (int i = 0; i < count; i++) {
+			r.containers[i] = containers[i].copy();
+		}
+		r.count = count;
+		r.cardinality = cardinality;
+		return r;
+	}
+
+	/**
+	 * Intersects two sets
+	 * @param a the first set
+	 * @param b the second set
+	 * @return a new set holding the values found in both
+	 */
+	public static IntBitmap and(IntBitmap a, IntBitmap b) {
+		IntBitmap r = new IntBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.count && j < b.count) {
+			if (a.keys[i] < b.keys[j]) i++;
+			else if (a.keys[i] > b.keys[j]) j++;
+			else {
+				Container c = Container.and(a.containers[i], b.containers[j]);
+				if (c.size > 0) r.append(a.keys[i], c);
+				i++;
+				j++;
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Subtracts one set from another
+	 * @param a the set being subtracted from
+	 * @param b the set being subtracted
+	 * @return a new set holding the values of a not found in b
+	 */
+	public static IntBitmap andNot(IntBitmap a, IntBitmap b) {
+		IntBitmap r = new IntBitmap();
+		int j = 0;
+		for (int i = 0; i < a.count; i++) {
+			while (j < b.count && b.keys[j] < a.keys[i]) j++;
+			Container c = j < b.count && b.keys[j] == a.keys[i] ? Container.andNot(a.containers[i], b.containers[j]) : a.containers[i].copy();
+			if (c.size > 0) r.append(a.keys[i], c);
+		}
+		return r;
+	}
+
+	/**
+	 * Unites two sets
+	 * @param a the first set
+	 * @param b the second set
+	 * @return a new set holding the values found in either
+	 */
+	public static IntBitmap or(IntBitmap a, IntBitmap b) {
+		IntBitmap r = new IntBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.count || j < b.count) {
+			if (j == b.count || (i < a.count && a.keys[i] < b.keys[j])) {
+				r.append(a.keys[i], a.containers[i].copy());
+				i++;
+			}
+			else if (i == a.count || b.keys[j] < a.keys[i]) {
+				r.append(b.keys[j], b.containers[j].copy());
+				j++;
+			}
+			else {
+				r.append(a.keys[i], Container.or(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Adds a container after every existing one
+	 * @param high the container's high half, larger than every existing key
+	 * @param c the container
+	 */
+	private void append(char high, Container c) {
+		insert(count, high, c);
+		cardinality += c.size;
+	}
+
+	/**
+	 * Inserts a container at the given position
+	 * @param i position of the new container
+	 * @param high the container's high half
+	 * @param c the container
+	 */
+	private void insert(int i, char high, Container c) {
+		if (count == keys.length) {
+			keys = Arrays.copyOf(keys, count * 2);
+			containers = Arrays.copyOf(containers, count * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, count - i);
+		System.arraycopy(containers, i, containers, i + 1, count - i);
+		keys[i] = high;
+		containers[i] = c;
+		count++;
+	}
+
+	/**
+	 * toString listing the values, for diagnostics
+	 */
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,32 @@
+package model;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A sequence read one page at a time, so a view can show the start of a large Album before
+ * the rest of it is read. Pages must be read on the thread that owns the store behind the
+ * cursor
+ * @param <T> the type of the entries
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public interface PageCursor<T> {
+	/**
+	 * Returns the number of entries
+	 * @return the size
+	 * @throws IOException
+	 */
+	int size() throws IOException;
+
+	/**
+	 * Reads one page
+	 * @param offset index of the first entry returned
+	 * @param limit largest number of entries returned
+	 * @return the entries of the page, in order
+	 * @throws IOException
+	 */
+	List<T> page(int offset, int limit) throws IOException;
+}
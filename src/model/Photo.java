@@ -13,14 +13,28 @@ import java.text.SimpleDateFormat;
  */
 
 public class Photo implements Serializable {
+	/** serial ID for version */
+	private static final long serialVersionUID = 1L;
 	/** file address to the current Photo */
 	public String address;
-	/** time that the current Photo was last modified at */
+	/** time that the current Photo was captured at if its header says, otherwise last modified at */
 	public Calendar time = null;
 	/** caption of the current Photo */
 	public String caption;
 	/** all Tags on the current Photo */
 	public LinkedList<Tag> tags;
+	/** width in pixels read from the file's header, 0 if unknown */
+	public int width;
+	/** height in pixels read from the file's header, 0 if unknown */
+	public int height;
+	/** EXIF orientation read from the file's header, 0 until the header was read */
+	public int orientation;
+	/** dense id from the owning User's PhotoRegistry, -1 while no Album of the User holds the Photo */
+	public transient int id = -1;
+	/** tag index of the User whose Albums hold the Photo, null while no indexed Album does */
+	transient TagIndex index;
+	/** whether the file was found to be gone, until it is seen again; not saved */
+	public transient boolean missing;
 	
 	/**
 	 * Constructor for a new Photo, generates empty caption and Tags
@@ -33,6 +47,18 @@ public class Photo implements Serializable {
 		time = getLastModified();
 	}
 	
+	/**
+	 * Constructor for a Photo whose time is already known, such as one read back from storage
+	 * @param location the file address corresponding to the Photo
+	 * @param t the time the Photo was last modified at
+	 */
+	public Photo (String location, Calendar t) {
+		address = location;
+		caption = "";
+		tags = new LinkedList<Tag>();
+		time = t;
+	}
+	
 	/**
 	 * Finds the time the current Photo was last modified on
 	 * @return when the current Photo was last modified 
@@ -49,6 +75,14 @@ public class Photo implements Serializable {
 		return t;
 	}
 	
+	/**
+	 * Checks whether the file's header was read, so the time, size and orientation are final
+	 * @return whether the metadata is known
+	 */
+	public boolean hasMetadata() {
+		return orientation != 0;
+	}
+	
 	/**
 	 * Returns the current Photo's file address
 	 * @return the current Photo's file address
@@ -79,6 +113,7 @@ public class Photo implements Serializable {
 	 */
 	public void addTag(Tag x) {
 		tags.add(x);
+		if (index != null) index.tagAdded(this, x);
 	}
 	
 	/**
@@ -86,7 +121,7 @@ public class Photo implements Serializable {
 	 * @param x the Tag being deleted
 	 */
 	public void deleteTag(Tag x) {
-		tags.remove(x);
+		if (tags.remove(x) && index != null) index.tagRemoved(this, x);
 	}
 	
 	/**
@@ -112,10 +147,8 @@ public class Photo implements Serializable {
 	 * @return whether the Photo contains a Tag matching the key value pair
 	 */
 	public boolean contains(String[] dict) {
-		for (Tag tg: tags) {
-			if (tg.tname.equals(dict[0]) && tg.tvalue.equals(dict[1])) return true;
-		}
-		return false;
+		Tag tg = TagDictionary.find(dict[0], dict[1]);
+		return tg != null && hasTag(tg);
 	}
 	
 	/**
@@ -124,12 +157,9 @@ public class Photo implements Serializable {
 	 * @return whether the Photo contains a Tag matching the given Tag
 	 */
 	public boolean hasTag(Tag x) {
-		for (int i = 0; i < tags.size();i++) {
-			if(tags.get(i).equals(x)) {
-				return true;
-			}
+		for (Tag tg : tags) {
+			if (tg == x) return true;
 		}
-		
 		return false;
 	}
 }
@@ -0,0 +1,150 @@
+package model;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Catalog of the Photos of one User. It holds exactly one Photo per canonical file path, which
+ * every Album of the User shares, so copying or moving a Photo between Albums moves a reference
+ * and its caption and Tags cannot diverge between Albums. Each Photo gets a dense int id, so
+ * Album membership and index postings can be sets of ints instead of lists of objects, and a
+ * count of the Albums holding it; once no Album does the Photo is dropped and its id reused,
+ * so the id space stays compact. Photos are found by path through a single hash map
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class PhotoRegistry {
+	/** registered Photos by id */
+	private Photo[] photos = new Photo[16];
+	/** number of Albums holding each Photo, by id */
+	private int[] refs = new int[16];
+	/** ids freed by released Photos, reused before new ones */
+	private int[] free = new int[16];
+	/** number of freed ids */
+	private int freeCount;
+	/** next id never handed out */
+	private int nextId;
+	/** number of registered Photos */
+	private int size;
+	/** canonical path of each registered Photo, by id */
+	private String[] paths = new String[16];
+	/** ids keyed by canonical path */
+	private final HashMap<String, Integer> byPath = new HashMap<String, Integer>();
+
+	/**
+	 * Returns the canonical form of a file address: absolute, with . and .. resolved. The file
+	 * system is not consulted, so this is cheap and works for files that have gone missing
+	 * @param address the file address
+	 * @return the canonical path, or the address itself if it is not a valid path
+	 */
+	public static String canonical(String address) {
+		try {
+			return Paths.get(address).toAbsolutePath().normalize().toString();
+		} catch (InvalidPathException e) {
+			return address;
+		}
+	}
+
+	/**
+	 * Records that one more Album holds the given Photo, giving it an id the first time. Albums
+	 * hand in the cataloged Photo for its path when there is one, see get(String)
+	 * @param x the Photo
+	 * @return whether the Photo was not registered before
+	 */
+	boolean register(Photo x) {
+		if (holds(x)) {
+			refs[x.id]++;
+			return false;
+		}
+		int id = freeCount > 0 ? free[--freeCount] : nextId++;
+		if (id == photos.length) {
+			photos = Arrays.copyOf(photos, id * 2);
+			refs = Arrays.copyOf(refs, id * 2);
+			paths = Arrays.copyOf(paths, id * 2);
+		}
+		String path = canonical(x.address);
+		photos[id] = x;
+		refs[id] = 1;
+		paths[id] = path;
+		x.id = id;
+		size++;
+		if (!byPath.containsKey(path)) byPath.put(path, id);
+		return true;
+	}
+
+	/**
+	 * Records that one less Album holds the given Photo, freeing its id once no Album does
+	 * @param x the Photo
+	 * @return whether the Photo is no longer registered
+	 */
+	boolean release(Photo x) {
+		if (!holds(x) || --refs[x.id] > 0) return false;
+		int id = x.id;
+		Integer mapped = byPath.get(paths[id]);
+		if (mapped != null && mapped == id) byPath.remove(paths[id]);
+		photos[id] = null;
+		paths[id] = null;
+		x.id = -1;
+		size--;
+		if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+		free[freeCount++] = id;
+		return true;
+	}
+
+	/**
+	 * Checks whether the given Photo is registered here, rather than carrying another User's id
+	 * @param x the Photo
+	 * @return whether the Photo's id belongs to this registry
+	 */
+	public boolean holds(Photo x) {
+		return x.id >= 0 && x.id < nextId && photos[x.id] == x;
+	}
+
+	/**
+	 * Returns the Photo with the given id
+	 * @param id the id
+	 * @return the Photo, or null if the id is free
+	 */
+	public Photo get(int id) {
+		return id >= 0 && id < nextId ? photos[id] : null;
+	}
+
+	/**
+	 * Returns the id of the Photo at the given file address, however the path is spelled
+	 * @param address the file address
+	 * @return the id, or -1 if no registered Photo has the path
+	 */
+	public int idOf(String address) {
+		Integer id = byPath.get(canonical(address));
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the cataloged Photo at the given file address, however the path is spelled
+	 * @param address the file address
+	 * @return the Photo, or null if no registered Photo has the path
+	 */
+	public Photo get(String address) {
+		return get(idOf(address));
+	}
+
+	/**
+	 * Returns the number of registered Photos
+	 * @return how many distinct Photos the User's Albums hold
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns an upper bound of the ids handed out, for sizing arrays indexed by id
+	 * @return one more than the largest id ever handed out
+	 */
+	public int capacity() {
+		return nextId;
+	}
+}
@@ -0,0 +1,342 @@
+package model;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The ordered Photos of an Album. Photos sit in an array of slots in Album order; removing one
+ * leaves an empty slot behind, and a Fenwick tree over the occupied slots turns a list index
+ * into a slot and back in O(log n). An identity map from Photo to slot makes membership and
+ * removal of a given Photo O(1) apart from that tree update, and appending only ever writes
+ * the next slot. The slots are compacted once half of them are empty. Like an Album, the
+ * sequence holds each Photo at most once
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class PhotoSequence extends AbstractList<Photo> implements Serializable {
+	/** serial ID for version */
+	private static final long serialVersionUID = 1L;
+	/** Photos in Album order, null where one was removed */
+	private Photo[] slots;
+	/** Fenwick tree counting occupied slots, 1-based */
+	private int[] tree;
+	/** number of slots written so far, occupied or not */
+	private int used;
+	/** number of Photos held */
+	private int size;
+	/** slot of every Photo held */
+	private IdentityHashMap<Photo, Integer> slotOf;
+
+	/**
+	 * Constructor for an empty sequence
+	 */
+	public PhotoSequence() {
+		clear();
+	}
+
+	/**
+	 * Returns the number of Photos held
+	 * @return the size
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the given Photo is held, by identity
+	 * @param o the Photo
+	 * @return whether the sequence holds it
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return slotOf.containsKey(o);
+	}
+
+	/**
+	 * Returns the Photo at a position in Album order
+	 * @param index the position
+	 * @return the Photo
+	 */
+	@Override
+	public Photo get(int index) {
+		return slots[slot(index)];
+	}
+
+	/**
+	 * Returns the position of a Photo in Album order
+	 * @param o the Photo
+	 * @return the position, or -1 if the Photo is not held
+	 */
+	@Override
+	public int indexOf(Object o) {
+		Integer s = slotOf.get(o);
+		return s == null ? -1 : prefix(s) - 1;
+	}
+
+	/**
+	 * Returns the position of a Photo in Album order, which is its only position
+	 * @param o the Photo
+	 * @return the position, or -1 if the Photo is not held
+	 */
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	/**
+	 * Appends a Photo unless it is already held
+	 * @param x the Photo
+	 * @return whether the Photo was added
+	 */
+	@Override
+	public boolean add(Photo x) {
+		if (slotOf.containsKey(x)) return false;
+		if (used == slots.length) grow();
+		slots[used] = x;
+		slotOf.put(x, used);
+		update(used, 1);
+		used++;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Inserts a Photo at a position unless it is already held. Only appending is cheap; an
+	 * insert anywhere else rewrites the slots
+	 * @param index the position
+	 * @param x the Photo
+	 */
+	@Override
+	public void add(int index, Photo x) {
+		if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		if (index == size) {
+			add(x);
+			return;
+		}
+		if (slotOf.containsKey(x)) return;
+		Photo[] old = slots;
+		int n = used;
+		clear(Math.max(16, Integer.highestOneBit(size + 1) << 1));
+		int i = 0;
+		for (int s = 0; s < n; s++) {
+			if (old[s] == null) continue;
+			if (i++ == index) add(x);
+			add(old[s]);
+		}
+	}
+
+	/**
+	 * Replaces the Photo at a position; if the new Photo is held elsewhere it is moved here
+	 * @param index the position
+	 * @param x the new Photo
+	 * @return the Photo that was at the position
+	 */
+	@Override
+	public Photo set(int index, Photo x) {
+		int s = slot(index);
+		Photo old = slots[s];
+		if (old == x) return old;
+		Integer at = slotOf.remove(x);
+		if (at != null) {
+			slots[at] = null;
+			update(at, -1);
+			size--;
+		}
+		slotOf.remove(old);
+		slots[s] = x;
+		slotOf.put(x, s);
+		modCount++;
+		if (at != null) compact();
+		return old;
+	}
+
+	/**
+	 * Removes the Photo at a position
+	 * @param index the position
+	 * @return the Photo removed
+	 */
+	@Override
+	public Photo remove(int index) {
+		Photo x = get(index);
+		remove(x);
+		return x;
+	}
+
+	/**
+	 * Removes a Photo, by identity
+	 * @param o the Photo
+	 * @return whether the Photo was held
+	 */
+	@Override
+	public boolean remove(Object o) {
+		Integer s = slotOf.remove(o);
+		if (s == null) return false;
+		slots[s] = null;
+		update(s, -1);
+		size--;
+		modCount++;
+		compact();
+		return true;
+	}
+
+	/**
+	 * Removes every Photo
+	 */
+	@Override
+	public void clear() {
+		clear(16);
+	}
+
+	/**
+	 * Iterates over the slots directly rather than by position
+	 * @return an iterator in Album order
+	 */
+	@Override
+	public Iterator<Photo> iterator() {
+		return new Iterator<Photo>() {
+			/** next slot to look at */
+			private int next = skip(0);
+			/** slot of the Photo last returned, -1 if there is none */
+			private int last = -1;
+			/** modCount the iterator agrees with */
+			private int expected = modCount;
+
+			private int skip(int s) {
+				while (s < used && slots[s] == null) s++;
+				return s;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < used;
+			}
+
+			@Override
+			public Photo next() {
+				if (modCount != expected) throw new ConcurrentModificationException();
+				if (next >= used) throw new NoSuchElementException();
+				last = next;
+				next = skip(next + 1);
+				return slots[last];
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0) throw new IllegalStateException();
+				if (modCount != expected) throw new ConcurrentModificationException();
+				Photo x = slots[last];
+				slotOf.remove(x);
+				slots[last] = null;
+				update(last, -1);
+				size--;
+				modCount++;
+				expected = modCount;
+				last = -1;
+			}
+		};
+	}
+
+	/**
+	 * Empties the sequence with room for the given number of slots
+	 * @param capacity number of slots
+	 */
+	private void clear(int capacity) {
+		slots = new Photo[capacity];
+		tree = new int[capacity + 1];
+		slotOf = new IdentityHashMap<Photo, Integer>();
+		used = 0;
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Doubles the slots, or compacts them in place when at least half are empty
+	 */
+	private void grow() {
+		if (size * 2 <= used) rebuild(slots.length);
+		else rebuild(slots.length * 2);
+	}
+
+	/**
+	 * Compacts the slots once at least half of them are empty
+	 */
+	private void compact() {
+		if (used >= 64 && size * 2 <= used) rebuild(slots.length);
+	}
+
+	/**
+	 * Rewrites the held Photos into the first slots of new arrays
+	 * @param capacity number of slots
+	 */
+	private void rebuild(int capacity) {
+		Photo[] old = slots;
+		int n = used;
+		slots = new Photo[capacity];
+		tree = new int[capacity + 1];
+		used = 0;
+		for (int s = 0; s < n; s++) {
+			if (old[s] != null) {
+				slots[used] = old[s];
+				slotOf.put(old[s], used);
+				used++;
+			}
+		}
+		// the occupied slots are now exactly those below used, so the tree is built in one pass
+		for (int i = 1; i <= capacity; i++) {
+			if (i <= used) tree[i] += 1;
+			int parent = i + (i & -i);
+			if (parent <= capacity) tree[parent] += tree[i];
+		}
+	}
+
+	/**
+	 * Adds to the count of a slot
+	 * @param s the slot
+	 * @param delta the change
+	 */
+	private void update(int s, int delta) {
+		for (int i = s + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	/**
+	 * Counts the occupied slots up to and including a slot
+	 * @param s the slot
+	 * @return the number of Photos at or before the slot
+	 */
+	private int prefix(int s) {
+		int sum = 0;
+		for (int i = s + 1; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Finds the slot holding the Photo at a position, descending the Fenwick tree
+	 * @param index the position
+	 * @return the slot
+	 */
+	private int slot(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		int pos = 0;
+		int rest = index + 1;
+		for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+			int i = pos + step;
+			if (i < tree.length && tree[i] < rest) {
+				pos = i;
+				rest -= tree[i];
+			}
+		}
+		return pos;
+	}
+}
@@ -0,0 +1,655 @@
+package model;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Boolean search over the Photos of one User, for example
+ * (person=alice OR person=bob) AND location=nyc AND date>=01/01/2020 AND NOT event=work.
+ * Terms are tag=value, tag!=value or date compared with =, !=, &lt;, &lt;=, &gt;, &gt;= to a
+ * mm/dd/yyyy day; NOT binds tighter than AND, which binds tighter than OR, and values with
+ * spaces or operators go in double quotes. Queries are answered from the User's TagIndex and
+ * TimeIndex: each AND evaluates its cheapest terms first, stops once the running intersection
+ * is empty and subtracts its NOT terms last. Every run is profiled, see explain()
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Query {
+	/** the query as typed */
+	private final String text;
+	/** root of the parsed expression */
+	private final Node root;
+	/** number of Photos matched by the last run, -1 before the first */
+	private int matched = -1;
+	/** time the last run took, in nanoseconds */
+	private long elapsed;
+
+	/**
+	 * Constructor for a parsed query
+	 * @param text the query as typed
+	 * @param root root of the parsed expression
+	 */
+	private Query(String text, Node root) {
+		this.text = text;
+		this.root = root;
+	}
+
+	/**
+	 * Parses a query
+	 * @param text the query
+	 * @return the parsed query
+	 * @throws ParseException if the query is malformed, with the offset of the problem
+	 */
+	public static Query parse(String text) throws ParseException {
+		Parser p = new Parser(text);
+		Node root = p.or();
+		if (p.kind != Parser.END) throw p.error("Unexpected " + p.describe());
+		return new Query(text, root);
+	}
+
+	/**
+	 * Plans and runs the query over the Photos of a User
+	 * @param us the User
+	 * @return the matching Photos
+	 */
+	public List<Photo> run(User us) {
+		long t = System.nanoTime();
+		Context cx = new Context(us);
+		root.estimate(cx);
+		IntBitmap found = root.run(cx);
+		List<Photo> result = us.getTagIndex().resolve(found);
+		elapsed = System.nanoTime() - t;
+		matched = result.size();
+		return result;
+	}
+
+	/**
+	 * Describes how the query was evaluated by its last run: the order terms ran in, the
+	 * estimated and actual number of Photos at every step, the time each step took and which
+	 * were skipped because an intersection was already empty
+	 * @return the plan, one step per line
+	 */
+	public String explain() {
+		StringBuilder sb = new StringBuilder();
+		if (matched < 0) sb.append("not run\n");
+		else sb.append(matched).append(" photos in ").append(millis(elapsed)).append('\n');
+		root.explain(sb, "");
+		return sb.toString();
+	}
+
+	/**
+	 * toString giving the query as typed
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	/**
+	 * Formats a duration for explain()
+	 * @param nanos the duration in nanoseconds
+	 * @return the duration in milliseconds
+	 */
+	private static String millis(long nanos) {
+		return String.format("%.3f ms", nanos / 1e6);
+	}
+
+	/**
+	 * The indexes a run works from
+	 */
+	private static final class Context {
+		final PhotoRegistry registry;
+		final TagIndex tags;
+		final TimeIndex times;
+		/** every registered id, built only if a NOT has nothing to subtract from */
+		private IntBitmap universe;
+
+		Context(User us) {
+			registry = us.getRegistry();
+			tags = us.getTagIndex();
+			times = us.getTimeIndex();
+		}
+
+		IntBitmap universe() {
+			if (universe == null) {
+				universe = new IntBitmap();
+				for (int id = 0; id < registry.capacity(); id++) {
+					if (registry.get(id) != null) universe.add(id);
+				}
+			}
+			return universe;
+		}
+	}
+
+	/**
+	 * A node of the parsed expression, along with its profile from the last run
+	 */
+	private abstract static class Node {
+		/** estimated number of matches */
+		long estimate;
+		/** actual number of matches, or of ids left when the node filtered an AND; -1 if skipped */
+		int rows = -1;
+		/** time spent evaluating, in nanoseconds */
+		long nanos;
+
+		/**
+		 * Estimates the number of matches, recording the estimate
+		 * @param cx the indexes
+		 * @return the estimate
+		 */
+		abstract long estimate(Context cx);
+
+		/**
+		 * Evaluates the node
+		 * @param cx the indexes
+		 * @return the ids of the matches, which the caller must not change
+		 */
+		abstract IntBitmap eval(Context cx);
+
+		/**
+		 * Describes the node itself, without children
+		 * @return the description
+		 */
+		abstract String label();
+
+		/**
+		 * Evaluates the node, recording its profile
+		 * @param cx the indexes
+		 * @return the ids of the matches, which the caller must not change
+		 */
+		IntBitmap run(Context cx) {
+			long t = System.nanoTime();
+			IntBitmap r = eval(cx);
+			nanos = System.nanoTime() - t;
+			rows = r.cardinality();
+			return r;
+		}
+
+		/**
+		 * Intersects the running result of an AND with the node, recording as the node's profile
+		 * the ids left and the time taken including the intersection
+		 * @param cx the indexes
+		 * @param r the running result
+		 * @return the ids found in both
+		 */
+		IntBitmap filter(Context cx, IntBitmap r) {
+			long t = System.nanoTime();
+			IntBitmap out = IntBitmap.and(r, run(cx));
+			nanos = System.nanoTime() - t;
+			rows = out.cardinality();
+			return out;
+		}
+
+		/**
+		 * Clears the profile of a node that will not be evaluated
+		 */
+		void skip() {
+			rows = -1;
+			nanos = 0;
+		}
+
+		/**
+		 * Appends the node's profile to a plan
+		 * @param sb the plan
+		 * @param indent indentation of the node
+		 */
+		void explain(StringBuilder sb, String indent) {
+			sb.append(indent).append(label()).append("  est=").append(estimate);
+			if (rows < 0) sb.append(" skipped\n");
+			else sb.append(" rows=").append(rows).append(' ').append(millis(nanos)).append('\n');
+		}
+	}
+
+	/**
+	 * Photos carrying a Tag
+	 */
+	private static final class TagTerm extends Node {
+		final String name;
+		final String value;
+
+		TagTerm(String name, String value) {
+			this.name = name;
+			this.value = value;
+		}
+
+		@Override
+		long estimate(Context cx) {
+			Tag tg = TagDictionary.find(name, value);
+			return estimate = tg == null ? 0 : cx.tags.count(tg);
+		}
+
+		@Override
+		IntBitmap eval(Context cx) {
+			Tag tg = TagDictionary.find(name, value);
+			IntBitmap p = tg == null ? null : cx.tags.postings(tg, false);
+			return p == null ? new IntBitmap() : p;
+		}
+
+		@Override
+		String label() {
+			return name + "=" + value;
+		}
+	}
+
+	/**
+	 * Photos taken strictly between two times
+	 */
+	private static final class DateTerm extends Node {
+		final String text;
+		final long from;
+		final long to;
+
+		DateTerm(String text, long from, long to) {
+			this.text = text;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		long estimate(Context cx) {
+			return estimate = cx.times.count(from, to);
+		}
+
+		@Override
+		IntBitmap eval(Context cx) {
+			int[] ids = cx.times.range(from, to);
+			Arrays.sort(ids);
+			IntBitmap r = new IntBitmap();
+			for (int id : ids) {
+				r.add(id);
+			}
+			return r;
+		}
+
+		/**
+		 * Checks the running result against the range directly when it is smaller than the range
+		 */
+		@Override
+		IntBitmap filter(Context cx, IntBitmap r) {
+			if (r.cardinality() >= estimate) return super.filter(cx, r);
+			long t = System.nanoTime();
+			IntBitmap out = new IntBitmap();
+			for (int id : r.toArray()) {
+				long taken = cx.registry.get(id).time.getTimeInMillis();
+				if (taken > from && taken < to) out.add(id);
+			}
+			nanos = System.nanoTime() - t;
+			rows = out.cardinality();
+			return out;
+		}
+
+		@Override
+		String label() {
+			return text;
+		}
+	}
+
+	/**
+	 * Photos not matching a node
+	 */
+	private static final class Not extends Node {
+		final Node child;
+
+		Not(Node child) {
+			this.child = child;
+		}
+
+		@Override
+		long estimate(Context cx) {
+			return estimate = Math.max(0, cx.registry.size() - child.estimate(cx));
+		}
+
+		@Override
+		IntBitmap eval(Context cx) {
+			return IntBitmap.andNot(cx.universe(), child.run(cx));
+		}
+
+		/**
+		 * Subtracts the child's matches from the running result instead of intersecting
+		 */
+		@Override
+		IntBitmap filter(Context cx, IntBitmap r) {
+			long t = System.nanoTime();
+			IntBitmap out = IntBitmap.andNot(r, child.run(cx));
+			nanos = System.nanoTime() - t;
+			rows = out.cardinality();
+			return out;
+		}
+
+		@Override
+		void skip() {
+			super.skip();
+			child.skip();
+		}
+
+		@Override
+		String label() {
+			return "NOT";
+		}
+
+		@Override
+		void explain(StringBuilder sb, String indent) {
+			super.explain(sb, indent);
+			child.explain(sb, indent + "  ");
+		}
+	}
+
+	/**
+	 * Photos matching every one of several nodes
+	 */
+	private static final class And extends Node {
+		final List<Node> children;
+		/** children in the order the last run evaluated them */
+		List<Node> order;
+
+		And(List<Node> children) {
+			this.children = children;
+			this.order = children;
+		}
+
+		@Override
+		long estimate(Context cx) {
+			long est = cx.registry.size();
+			for (Node n : children) {
+				est = Math.min(est, n.estimate(cx));
+			}
+			return estimate = est;
+		}
+
+		@Override
+		IntBitmap eval(Context cx) {
+			// positive terms cheapest first, then NOTs subtracted from what is left
+			ArrayList<Node> plan = new ArrayList<Node>();
+			ArrayList<Node> negated = new ArrayList<Node>();
+			for (Node n : children) {
+				if (n instanceof Not) negated.add(n);
+				else plan.add(n);
+			}
+			Collections.sort(plan, Comparator.comparingLong(n -> n.estimate));
+			Collections.sort(negated, Comparator.comparingLong(n -> -((Not) n).child.estimate));
+			plan.addAll(negated);
+			order = plan;
+			IntBitmap r = null;
+			for (Node n : plan) {
+				if (r != null && r.isEmpty()) {
+					n.skip();
+					continue;
+				}
+				if (r == null) r = n.run(cx);
+				else r = n.filter(cx, r);
+			}
+			return r;
+		}
+
+		@Override
+		String label() {
+			return "AND";
+		}
+
+		@Override
+		void skip() {
+			super.skip();
+			for (Node n : children) {
+				n.skip();
+			}
+		}
+
+		@Override
+		void explain(StringBuilder sb, String indent) {
+			super.explain(sb, indent);
+			for (Node n : order) {
+				n.explain(sb, indent + "  ");
+			}
+		}
+	}
+
+	/**
+	 * Photos matching any of several nodes
+	 */
+	private static final class Or extends Node {
+		final List<Node> children;
+
+		Or(List<Node> children) {
+			this.children = children;
+		}
+
+		@Override
+		long estimate(Context cx) {
+			long est = 0;
+			for (Node n : children) {
+				est += n.estimate(cx);
+			}
+			return estimate = Math.min(est, cx.registry.size());
+		}
+
+		@Override
+		IntBitmap eval(Context cx) {
+			IntBitmap r = new IntBitmap();
+			for (Node n : children) {
+				if (r.cardinality() == cx.registry.size()) n.skip();
+				else r = IntBitmap.or(r, n.run(cx));
+			}
+			return r;
+		}
+
+		@Override
+		String label() {
+			return "OR";
+		}
+
+		@Override
+		void skip() {
+			super.skip();
+			for (Node n : children) {
+				n.skip();
+			}
+		}
+
+		@Override
+		void explain(StringBuilder sb, String indent) {
+			super.explain(sb, indent);
+			for (Node n : children) {
+				n.explain(sb, indent + "  ");
+			}
+		}
+	}
+
+	/**
+	 * Recursive descent parser over a hand-rolled tokenizer
+	 */
+	private static final class Parser {
+		static final int END = 0;
+		static final int WORD = 1;
+		static final int OP = 2;
+		static final int LPAREN = 3;
+		static final int RPAREN = 4;
+		static final int AND = 5;
+		static final int OR = 6;
+		static final int NOT = 7;
+
+		final String in;
+		/** position after the current token */
+		int pos;
+		/** kind of the current token */
+		int kind;
+		/** text of the current token */
+		String token;
+		/** offset of the current token */
+		int start;
+
+		Parser(String in) throws ParseException {
+			this.in = in;
+			next();
+		}
+
+		Node or() throws ParseException {
+			List<Node> terms = new ArrayList<Node>();
+			terms.add(and());
+			while (kind == OR) {
+				next();
+				terms.add(and());
+			}
+			return terms.size() == 1 ? terms.get(0) : new Or(flatten(terms, Or.class));
+		}
+
+		Node and() throws ParseException {
+			List<Node> terms = new ArrayList<Node>();
+			terms.add(not());
+			while (kind == AND) {
+				next();
+				terms.add(not());
+			}
+			return terms.size() == 1 ? terms.get(0) : new And(flatten(terms, And.class));
+		}
+
+		Node not() throws ParseException {
+			if (kind == NOT) {
+				next();
+				return new Not(not());
+			}
+			if (kind == LPAREN) {
+				next();
+				Node n = or();
+				if (kind != RPAREN) throw error("Expected ) but found " + describe());
+				next();
+				return n;
+			}
+			return term();
+		}
+
+		Node term() throws ParseException {
+			if (kind != WORD) throw error("Expected a term but found " + describe());
+			String name = token;
+			next();
+			if (kind != OP) throw error("Expected an operator after " + name);
+			String op = token;
+			int at = start;
+			next();
+			if (kind != WORD) throw error("Expected a value after " + name + op);
+			String value = token;
+			next();
+			if (name.equalsIgnoreCase("date")) return date(op, value, at);
+			if (op.equals("=")) return new TagTerm(name, value);
+			if (op.equals("!=")) return new Not(new TagTerm(name, value));
+			throw new ParseException("Tags can only be compared with = or !=", at);
+		}
+
+		/**
+		 * Turns a date comparison into the range of times it matches
+		 * @param op the comparison
+		 * @param value the day, in mm/dd/yyyy format
+		 * @param at offset of the comparison
+		 * @return the term
+		 * @throws ParseException if the day is malformed
+		 */
+		Node date(String op, String value, int at) throws ParseException {
+			SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy");
+			format.setLenient(false);
+			// parse(String) stops at the end of the day and ignores whatever follows it
+			ParsePosition end = new ParsePosition(0);
+			Date parsed = format.parse(value, end);
+			if (parsed == null || end.getIndex() != value.length()) {
+				throw new ParseException("Invalid date format: " + value, at);
+			}
+			Calendar day = Calendar.getInstance();
+			day.setTime(parsed);
+			long first = day.getTimeInMillis();
+			day.add(Calendar.DAY_OF_MONTH, 1);
+			long next = day.getTimeInMillis();
+			String text = "date" + op + value;
+			switch (op) {
+			case "=": return new DateTerm(text, first - 1, next);
+			case "!=": return new Not(new DateTerm("date=" + value, first - 1, next));
+			case "<": return new DateTerm(text, Long.MIN_VALUE, first);
+			case "<=": return new DateTerm(text, Long.MIN_VALUE, next);
+			case ">": return new DateTerm(text, next - 1, Long.MAX_VALUE);
+			default: return new DateTerm(text, first - 1, Long.MAX_VALUE);
+			}
+		}
+
+		/**
+		 * Pulls the children of nested nodes of the same kind up into one list, so the planner
+		 * can order all of them together
+		 * @param terms the nodes being joined
+		 * @param type the joining node's class
+		 * @return the flattened list
+		 */
+		static List<Node> flatten(List<Node> terms, Class<?> type) {
+			List<Node> out = new ArrayList<Node>();
+			for (Node n : terms) {
+				if (n instanceof And && type == And.class) out.addAll(((And) n).children);
+				else if (n instanceof Or && type == Or.class) out.addAll(((Or) n).children);
+				else out.add(n);
+			}
+			return out;
+		}
+
+		/**
+		 * Reads the next token
+		 * @throws ParseException if a quoted value is not closed
+		 */
+		void next() throws ParseException {
+			while (pos < in.length() && Character.isWhitespace(in.charAt(pos))) pos++;
+			start = pos;
+			if (pos == in.length()) {
+				kind = END;
+				token = "";
+				return;
+			}
+			char c = in.charAt(pos);
+			if (c == '(' || c == ')') {
+				kind = c == '(' ? LPAREN : RPAREN;
+				token = String.valueOf(c);
+				pos++;
+			}
+			else if (c == '=' || c == '<' || c == '>' || c == '!') {
+				int end = pos + 1;
+				if (end < in.length() && in.charAt(end) == '=' && c != '=') end++;
+				token = in.substring(pos, end);
+				if (token.equals("!")) throw error("Expected != but found !");
+				kind = OP;
+				pos = end;
+			}
+			else if (c == '"') {
+				StringBuilder sb = new StringBuilder();
+				pos++;
+				while (pos < in.length() && in.charAt(pos) != '"') {
+					if (in.charAt(pos) == '\\' && pos + 1 < in.length()) pos++;
+					sb.append(in.charAt(pos++));
+				}
+				if (pos == in.length()) throw error("Unclosed quote");
+				pos++;
+				kind = WORD;
+				token = sb.toString();
+			}
+			else {
+				int end = pos;
+				while (end < in.length() && !Character.isWhitespace(in.charAt(end)) && "()=<>!\"".indexOf(in.charAt(end)) < 0) end++;
+				token = in.substring(pos, end);
+				pos = end;
+				if (token.equalsIgnoreCase("AND")) kind = AND;
+				else if (token.equalsIgnoreCase("OR")) kind = OR;
+				else if (token.equalsIgnoreCase("NOT")) kind = NOT;
+				else kind = WORD;
+			}
+		}
+
+		String describe() {
+			return kind == END ? "end of query" : "\"" + token + "\"";
+		}
+
+		ParseException error(String message) {
+			return new ParseException(message, start);
+		}
+	}
+}
@@ -1,40 +1,73 @@
 package model;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 /**
- * Handles operations related to the Tag object
+ * Handles operations related to the Tag object. Tags are immutable and interned: use
+ * Tag.of to get the one Tag for a name and value
  * @author Jason Mooney (jcm370)
  * @author Crystal Zhang (cz298)
  * 
  */
 
 public class Tag implements Serializable {
+	/** serial ID for version */
+	private static final long serialVersionUID = 1L;
 	/** key for the current Tag */
-	public String tname;
+	public final String tname;
 	/** value for the current Tag */
-	public String tvalue;
+	public final String tvalue;
+	/** id of the Tag in the TagDictionary */
+	public final int id;
 	
 	/**
-	 * Constructor for a new Tag
+	 * Constructor for a new Tag, called only by the TagDictionary
 	 * @param name the key of the Tag
 	 * @param value the value of the Tag
+	 * @param id the id of the Tag
 	 */
-	public Tag (String name, String value) {
+	Tag (String name, String value, int id) {
 		tname = name;
 		tvalue = value;
+		this.id = id;
 	}
 	
 	/**
-	 * Checks if two Tags are equivalent
+	 * Returns the Tag with the given name and value
+	 * @param name the key of the Tag
+	 * @param value the value of the Tag
+	 * @return the interned Tag
+	 */
+	public static Tag of(String name, String value) {
+		return TagDictionary.intern(name, value);
+	}
+	
+	/**
+	 * Checks if two Tags are equivalent; interned Tags are equal only to themselves
 	 * @param compare the Tag being compared to the current Tag
 	 * @return whether the Tags are equivalent
 	 */
-	public boolean equals(Tag compare) {
-		if (this.tname.equals(compare.tname) && this.tvalue.equals(compare.tvalue)) {
-			return true;
-		}
-		return false;
+	@Override
+	public boolean equals(Object compare) {
+		return this == compare || (compare instanceof Tag && id == ((Tag) compare).id);
+	}
+	
+	/**
+	 * hashCode consistent with equals
+	 */
+	@Override
+	public int hashCode() {
+		return id;
+	}
+	
+	/**
+	 * Replaces a deserialized Tag with the interned one
+	 * @return the interned Tag
+	 * @throws ObjectStreamException
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		return TagDictionary.intern(tname, tvalue);
 	}
 	
 	/**
@@ -44,4 +77,4 @@ public class Tag implements Serializable {
 	public String toString() {
 		return tname + ": " + tvalue;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,91 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Library-wide dictionary of Tags. Every (name, value) pair is stored once, as a single
+ * immutable Tag with a small id, and every Photo carrying the pair refers to that Tag, so
+ * equal Tags are the same object and comparing them is a reference compare. Names are shared
+ * by all the Tags that use them. Lookups are lock-free; only a pair seen for the first time
+ * takes a lock. Tags are never dropped: a library holds a few thousand distinct pairs at most
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public final class TagDictionary {
+	/**
+	 * The Tags sharing one name
+	 */
+	private static final class Name {
+		/** the name every Tag here uses */
+		final String name;
+		/** Tags keyed by value */
+		final ConcurrentHashMap<String, Tag> values = new ConcurrentHashMap<String, Tag>();
+
+		Name(String name) {
+			this.name = name;
+		}
+	}
+
+	/** Tags keyed by name, then value */
+	private static final ConcurrentHashMap<String, Name> names = new ConcurrentHashMap<String, Name>();
+	/** next id to hand out */
+	private static int nextId;
+
+	/**
+	 * No instances, the dictionary is shared by the whole library
+	 */
+	private TagDictionary() {
+	}
+
+	/**
+	 * Returns the Tag for a (name, value) pair, creating it the first time the pair is seen
+	 * @param name the key of the Tag
+	 * @param value the value of the Tag
+	 * @return the one Tag with that name and value
+	 */
+	public static Tag intern(String name, String value) {
+		Tag tg = find(name, value);
+		return tg != null ? tg : add(name, value);
+	}
+
+	/**
+	 * Returns the Tag for a (name, value) pair if it has been seen, without creating it
+	 * @param name the key of the Tag
+	 * @param value the value of the Tag
+	 * @return the Tag, or null if no Tag has that name and value
+	 */
+	public static Tag find(String name, String value) {
+		Name n = names.get(name);
+		return n == null ? null : n.values.get(value);
+	}
+
+	/**
+	 * Returns the number of distinct Tags
+	 * @return how many (name, value) pairs the dictionary holds
+	 */
+	public static synchronized int size() {
+		return nextId;
+	}
+
+	/**
+	 * Creates the Tag for a pair seen for the first time
+	 * @param name the key of the Tag
+	 * @param value the value of the Tag
+	 * @return the new Tag, or the existing one if another thread got there first
+	 */
+	private static synchronized Tag add(String name, String value) {
+		Name n = names.get(name);
+		if (n == null) {
+			n = new Name(name);
+			names.put(name, n);
+		}
+		Tag tg = n.values.get(value);
+		if (tg == null) {
+			tg = new Tag(n.name, value, nextId++);
+			n.values.put(value, tg);
+		}
+		return tg;
+	}
+}
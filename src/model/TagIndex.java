@@ -0,0 +1,173 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Inverted index from interned Tag to the Photos of one User carrying it. Each Tag's
+ * postings are an IntBitmap of PhotoRegistry ids, so AND and OR searches are bitmap
+ * intersections and unions. The index is kept up to date by Album membership changes and
+ * by Photo.addTag/deleteTag
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class TagIndex {
+	/** postings keyed by Tag */
+	private final HashMap<Tag, IntBitmap> postings = new HashMap<Tag, IntBitmap>();
+	/** registry the postings' ids come from */
+	private final PhotoRegistry registry;
+
+	/**
+	 * Constructor for an index over the Photos of the given registry
+	 * @param registry the User's PhotoRegistry
+	 */
+	TagIndex(PhotoRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Indexes the Tags of a Photo that was just registered
+	 * @param x the Photo
+	 */
+	void add(Photo x) {
+		x.index = this;
+		for (Tag tg : x.tags) {
+			postings(tg, true).add(x.id);
+		}
+	}
+
+	/**
+	 * Unindexes the Tags of a Photo that was just released
+	 * @param x the Photo
+	 * @param id the id the Photo had
+	 */
+	void remove(Photo x, int id) {
+		for (Tag tg : x.tags) {
+			IntBitmap p = postings(tg, false);
+			if (p != null) {
+				p.remove(id);
+				if (p.isEmpty()) postings.remove(tg);
+			}
+		}
+		if (x.index == this) x.index = null;
+	}
+
+	/**
+	 * Indexes a Tag just added to a Photo
+	 * @param x the Photo
+	 * @param tg the new Tag
+	 */
+	void tagAdded(Photo x, Tag tg) {
+		if (registry.holds(x)) postings(tg, true).add(x.id);
+	}
+
+	/**
+	 * Unindexes a Tag just deleted from a Photo, unless the Photo still carries an equal Tag
+	 * @param x the Photo
+	 * @param tg the deleted Tag
+	 */
+	void tagRemoved(Photo x, Tag tg) {
+		IntBitmap p = postings(tg, false);
+		if (!registry.holds(x) || p == null || x.hasTag(tg)) return;
+		p.remove(x.id);
+		if (p.isEmpty()) postings.remove(tg);
+	}
+
+	/**
+	 * Returns the postings of a Tag
+	 * @param tg the Tag
+	 * @param create whether missing postings are created
+	 * @return the ids of the Photos carrying the Tag, null if there are none and create is false
+	 */
+	IntBitmap postings(Tag tg, boolean create) {
+		IntBitmap p = postings.get(tg);
+		if (p == null && create) {
+			p = new IntBitmap();
+			postings.put(tg, p);
+		}
+		return p;
+	}
+
+	/**
+	 * Returns how many Photos carry a Tag
+	 * @param tg the Tag
+	 * @return the size of the Tag's postings
+	 */
+	public int count(Tag tg) {
+		IntBitmap p = postings(tg, false);
+		return p == null ? 0 : p.cardinality();
+	}
+
+	/**
+	 * Finds the Photos carrying every one of the given Tags, intersecting the smallest postings first
+	 * @param tags the Tags being searched on
+	 * @return every matching Photo once
+	 */
+	public List<Photo> searchAll(Collection<Tag> tags) {
+		return resolve(matchAll(tags));
+	}
+
+	/**
+	 * Finds the ids of the Photos carrying every one of the given Tags, intersecting the smallest
+	 * postings first
+	 * @param tags the Tags being searched on
+	 * @return the ids of the matching Photos
+	 */
+	public IntBitmap matchAll(Collection<Tag> tags) {
+		ArrayList<IntBitmap> lists = new ArrayList<IntBitmap>();
+		for (Tag tg : tags) {
+			IntBitmap p = postings(tg, false);
+			if (p == null) return new IntBitmap();
+			lists.add(p);
+		}
+		if (lists.isEmpty()) return new IntBitmap();
+		lists.sort(Comparator.comparingInt(IntBitmap::cardinality));
+		IntBitmap result = lists.get(0);
+		for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+			result = IntBitmap.and(result, lists.get(i));
+		}
+		return lists.size() == 1 ? result.copy() : result;
+	}
+
+	/**
+	 * Finds the Photos carrying any of the given Tags
+	 * @param tags the Tags being searched on
+	 * @return every matching Photo once
+	 */
+	public List<Photo> searchAny(Collection<Tag> tags) {
+		return resolve(matchAny(tags));
+	}
+
+	/**
+	 * Finds the ids of the Photos carrying any of the given Tags
+	 * @param tags the Tags being searched on
+	 * @return the ids of the matching Photos
+	 */
+	public IntBitmap matchAny(Collection<Tag> tags) {
+		IntBitmap result = new IntBitmap();
+		for (Tag tg : tags) {
+			IntBitmap p = postings(tg, false);
+			if (p != null) result = IntBitmap.or(result, p);
+		}
+		return result;
+	}
+
+	/**
+	 * Turns a set of ids back into Photos
+	 * @param set the ids
+	 * @return the Photos, in id order
+	 */
+	public List<Photo> resolve(IntBitmap set) {
+		int[] found = set.toArray();
+		ArrayList<Photo> result = new ArrayList<Photo>(found.length);
+		for (int id : found) {
+			result.add(registry.get(id));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,184 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Index of the Photos of one User by time: epoch millis kept sorted in a primitive array,
+ * alongside the PhotoRegistry id of each Photo, so a date range is two binary searches and a
+ * slice. It is kept up to date as Photos join and leave the User's Albums
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class TimeIndex {
+	/** registry the ids come from */
+	private final PhotoRegistry registry;
+	/** times of the indexed Photos in epoch millis, ascending */
+	private long[] times;
+	/** ids of the indexed Photos, ordered like times (then by id) */
+	private int[] ids;
+	/** number of indexed Photos */
+	private int size;
+
+	/**
+	 * Constructor for an index over every Photo currently in the given registry
+	 * @param registry the User's PhotoRegistry
+	 */
+	TimeIndex(PhotoRegistry registry) {
+		this.registry = registry;
+		int cap = Math.max(16, registry.size());
+		times = new long[cap];
+		ids = new int[cap];
+		for (int id = 0; id < registry.capacity(); id++) {
+			Photo x = registry.get(id);
+			if (x == null) continue;
+			times[size] = x.time.getTimeInMillis();
+			ids[size] = id;
+			size++;
+		}
+		sort(0, size, new long[size], new int[size]);
+	}
+
+	/**
+	 * Indexes a Photo that was just registered
+	 * @param x the Photo
+	 */
+	void add(Photo x) {
+		long t = x.time.getTimeInMillis();
+		int i = position(t, x.id);
+		if (size == times.length) {
+			times = Arrays.copyOf(times, size * 2);
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+		System.arraycopy(times, i, times, i + 1, size - i);
+		System.arraycopy(ids, i, ids, i + 1, size - i);
+		times[i] = t;
+		ids[i] = x.id;
+		size++;
+	}
+
+	/**
+	 * Unindexes a Photo that was just released
+	 * @param x the Photo
+	 * @param id the id the Photo had
+	 */
+	void remove(Photo x, int id) {
+		int i = position(x.time.getTimeInMillis(), id);
+		if (i == size || ids[i] != id) return;
+		System.arraycopy(times, i + 1, times, i, size - i - 1);
+		System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+		size--;
+	}
+
+	/**
+	 * Finds where an entry belongs in the (time, id) order
+	 * @param t the time
+	 * @param id the id
+	 * @return index of the first entry not before (t, id)
+	 */
+	private int position(long t, int id) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[mid] < t || (times[mid] == t && ids[mid] < id)) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Finds the first entry whose time is at least (or, if strict, after) the given time
+	 * @param t the time
+	 * @param strict whether entries at exactly t are skipped
+	 * @return the index of that entry, or size if there is none
+	 */
+	private int bound(long t, boolean strict) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[mid] < t || (strict && times[mid] == t)) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the ids of the Photos taken strictly between two times
+	 * @param from the lower bound in epoch millis
+	 * @param to the upper bound in epoch millis
+	 * @return the ids, oldest first
+	 */
+	public int[] range(long from, long to) {
+		int lo = bound(from, true);
+		int hi = bound(to, false);
+		return lo < hi ? Arrays.copyOfRange(ids, lo, hi) : new int[0];
+	}
+
+	/**
+	 * Counts the Photos taken strictly between two times, without copying them out
+	 * @param from the lower bound in epoch millis
+	 * @param to the upper bound in epoch millis
+	 * @return the number of Photos in the range
+	 */
+	public int count(long from, long to) {
+		return Math.max(0, bound(to, false) - bound(from, true));
+	}
+
+	/**
+	 * Finds the Photos taken strictly between two dates
+	 * @param start the lower bound date
+	 * @param end the upper bound date
+	 * @return the Photos, oldest first
+	 */
+	public List<Photo> search(Calendar start, Calendar end) {
+		int[] found = range(start.getTimeInMillis(), end.getTimeInMillis());
+		ArrayList<Photo> result = new ArrayList<Photo>(found.length);
+		for (int id : found) {
+			result.add(registry.get(id));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of indexed Photos
+	 * @return the index size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Merge sorts entries [from, to) by (time, id)
+	 * @param from first entry
+	 * @param to one past the last entry
+	 * @param tt scratch space for times
+	 * @param ti scratch space for ids
+	 */
+	private void sort(int from, int to, long[] tt, int[] ti) {
+		if (to - from < 2) return;
+		int mid = (from + to) >>> 1;
+		sort(from, mid, tt, ti);
+		sort(mid, to, tt, ti);
+		if (times[mid - 1] < times[mid] || (times[mid - 1] == times[mid] && ids[mid - 1] < ids[mid])) return;
+		System.arraycopy(times, from, tt, from, to - from);
+		System.arraycopy(ids, from, ti, from, to - from);
+		int i = from;
+		int j = mid;
+		for (int k = from; k < to; k++) {
+			if (j == to || (i < mid && (tt[i] < tt[j] || (tt[i] == tt[j] && ti[i] < ti[j])))) {
+				times[k] = tt[i];
+				ids[k] = ti[i++];
+			}
+			else {
+				times[k] = tt[j];
+				ids[k] = ti[j++];
+			}
+		}
+	}
+}
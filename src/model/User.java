@@ -1,6 +1,8 @@
 package model;
 
 import java.io.Serializable;
+import java.util.Calendar;
+import java.util.HashMap;
 import java.util.LinkedList;
 
 /**
@@ -11,10 +13,20 @@ import java.util.LinkedList;
  */
 
 public class User implements Serializable{
+	/** serial ID for version */
+	private static final long serialVersionUID = 1L;
 	/** name of current User */
 	public String name;
 	/** list of current User's Albums */
 	public LinkedList<Album> albums;
+	/** the same Albums keyed by name, which is unique within a User */
+	private transient HashMap<String, Album> byName = new HashMap<String, Album>();
+	/** catalog of the Photos held by the User's Albums, one per file path */
+	private transient PhotoRegistry registry = new PhotoRegistry();
+	/** inverted index of the Tags on the User's Photos, built on first use */
+	private transient TagIndex tagIndex;
+	/** index of the User's Photos by time, built on first use */
+	private transient TimeIndex timeIndex;
 	
 	/**
 	 * Constructor for new User, generates an empty list of Albums
@@ -31,18 +43,38 @@ public class User implements Serializable{
 	 * @return whether User has an Album matching the given name
 	 */
 	public boolean contains(String str) {
-		for (Album ab : albums) {
-			if (ab.name.equals(str)) return true;
-		}
-		return false;
+		return byName.containsKey(str);
 	}
 	
 	/**
-	 * Adds new Album to the User's Album list
+	 * Adds new Album to the User's Album list. An Album named like one the User already has, as
+	 * libraries saved before names were indexed can hold, is renamed "name (2)", "name (3)" and
+	 * so on, so that every Album can be found, renamed and removed by its name
 	 * @param a new Album to be added
 	 */
 	public void addAlbum(Album a) {
+		if (byName.containsKey(a.name)) {
+			int n = 2;
+			while (byName.containsKey(a.name + " (" + n + ")")) n++;
+			a.name = a.name + " (" + n + ")";
+		}
 		albums.add(a);
+		byName.put(a.name, a);
+		a.owner = this;
+		a.members = new IntBitmap();
+		// Photos whose path is already cataloged are swapped for the cataloged instance
+		PhotoSequence held = new PhotoSequence();
+		boolean swapped = false;
+		for (Photo x : a.photos) {
+			Photo canon = registry.get(x.address);
+			if (canon != null && canon != x) {
+				x = canon;
+				swapped = true;
+			}
+			if (held.add(x)) a.members.add(photoAdded(x));
+			else swapped = true;
+		}
+		if (swapped) a.photos = held;
 	}
 	
 	/**
@@ -50,7 +82,13 @@ public class User implements Serializable{
 	 * @param a the Album to be removed
 	 */
 	public void removeAlbum(Album a) {
-		albums.remove(a);
+		if (!albums.remove(a)) return;
+		if (byName.get(a.name) == a) byName.remove(a.name);
+		for (Photo x : a.photos) {
+			photoRemoved(x);
+		}
+		a.owner = null;
+		a.members = null;
 	}
 	
 	/**
@@ -59,10 +97,7 @@ public class User implements Serializable{
 	 * @return an instance of the Album from the User's Album list
 	 */
 	public Album getAlbum(String str) {
-		for (Album ab : albums) {
-			if (ab.name.equals(str)) return ab;
-		}
-		return null;
+		return byName.get(str);
 	}
 	
 	/**
@@ -74,17 +109,98 @@ public class User implements Serializable{
 	}
 	
 	/**
-	 * Renames an instance of the given Album 
+	 * Renames an instance of the given Album, moving it to its new name in the index; nothing
+	 * happens if the User does not own the Album or already has one with the new name
 	 * @param curr the Album being renamed
 	 * @param newName the new name of the Album
 	 */
 	public void renameAlbum(Album curr, String newName) {
-		for (Album ab : albums) {
-			if (ab.name.equals(curr.name)) {
-				ab.name = newName;
-				return;
+		Album ab = byName.get(curr.name);
+		if (ab == null || byName.containsKey(newName)) return;
+		byName.remove(ab.name);
+		ab.name = newName;
+		byName.put(newName, ab);
+	}
+	
+	/**
+	 * Returns the catalog holding the User's Photos and giving them their ids
+	 * @return the User's PhotoRegistry
+	 */
+	public PhotoRegistry getRegistry() {
+		return registry;
+	}
+	
+	/**
+	 * Returns the Photo at the given file address held by any of the User's Albums, a single
+	 * lookup in the User's catalog
+	 * @param address the file address
+	 * @return the Photo, or null if no Album holds it
+	 */
+	public Photo findPhoto(String address) {
+		return registry.get(address);
+	}
+	
+	/**
+	 * Returns the index of the Tags on the User's Photos, building it from the registry the
+	 * first time; from then on Album and Photo changes keep it current
+	 * @return the User's TagIndex
+	 */
+	public TagIndex getTagIndex() {
+		if (tagIndex == null) {
+			TagIndex index = new TagIndex(registry);
+			for (int id = 0; id < registry.capacity(); id++) {
+				Photo x = registry.get(id);
+				if (x != null) index.add(x);
 			}
+			tagIndex = index;
 		}
+		return tagIndex;
+	}
+	
+	/**
+	 * Returns the index of the User's Photos by time, building it from the registry the first
+	 * time; from then on Album changes keep it current
+	 * @return the User's TimeIndex
+	 */
+	public TimeIndex getTimeIndex() {
+		if (timeIndex == null) timeIndex = new TimeIndex(registry);
+		return timeIndex;
+	}
+	
+	/**
+	 * Changes the time of one of the User's Photos, moving it to its new place in the TimeIndex
+	 * @param x the Photo
+	 * @param t the new time
+	 */
+	public void retime(Photo x, Calendar t) {
+		boolean indexed = timeIndex != null && registry.holds(x);
+		if (indexed) timeIndex.remove(x, x.id);
+		x.time = t;
+		if (indexed) timeIndex.add(x);
+	}
+	
+	/**
+	 * Called by an owned Album when it gains a Photo
+	 * @param x the Photo added
+	 * @return the Photo's id
+	 */
+	int photoAdded(Photo x) {
+		if (registry.register(x)) {
+			if (tagIndex != null) tagIndex.add(x);
+			if (timeIndex != null) timeIndex.add(x);
+		}
+		return x.id;
+	}
+	
+	/**
+	 * Called by an owned Album when it loses a Photo
+	 * @param x the Photo removed
+	 */
+	void photoRemoved(Photo x) {
+		int id = x.id;
+		if (!registry.release(x)) return;
+		if (tagIndex != null) tagIndex.remove(x, id);
+		if (timeIndex != null) timeIndex.remove(x, id);
 	}
 	
 	/**
@@ -3,6 +3,8 @@ package view;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import app.Mutation;
+import app.PhotoStore;
 import app.Photos;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -13,7 +15,6 @@ import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Alert.AlertType;
 import javafx.stage.Stage;
-import model.*;
 
 /**
  * Controller class for admin scene
@@ -25,13 +26,15 @@ import model.*;
 public class AdminController {
 	/** Instance of Photos application */
 	private Photos ph;
-	/** User list for the running application */
-	private List<User> userList;
+	/** Store holding the library */
+	private PhotoStore store;
+	/** User names for the running application, listed without loading the Users */
+	private List<String> userList;
 	/** ObservableList setup for ListView of Users */
-	private static ObservableList<User> obsList;
+	private static ObservableList<String> obsList;
 	
 	/** ListView setup for Users */
-	@FXML private ListView<User> listView;
+	@FXML private ListView<String> listView;
 	
 	/** TextField to name a new User */
 	@FXML private TextField username;
@@ -42,8 +45,10 @@ public class AdminController {
 	 * @throws Exception
 	 */
 	public void start(Stage mainStage) throws Exception {
-		ph = Photos.readApp();
-		userList = ph.getUsers();
+		ph = Photos.getSession();
+		store = ph.getStore();
+		store.login(null);
+		userList = store.listUsers();
 		obsList = FXCollections.observableArrayList(userList);
 		
 		listView.setItems(obsList);
@@ -63,7 +68,7 @@ public class AdminController {
 			violation.showAndWait();
 			return;
 		}
-		if (ph.contains(user)) {
+		if (store.containsUser(user)) {
 			Alert violation = new Alert(AlertType.INFORMATION);
 			violation.setTitle("Error");
 			violation.setHeaderText("Add failed: User already exists");
@@ -71,14 +76,10 @@ public class AdminController {
 			return;
 		}
 		
-		User newUser = new User(user);
-		
-		ph.addUser(newUser);
-		obsList.add(newUser);
+		store.apply(Mutation.addUser(user));
+		obsList.add(user);
 		username.setText("");
-		listView.getSelectionModel().select(newUser);
-		
-		Photos.writeApp(ph);
+		listView.getSelectionModel().select(user);
 	}
 	
 	/**
@@ -86,24 +87,25 @@ public class AdminController {
 	 * @throws IOException
 	 */
 	public void delete() throws IOException {
-		User curr = listView.getSelectionModel().getSelectedItem();
+		String curr = listView.getSelectionModel().getSelectedItem();
 		
 		Alert confirm = new Alert(AlertType.CONFIRMATION);
 		confirm.setContentText("Do you want to delete this user? This action cannot be reversed");
 		Optional<ButtonType> response = confirm.showAndWait();
 		if (response.get() != ButtonType.OK) return;
 		
-		ph.removeUser(curr);
+		store.apply(Mutation.removeUser(curr));
 		obsList.remove(listView.getSelectionModel().getSelectedItem());
-		
-		Photos.writeApp(ph);
 	}
 	
 	/**
-	 * Calls changeScene back to login.fxml
+	 * Ends the session, waits for pending changes to reach disk, then calls changeScene back to login.fxml
 	 * @throws Exception
 	 */
 	public void logout() throws Exception {
+		ph.unwatch();
+		store.logout();
+		store.flush();
 		ph.changeScene("login.fxml", null, null);
 	}
 }
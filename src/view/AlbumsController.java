@@ -1,10 +1,16 @@
 package view;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
+import app.ContentHasher;
+import app.DuplicateReport;
+import app.Mutation;
+import app.PhotoStore;
 import app.Photos;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
@@ -26,6 +32,8 @@ import model.*;
 public class AlbumsController {
 	/** Instance of Photos application */
 	private Photos ph;
+	/** Store holding the library */
+	private PhotoStore store;
 	/** Current User viewing their Albums */
 	private User currUser;
 	/** ObservableList setup for ListView of Albums */
@@ -47,9 +55,11 @@ public class AlbumsController {
 	 * @throws IOException
 	 */
 	public void start(Stage mainStage, String curr) throws ClassNotFoundException, IOException {
-		ph = Photos.readApp();
-		currUser = ph.getUser(curr);
-		obsList = FXCollections.observableArrayList(currUser.getAlbums());
+		ph = Photos.getSession();
+		store = ph.getStore();
+		currUser = store.loadUser(curr);
+		// a copy, so the list shown is only changed by the edits made here
+		obsList = FXCollections.observableArrayList(store.listAlbums(curr));
 		
 		listView.setItems(obsList);
 		listView.getSelectionModel().select(0);
@@ -93,13 +103,11 @@ public class AlbumsController {
 			return;
 		}
 		
-		Album newAlbum = new Album(alb); 
-		currUser.addAlbum(newAlbum);
+		store.apply(Mutation.addAlbum(currUser.name, alb));
+		Album newAlbum = currUser.getAlbum(alb);
 		obsList.add(newAlbum);
 		listView.getSelectionModel().select(newAlbum);
 		albumName.setText("");
-		
-		Photos.writeApp(ph);
 	}
 	
 	/**
@@ -134,11 +142,9 @@ public class AlbumsController {
 			return;
 		}
 		
-		currUser.renameAlbum(curr, newName);
+		store.apply(Mutation.renameAlbum(currUser.name, curr.name, newName));
 		obsList.set(index, curr);
 		renameAlbum.setText("");
-		
-		Photos.writeApp(ph);
 	}
 	
 	/**
@@ -160,10 +166,38 @@ public class AlbumsController {
 		Optional<ButtonType> response = confirm.showAndWait();
 		if (response.get() != ButtonType.OK) return;
 		
-		currUser.removeAlbum(curr);
+		store.apply(Mutation.removeAlbum(currUser.name, curr.name));
 		obsList.remove(listView.getSelectionModel().getSelectedItem());
-		
-		Photos.writeApp(ph);
+	}
+	
+	/**
+	 * Lists the User's Photos whose files are stored more than once under different paths. The
+	 * files are compared in the background
+	 */
+	public void duplicates() {
+		List<Photo> photos = DuplicateReport.photosOf(currUser);
+		ContentHasher hasher = ph.getHasher();
+		Task<DuplicateReport> task = new Task<DuplicateReport>() {
+			@Override
+			protected DuplicateReport call() {
+				return DuplicateReport.of(photos, hasher);
+			}
+		};
+		task.setOnSucceeded(e -> {
+			DuplicateReport report = task.getValue();
+			Alert info = new Alert(AlertType.INFORMATION);
+			info.setTitle("Duplicates");
+			if (report.groups.isEmpty()) info.setHeaderText("No photo is stored twice");
+			else {
+				info.setHeaderText(report.groups.size() + " photos are stored more than once, "
+						+ (report.wasted >> 10) + " KB in extra copies");
+				info.setContentText(report.toString());
+			}
+			info.showAndWait();
+		});
+		Thread t = new Thread(task, "duplicate-report");
+		t.setDaemon(true);
+		t.start();
 	}
 	
 	/**
@@ -175,10 +209,13 @@ public class AlbumsController {
 	}
 	
 	/**
-	 * Calls changeScene back to login.fxml
+	 * Ends the session, waits for pending changes to reach disk, then calls changeScene back to login.fxml
 	 * @throws Exception
 	 */
 	public void logout() throws Exception {
+		ph.unwatch();
+		store.logout();
+		store.flush();
 		ph.changeScene("login.fxml", null, null);
 	}
 }
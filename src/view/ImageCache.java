@@ -0,0 +1,220 @@
+package view;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import javafx.scene.image.Image;
+import model.PhotoRegistry;
+
+/**
+ * In-memory cache of decoded images, shared by the thumbnail list and the main ImageView.
+ * Images are keyed by file and requested size and weighted by their pixel bytes (width x
+ * height x 4); once the weights pass the budget the least recently used images are dropped.
+ * Images are only softly held, so the garbage collector can take them back under memory
+ * pressure before the budget is reached. Hits, misses and evictions are counted
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class ImageCache {
+	/**
+	 * Soft reference to a cached image, remembering its key and weight so it can be accounted
+	 * for once the collector clears it
+	 */
+	private static final class Slot extends SoftReference<Image> {
+		final String key;
+		final long weight;
+
+		Slot(String key, Image img, long weight, ReferenceQueue<Image> queue) {
+			super(img, queue);
+			this.key = key;
+			this.weight = weight;
+		}
+	}
+
+	/** most pixel bytes held */
+	private final long budget;
+	/** cached images by key, least recently used first; a hit moves its slot to the end */
+	private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<String, Slot>(256);
+	/** slots whose image the collector cleared */
+	private final ReferenceQueue<Image> cleared = new ReferenceQueue<Image>();
+	/** pixel bytes of the images held */
+	private long bytes;
+	/** lookups answered */
+	private long hits;
+	/** lookups that found nothing */
+	private long misses;
+	/** images dropped for the budget */
+	private long evictions;
+	/** images the collector took back */
+	private long collected;
+
+	/**
+	 * Constructor for a cache holding at most the given pixel bytes
+	 * @param budget most bytes of pixels held
+	 */
+	public ImageCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns the key of an image
+	 * @param path the file address
+	 * @param width the requested width, 0 for the natural width
+	 * @param height the requested height, 0 for the natural height
+	 * @return the key
+	 */
+	public static String key(String path, int width, int height) {
+		return PhotoRegistry.canonical(path) + "@" + width + "x" + height;
+	}
+
+	/**
+	 * Looks an image up
+	 * @param key the image's key
+	 * @return the image, or null if it is not held
+	 */
+	public synchronized Image get(String key) {
+		expunge();
+		Slot s = slots.get(key);
+		Image img = s == null ? null : s.get();
+		if (img == null) {
+			if (s != null) remove(s);
+			misses++;
+			return null;
+		}
+		slots.remove(key);
+		slots.put(key, s);
+		hits++;
+		return img;
+	}
+
+	/**
+	 * Checks whether an image is held, without counting a hit or miss or touching its recency
+	 * @param key the image's key
+	 * @return whether the image is held
+	 */
+	public synchronized boolean contains(String key) {
+		expunge();
+		Slot s = slots.get(key);
+		return s != null && s.get() != null;
+	}
+
+	/**
+	 * Adds an image, dropping least recently used ones until the budget is met
+	 * @param key the image's key
+	 * @param img the image
+	 */
+	public synchronized void put(String key, Image img) {
+		expunge();
+		long weight = (long) img.getWidth() * (long) img.getHeight() * 4;
+		Slot old = slots.remove(key);
+		if (old != null) bytes -= old.weight;
+		if (weight > budget) return;
+		slots.put(key, new Slot(key, img, weight, cleared));
+		bytes += weight;
+		for (Iterator<Slot> it = slots.values().iterator(); bytes > budget && it.hasNext();) {
+			Slot s = it.next();
+			it.remove();
+			bytes -= s.weight;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Drops every size of the images of a file, after the file changed
+	 * @param path the file address
+	 */
+	public synchronized void invalidate(String path) {
+		String prefix = PhotoRegistry.canonical(path) + "@";
+		for (Iterator<Slot> it = slots.values().iterator(); it.hasNext();) {
+			Slot s = it.next();
+			if (s.key.startsWith(prefix)) {
+				it.remove();
+				bytes -= s.weight;
+			}
+		}
+	}
+
+	/**
+	 * Drops every image
+	 */
+	public synchronized void clear() {
+		slots.clear();
+		bytes = 0;
+		expunge();
+	}
+
+	/**
+	 * Returns the pixel bytes of the images held
+	 * @return the bytes held
+	 */
+	public synchronized long bytes() {
+		expunge();
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of lookups that found their image
+	 * @return the hit count
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that found nothing
+	 * @return the miss count
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of images dropped to stay within the budget
+	 * @return the eviction count
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of images the garbage collector took back
+	 * @return the collected count
+	 */
+	public synchronized long collected() {
+		return collected;
+	}
+
+	/**
+	 * toString summarising the counters, for diagnostics
+	 */
+	@Override
+	public synchronized String toString() {
+		return slots.size() + " images, " + (bytes >> 10) + " KB of " + (budget >> 10) + " KB, " + hits + " hits, "
+				+ misses + " misses, " + evictions + " evicted, " + collected + " collected";
+	}
+
+	/**
+	 * Forgets the slots whose image the collector cleared
+	 */
+	private void expunge() {
+		for (Object ref; (ref = cleared.poll()) != null;) {
+			Slot s = (Slot) ref;
+			if (slots.get(s.key) == s) {
+				remove(s);
+				collected++;
+			}
+		}
+	}
+
+	/**
+	 * Removes a slot
+	 * @param s the slot
+	 */
+	private void remove(Slot s) {
+		slots.remove(s.key);
+		bytes -= s.weight;
+	}
+}
@@ -35,12 +35,13 @@ public class LoginController {
 	 * @throws Exception 
 	 */
 	public void attemptLogin() throws Exception {
-		ph = Photos.readApp();
+		ph = Photos.getSession();
 		String user = username.getText().toString();
 		if (user.equals("admin")) {
 			ph.changeScene("admin.fxml", null, null);
 		}
-		else if (ph.contains(user)) {
+		else if (ph.getStore().containsUser(user)) {
+			ph.getStore().login(user);
 			ph.changeScene("albums.fxml", user, null);
 		} 
 		else {
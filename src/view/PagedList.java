@@ -0,0 +1,199 @@
+package view;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import model.PageCursor;
+
+/**
+ * Observable list filled from a PageCursor as it is read. Only the first page is read up
+ * front; an entry that is not read yet shows as null, and asking for it queues its page to be
+ * read once the view is done asking. Pages are read on the FX thread, which owns the store
+ * behind the cursor and makes every edit to it, so a page never sees an edit half made. The
+ * page is filled in and reported as a change, so a view reads only what it shows and redraws
+ * as it arrives. Edits are made to the list directly, after the same edit was made to the
+ * store; a page queued before an edit that moved entries is dropped, and read again when it is
+ * next asked for. Must only be used on the FX thread
+ * @param <T> the type of the entries
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class PagedList<T> extends ObservableListBase<T> {
+	/** where the entries come from */
+	private final PageCursor<T> cursor;
+	/** number of entries in a page */
+	private final int pageSize;
+	/** entries read so far, null where not read yet */
+	private final ArrayList<T> entries;
+	/** pages queued or read since the last edit that moved entries */
+	private final HashSet<Integer> requested = new HashSet<Integer>();
+	/** counts edits that moved entries, so pages read before one can be told apart */
+	private int generation;
+
+	/**
+	 * Constructor for a list reading the first page now and the rest when asked for
+	 * @param cursor the cursor
+	 * @param pageSize number of entries in a page
+	 * @throws IOException
+	 */
+	public PagedList(PageCursor<T> cursor, int pageSize) throws IOException {
+		this.cursor = cursor;
+		this.pageSize = pageSize;
+		int n = cursor.size();
+		entries = new ArrayList<T>(Collections.<T>nCopies(n, null));
+		List<T> first = cursor.page(0, pageSize);
+		for (int i = 0; i < first.size() && i < n; i++) {
+			entries.set(i, first.get(i));
+		}
+		requested.add(0);
+	}
+
+	/**
+	 * Returns an entry, queueing its page if it is not read yet
+	 * @param index the position
+	 * @return the entry, or null until its page is read
+	 */
+	@Override
+	public T get(int index) {
+		T x = entries.get(index);
+		if (x == null) request(index / pageSize);
+		return x;
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Checks whether an entry is read, without queueing its page
+	 * @param index the position
+	 * @return whether the entry is read
+	 */
+	public boolean isLoaded(int index) {
+		return entries.get(index) != null;
+	}
+
+	/**
+	 * Finds an entry among those read, without reading any page
+	 */
+	@Override
+	public int indexOf(Object o) {
+		return o == null ? -1 : entries.indexOf(o);
+	}
+
+	/**
+	 * Finds an entry among those read, without reading any page
+	 */
+	@Override
+	public int lastIndexOf(Object o) {
+		return o == null ? -1 : entries.lastIndexOf(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int i = indexOf(o);
+		if (i < 0) return false;
+		remove(i);
+		return true;
+	}
+
+	@Override
+	public void add(int index, T x) {
+		entries.add(index, x);
+		// appending leaves every entry where it was
+		if (index < entries.size() - 1) moved();
+		beginChange();
+		nextAdd(index, index + 1);
+		endChange();
+	}
+
+	/**
+	 * Appends entries as a single change, leaving every entry where it was
+	 */
+	@Override
+	public boolean addAll(Collection<? extends T> c) {
+		if (c.isEmpty()) return false;
+		int from = entries.size();
+		entries.addAll(c);
+		beginChange();
+		nextAdd(from, entries.size());
+		endChange();
+		return true;
+	}
+
+	@Override
+	public T set(int index, T x) {
+		T old = entries.set(index, x);
+		beginChange();
+		nextSet(index, old);
+		endChange();
+		return old;
+	}
+
+	@Override
+	public T remove(int index) {
+		T old = entries.remove(index);
+		moved();
+		beginChange();
+		nextRemove(index, old);
+		endChange();
+		return old;
+	}
+
+	/**
+	 * Forgets the pages read or queued, since entries have moved between them
+	 */
+	private void moved() {
+		generation++;
+		requested.clear();
+	}
+
+	/**
+	 * Queues a page unless it was already read or queued
+	 * @param page the page number
+	 */
+	private void request(int page) {
+		if (!requested.add(page)) return;
+		int gen = generation;
+		int from = page * pageSize;
+		// read after the view's layout pass, which must not see the list change under it
+		Platform.runLater(() -> fill(gen, from));
+	}
+
+	/**
+	 * Reads and fills in a queued page, unless entries moved since it was queued
+	 * @param gen the generation the page was queued in
+	 * @param from position of its first entry
+	 */
+	private void fill(int gen, int from) {
+		if (gen != generation) return;
+		List<T> page;
+		try {
+			page = cursor.page(from, pageSize);
+		} catch (IOException | RuntimeException e) {
+			// left as requested, so a failing page is not retried until the next edit
+			return;
+		}
+		beginChange();
+		for (int k = 0; k < page.size() && from + k < entries.size(); k++) {
+			if (entries.get(from + k) == null) {
+				entries.set(from + k, page.get(k));
+				nextSet(from + k, null);
+			}
+		}
+		endChange();
+	}
+}
@@ -1,26 +1,42 @@
 package view;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import app.AlbumCursor;
+import app.ContentHasher;
+import app.FolderImport;
+import app.LibraryWatcher;
+import app.MetadataScan;
+import app.Mutation;
+import app.PhotoStore;
 import app.Photos;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
-import javafx.scene.control.ListCell;
+import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.Alert.AlertType;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
-import javafx.util.Callback;
 import model.*;
 
 /**
@@ -33,18 +49,36 @@ import model.*;
 public class PhotosController {
 	/** Instance of Photos application */
 	private Photos ph;
+	/** Store holding the library */
+	private PhotoStore store;
 	/** Current User viewing their Photos */
 	private User currUser;
 	/** Current Album being accessed by the User */
 	private Album currAlbum;
+	/** Background loader for the thumbnails and the displayed image */
+	private ThumbnailLoader thumbnails;
+	/** Pending load of the selected Photo at display size, null if there is none */
+	private ThumbnailLoader.Request shown;
+	/** Photos decoded ahead of the selection in the direction of travel */
+	private static final int PREFETCH_AHEAD = 4;
+	/** Photos decoded behind the selection */
+	private static final int PREFETCH_BEHIND = 1;
+	/** Decodes the neighbours of the selected Photo at display size */
+	private Prefetcher prefetcher;
+	/** Photos read from the store at a time; a page fills the grid a few times over */
+	private static final int PAGE_SIZE = 256;
+	/** Watcher keeping the Photos in step with their files, null if files cannot be watched */
+	private LibraryWatcher watcher;
+	/** Background read of the headers of Photos saved without their metadata, null if there is none */
+	private MetadataScan reading;
 	
-	/** ObservableList setup for ListView of Photos */
+	/** ObservableList setup for grid of Photos */
 	private ObservableList<Photo> obsListPhotos;
 	/** ObservableList setup for ListView of Tags */
 	private ObservableList<Tag> obsListTags;
 	
-	/** ListView setup for Photos */
-	@FXML private ListView<Photo> listViewPhotos;
+	/** Grid of Photo thumbnails */
+	@FXML private ThumbnailGrid gridPhotos;
 	/** ListView setup for Tags */
 	@FXML private ListView<Tag> listViewTags;
 	/* Display for selected Photo */
@@ -55,8 +89,17 @@ public class PhotosController {
 	/** TextField to display date (uneditable) */
 	@FXML private TextField date;
 	
+	/** Progress of a folder import, shown while one runs */
+	@FXML private ProgressBar importProgress;
+	/** Counts of a running folder import */
+	@FXML private Label importStatus;
+	/** Button cancelling a running folder import */
+	@FXML private Button importCancel;
+	/** Folder import running in the background, null if there is none */
+	private Task<List<Photo>> importing;
+	
 	/**
-	 * steps up ListView for photos by creating PhotoCells
+	 * steps up the grid of Photo thumbnails
 	 * @param mainStage main stage for the application to load scenes on
 	 * @param currU name of current User
 	 * @param currA name of current Album
@@ -64,54 +107,29 @@ public class PhotosController {
 	 * @throws IOException
 	 */
 	public void start(Stage mainStage, String currU, String currA) throws ClassNotFoundException, IOException {
-		ph = Photos.readApp();
-		currUser = ph.getUser(currU);
+		ph = Photos.getSession();
+		store = ph.getStore();
+		currUser = store.loadUser(currU);
 		currAlbum = currUser.getAlbum(currA);
+		thumbnails = ph.getThumbnails();
+		prefetcher = new Prefetcher(thumbnails, PREFETCH_AHEAD, PREFETCH_BEHIND, (int) img.getFitWidth(), (int) img.getFitHeight());
 	
-		obsListPhotos = FXCollections.observableArrayList(currAlbum.getPhotos());
+		obsListPhotos = new PagedList<Photo>(new AlbumCursor(store, currUser.name, currAlbum.name), PAGE_SIZE);
 
-		listViewPhotos.setCellFactory(new Callback<ListView<Photo>, ListCell<Photo>>() {
-			@Override
-			public ListCell<Photo> call(ListView<Photo> arg0) {
-				return new PhotoCell();
-			}
-		});
-		
-		listViewPhotos.setItems(obsListPhotos);
-		listViewPhotos.getSelectionModel().
+		gridPhotos.setLoader(thumbnails);
+		gridPhotos.setItems(obsListPhotos);
+		gridPhotos.getSelectionModel().
 		selectedIndexProperty().
 		addListener((obs, oldVal, newVal) -> displayDetails());
 		
-		listViewPhotos.getSelectionModel().select(0);
-	}
-	
-	/**
-	 * Internal supporting class to create thumbnail previews
-	 * @author Jason Mooney (jcm370)
-	 * @author Crystal Zhang (cz298)
-	 *
-	 */
-	static class PhotoCell extends ListCell<Photo> {
-		private ImageView imageView = new ImageView();
-		@Override
-		protected void updateItem(Photo curr, boolean empty) {
-			super.updateItem(curr, empty);
-			if (curr != null) {
-				InputStream stream;
-				try {
-					stream = new FileInputStream(curr.getAddress());
-				} catch (FileNotFoundException e) { return; }
-				Image img = new Image(stream);
-				imageView.setImage(img);
-				imageView.setPreserveRatio(true);
-				if (img.getHeight() > img.getWidth()) {
-					imageView.setFitHeight(116);
-				} else imageView.setFitWidth(116); 
-				
-				setGraphic(imageView);
-				setText(curr.getCaption());
-			}
+		gridPhotos.getSelectionModel().select(0);
+		
+		watcher = ph.getWatcher();
+		if (watcher != null) {
+			watcher.setListener(this::librarySynced);
+			watcher.watch(currUser);
 		}
+		readMetadata();
 	}
 	
 	/**
@@ -152,7 +170,9 @@ public class PhotosController {
 				return;
 			}
 			
-			if (notImg(newAddress)) {
+			// the file's own header tells its format, whatever its name says
+			ImageMetadata meta = ImageMetadata.read(newAddress);
+			if (meta == null) {
 				Alert violation = new Alert(AlertType.INFORMATION);
 				violation.setTitle("Error");
 				violation.setHeaderText("Add failed: Please make sure your file is of format BMP, GIF, JPEG/JPG, or PNG");
@@ -160,36 +180,195 @@ public class PhotosController {
 				return;
 			}
 			
-			Photo newPhoto = new Photo(newAddress);
-			for (Album ab : currUser.albums) {
-				if (ab.contains(newAddress)) {
-					newPhoto = ab.getPhoto(newAddress);
-					break;
-				}
-			}
-			
-			currAlbum.addPhoto(newPhoto);
+			Photo added = new Photo(newAddress);
+			meta.applyTo(added);
+			store.apply(Mutation.addPhoto(currUser.name, currAlbum.name, added));
+			Photo newPhoto = currAlbum.getPhoto(newAddress);
 			obsListPhotos.add(newPhoto);
-			listViewPhotos.getSelectionModel().select(newPhoto);
+			if (watcher != null) watcher.include(Collections.singletonList(newPhoto));
+			gridPhotos.getSelectionModel().select(newPhoto);
 				
-			Photos.writeApp(ph);
 			displayDetails();
 		}
 	}
 	
 	/**
-	 * Determines whether the given file is of acceptable filetype
-	 * @param filepath address of a file
-	 * @return whether the given file is of format PNG, JPEG, JPG, GIF, or BMP
+	 * Prompts user for a folder and adds every image under it to the Album. The folder is walked
+	 * in the background, showing how far it got, and the Photos found are added in one batch
+	 * once the walk is over, leaving out copies of Photos the User already holds; cancelling
+	 * adds none of them
+	 */
+	public void importFolder() {
+		if (importing != null) return;
+		DirectoryChooser chooser = new DirectoryChooser();
+		chooser.setTitle("Import Folder");
+		File dir = chooser.showDialog(img.getScene().getWindow());
+		if (dir == null) return;
+		
+		FolderImport job = new FolderImport(dir.toPath());
+		ContentHasher hasher = ph.getHasher();
+		Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+		ArrayList<String> held = new ArrayList<String>();
+		PhotoRegistry registry = currUser.getRegistry();
+		for (int id = 0; id < registry.capacity(); id++) {
+			Photo x = registry.get(id);
+			if (x != null) held.add(x.address);
+		}
+		Task<List<Photo>> task = new Task<List<Photo>>() {
+			@Override
+			protected List<Photo> call() throws Exception {
+				updateProgress(-1, 1);
+				Future<List<Photo>> walk = ForkJoinPool.commonPool().submit(job::scan);
+				List<Photo> found = null;
+				while (found == null) {
+					updateMessage("Scanned " + job.scanned() + " files, found " + job.found() + " photos");
+					try {
+						found = walk.get(100, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+						// still walking
+					} catch (InterruptedException e) {
+						job.cancel();
+						throw e;
+					}
+				}
+				// hash the likely copies here, so the commit on the FX thread only looks them up
+				updateMessage("Comparing " + found.size() + " photos with the library");
+				hashes.putAll(FolderImport.hashAhead(found, held, hasher));
+				return found;
+			}
+		};
+		task.setOnSucceeded(e -> {
+			importDone();
+			try {
+				List<Photo> added = FolderImport.commit(store, currUser, currAlbum, task.getValue(), hashes);
+				if (added.isEmpty()) return;
+				obsListPhotos.addAll(added);
+				if (watcher != null) watcher.include(added);
+				gridPhotos.getSelectionModel().select(obsListPhotos.size() - added.size());
+			} catch (IOException ex) {
+				Alert violation = new Alert(AlertType.INFORMATION);
+				violation.setTitle("Error");
+				violation.setHeaderText("Import failed: " + ex.getMessage());
+				violation.showAndWait();
+			}
+		});
+		task.setOnFailed(e -> {
+			importDone();
+			Alert violation = new Alert(AlertType.INFORMATION);
+			violation.setTitle("Error");
+			violation.setHeaderText("Import failed: Could not read " + dir);
+			violation.showAndWait();
+		});
+		task.setOnCancelled(e -> importDone());
+		
+		importing = task;
+		importProgress.progressProperty().bind(task.progressProperty());
+		importStatus.textProperty().bind(task.messageProperty());
+		importProgress.setVisible(true);
+		importStatus.setVisible(true);
+		importCancel.setVisible(true);
+		Thread t = new Thread(task, "folder-import");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Cancels the running folder import, adding none of its Photos
+	 */
+	public void cancelImport() {
+		if (importing != null) importing.cancel();
+	}
+	
+	/**
+	 * Hides the progress of the folder import that just ended
+	 */
+	private void importDone() {
+		importing = null;
+		importProgress.progressProperty().unbind();
+		importStatus.textProperty().unbind();
+		importProgress.setVisible(false);
+		importStatus.setVisible(false);
+		importCancel.setVisible(false);
+	}
+	
+	/**
+	 * Reads in the background the headers of the User's Photos saved before their metadata was
+	 * kept, then dates them by their capture dates. What was read is recorded even if the User
+	 * leaves the Album first
+	 */
+	private void readMetadata() {
+		ArrayList<Photo> photos = new ArrayList<Photo>();
+		PhotoRegistry registry = currUser.getRegistry();
+		for (int id = 0; id < registry.capacity(); id++) {
+			Photo x = registry.get(id);
+			if (x != null) photos.add(x);
+		}
+		MetadataScan job = new MetadataScan(photos);
+		if (job.size() == 0) return;
+		reading = job;
+		Thread t = new Thread(() -> {
+			Map<String, ImageMetadata> found = job.scan();
+			Platform.runLater(() -> {
+				if (reading == job) reading = null;
+				try {
+					List<Photo> changed = MetadataScan.commit(store, currUser, found);
+					gridPhotos.refresh();
+					Photo curr = gridPhotos.getSelectionModel().getSelectedItem();
+					if (curr != null && changed.contains(curr)) displayDetails();
+				} catch (IOException ex) {
+					Alert violation = new Alert(AlertType.INFORMATION);
+					violation.setTitle("Error");
+					violation.setHeaderText("Reading dates failed: " + ex.getMessage());
+					violation.showAndWait();
+				}
+			});
+		}, "metadata-scan");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Prompts user for a folder whose new images are added to the Album from now on, for as
+	 * long as the User stays logged in
 	 */
-	private boolean notImg(String filepath) {
-		String extension = "";
-		int i = filepath.lastIndexOf('.');
-		if (i >= 0) { extension = filepath.substring(i+1); }
-		else return true;
+	public void hotFolder() {
+		DirectoryChooser chooser = new DirectoryChooser();
+		chooser.setTitle("Hot Folder");
+		File dir = chooser.showDialog(img.getScene().getWindow());
+		if (dir == null) return;
+		if (watcher == null || !watcher.addHotFolder(dir, currAlbum.name)) {
+			Alert violation = new Alert(AlertType.INFORMATION);
+			violation.setTitle("Error");
+			violation.setHeaderText("Hot folder failed: Could not watch " + dir);
+			violation.showAndWait();
+		}
+	}
+	
+	/**
+	 * Shows what the library watcher changed: images whose files were written are decoded again,
+	 * even when their date and size stayed the same, missing Photos are marked, and Photos
+	 * arriving in hot folders of this Album are appended
+	 * @param s the changes of one batch
+	 */
+	private void librarySynced(LibraryWatcher.Sync s) {
+		for (Photo x : s.changed) {
+			thumbnails.getImages().invalidate(x.address);
+		}
+		gridPhotos.refresh();
 		
-		if (extension.equals("png") || extension.equals("jpeg") || extension.equals("jpg") || extension.equals("gif") || extension.equals("bmp")) return false;
-		return true;
+		Photo curr = gridPhotos.getSelectionModel().getSelectedItem();
+		if (curr != null && (s.changed.contains(curr) || s.missing.contains(curr))) {
+			displayDetails();
+		}
+		List<Photo> added = s.imported.get(currAlbum.name);
+		if (added != null) obsListPhotos.addAll(added);
+		
+		if (s.failure != null) {
+			Alert violation = new Alert(AlertType.INFORMATION);
+			violation.setTitle("Error");
+			violation.setHeaderText("Sync failed: " + s.failure.getMessage());
+			violation.showAndWait();
+		}
 	}
 	
 	/**
@@ -197,7 +376,7 @@ public class PhotosController {
 	 * @throws IOException
 	 */
 	public void removePh() throws IOException {
-		if (listViewPhotos.getSelectionModel().getSelectedItem() == null) {
+		if (gridPhotos.getSelectionModel().getSelectedItem() == null) {
 			Alert violation = new Alert(AlertType.INFORMATION);
 			violation.setTitle("Error");
 			violation.setHeaderText("Remove failed: No photo selected");
@@ -205,40 +384,39 @@ public class PhotosController {
 			return;
 		}
 		
-		Photo curr = listViewPhotos.getSelectionModel().getSelectedItem();
-		int index = listViewPhotos.getSelectionModel().getSelectedIndex();
+		Photo curr = gridPhotos.getSelectionModel().getSelectedItem();
+		int index = gridPhotos.getSelectionModel().getSelectedIndex();
 		
 		Alert confirm = new Alert(AlertType.CONFIRMATION);
 		confirm.setContentText("Do you want to remove this photo? This action cannot be reversed");
 		Optional<ButtonType> response = confirm.showAndWait();
 		if (response.get() != ButtonType.OK) return;
 		
-		currAlbum.removePhoto(curr);
-		obsListPhotos.remove(listViewPhotos.getSelectionModel().getSelectedItem());
-		listViewPhotos.getSelectionModel().select(index == obsListPhotos.size() ? index - 1 : index);
+		store.apply(Mutation.removePhoto(currUser.name, currAlbum.name, curr.address));
+		obsListPhotos.remove(gridPhotos.getSelectionModel().getSelectedItem());
+		gridPhotos.getSelectionModel().select(index == obsListPhotos.size() ? index - 1 : index);
 		
-		Photos.writeApp(ph);
 		displayDetails();
 	}
 	
 	/**
-	 * Moves the ListView selection to the next Photo, if it exists
+	 * Moves the grid selection to the next Photo, if it exists
 	 */
 	public void nextPh() {
-		int index = listViewPhotos.getSelectionModel().getSelectedIndex();
+		int index = gridPhotos.getSelectionModel().getSelectedIndex();
 		if (index == obsListPhotos.size() - 1) return;
 		
-		listViewPhotos.getSelectionModel().select(index + 1);
+		gridPhotos.getSelectionModel().select(index + 1);
 	}
 	
 	/**
-	 * Moves the ListView selection to the previous Photo, if it exists
+	 * Moves the grid selection to the previous Photo, if it exists
 	 */
 	public void prevPh() {
-		int index = listViewPhotos.getSelectionModel().getSelectedIndex();
+		int index = gridPhotos.getSelectionModel().getSelectedIndex();
 		if (index == 0) return;
 		
-		listViewPhotos.getSelectionModel().select(index - 1);
+		gridPhotos.getSelectionModel().select(index - 1);
 	}
 	
 	/**
@@ -246,7 +424,7 @@ public class PhotosController {
 	 * @throws IOException
 	 */
 	public void updateCap() throws IOException {
-		if (listViewPhotos.getSelectionModel().getSelectedItem() == null) {
+		if (gridPhotos.getSelectionModel().getSelectedItem() == null) {
 			Alert violation = new Alert(AlertType.INFORMATION);
 			violation.setTitle("Error");
 			violation.setHeaderText("Update failed: No photo selected");
@@ -255,14 +433,12 @@ public class PhotosController {
 		}
 		
 		String cap = caption.getText().toString();
-		Photo curr = listViewPhotos.getSelectionModel().getSelectedItem();
-		int index = listViewPhotos.getSelectionModel().getSelectedIndex();
+		Photo curr = gridPhotos.getSelectionModel().getSelectedItem();
+		int index = gridPhotos.getSelectionModel().getSelectedIndex();
 		
-		curr.caption = cap;
+		store.apply(Mutation.setCaption(currUser.name, currAlbum.name, curr.address, cap));
 		obsListPhotos.set(index, curr);
-		listViewPhotos.getSelectionModel().select(index);
-		
-		Photos.writeApp(ph);
+		gridPhotos.getSelectionModel().select(index);
 	}
 	
 	/**
@@ -270,7 +446,7 @@ public class PhotosController {
 	 * @throws IOException
 	 */
 	public void addTg() throws IOException {
-		if (listViewPhotos.getSelectionModel().getSelectedItem() == null) {
+		if (gridPhotos.getSelectionModel().getSelectedItem() == null) {
 			Alert violation = new Alert(AlertType.INFORMATION);
 			violation.setTitle("Error");
 			violation.setHeaderText("Add failed: No photo selected");
@@ -283,7 +459,7 @@ public class PhotosController {
 		dialog.setHeaderText("Add Tag");
 		dialog.setContentText("Use name:value format: ");
 		
-		Photo currPhoto = listViewPhotos.getSelectionModel().getSelectedItem();
+		Photo currPhoto = gridPhotos.getSelectionModel().getSelectedItem();
 		
 		Optional<String> result = dialog.showAndWait();
 		if (result.isPresent()) {
@@ -306,12 +482,10 @@ public class PhotosController {
 				return;
 			}
 			
-			Tag newTag = new Tag(dict[0], dict[1]);
-			currPhoto.addTag(newTag);
+			store.apply(Mutation.addTag(currUser.name, currAlbum.name, currPhoto.address, Tag.of(dict[0], dict[1])));
+			Tag newTag = currPhoto.tags.getLast();
 			obsListTags.add(newTag);
 			listViewTags.getSelectionModel().select(newTag);
-			
-			Photos.writeApp(ph);
 		}
 	}
 	
@@ -329,18 +503,17 @@ public class PhotosController {
 		}
 
 		Tag curr = listViewTags.getSelectionModel().getSelectedItem();
-		Photo currPhoto = listViewPhotos.getSelectionModel().getSelectedItem();
-		int index = listViewPhotos.getSelectionModel().getSelectedIndex();
+		Photo currPhoto = gridPhotos.getSelectionModel().getSelectedItem();
+		int index = gridPhotos.getSelectionModel().getSelectedIndex();
 		
 		Alert confirm = new Alert(AlertType.CONFIRMATION);
 		confirm.setContentText("Do you want to delete this tag? This action cannot be reversed");
 		Optional<ButtonType> response = confirm.showAndWait();
 		if (response.get() != ButtonType.OK) return;
 		
-		currPhoto.deleteTag(curr);
+		store.apply(Mutation.deleteTag(currUser.name, currAlbum.name, currPhoto.address, curr));
 		obsListTags.remove(listViewTags.getSelectionModel().getSelectedItem());
 		listViewTags.getSelectionModel().select(index == obsListTags.size() ? index - 1 : index);
-		Photos.writeApp(ph);
 	}
 	
 	/**
@@ -348,7 +521,7 @@ public class PhotosController {
 	 * @throws IOException
 	 */
 	public void copyPh() throws IOException {
-		if (listViewPhotos.getSelectionModel().getSelectedItem() == null) {
+		if (gridPhotos.getSelectionModel().getSelectedItem() == null) {
 			Alert violation = new Alert(AlertType.INFORMATION);
 			violation.setTitle("Error");
 			violation.setHeaderText("Copy failed: No photo selected");
@@ -361,7 +534,7 @@ public class PhotosController {
 		dialog.setHeaderText("Copy Photo");
 		dialog.setContentText("Enter album name: ");
 		
-		Photo currPhoto = listViewPhotos.getSelectionModel().getSelectedItem();
+		Photo currPhoto = gridPhotos.getSelectionModel().getSelectedItem();
 		
 		Optional<String> result = dialog.showAndWait();
 		if (result.isPresent()) {
@@ -383,8 +556,7 @@ public class PhotosController {
 				return;
 			}
 			
-			currAlbum.copyPhoto(currPhoto, destination);
-			Photos.writeApp(ph);
+			store.apply(Mutation.copyPhoto(currUser.name, currAlbum.name, currPhoto.address, toAlbum));
 		}
 	}
 	
@@ -393,7 +565,7 @@ public class PhotosController {
 	 * @throws IOException
 	 */
 	public void movePh() throws IOException {
-		if (listViewPhotos.getSelectionModel().getSelectedItem() == null) {
+		if (gridPhotos.getSelectionModel().getSelectedItem() == null) {
 			Alert violation = new Alert(AlertType.INFORMATION);
 			violation.setTitle("Error");
 			violation.setHeaderText("Move failed: No photo selected");
@@ -406,8 +578,8 @@ public class PhotosController {
 		dialog.setHeaderText("Move Photo");
 		dialog.setContentText("Enter album name: ");
 		
-		Photo currPhoto = listViewPhotos.getSelectionModel().getSelectedItem();
-		int index = listViewPhotos.getSelectionModel().getSelectedIndex();
+		Photo currPhoto = gridPhotos.getSelectionModel().getSelectedItem();
+		int index = gridPhotos.getSelectionModel().getSelectedIndex();
 		
 		Optional<String> result = dialog.showAndWait();
 		if (result.isPresent()) {
@@ -429,11 +601,10 @@ public class PhotosController {
 				return;
 			}
 			
-			currAlbum.movePhoto(currPhoto, destination);
-			obsListPhotos.remove(listViewPhotos.getSelectionModel().getSelectedItem());
-			listViewPhotos.getSelectionModel().select(index == obsListPhotos.size() ? index - 1 : index);
+			store.apply(Mutation.movePhoto(currUser.name, currAlbum.name, currPhoto.address, toAlbum));
+			obsListPhotos.remove(gridPhotos.getSelectionModel().getSelectedItem());
+			gridPhotos.getSelectionModel().select(index == obsListPhotos.size() ? index - 1 : index);
 			
-			Photos.writeApp(ph);
 			displayDetails();
 		}
 	}
@@ -443,7 +614,10 @@ public class PhotosController {
 	 * @throws Exception
 	 */
 	public void returnToAlbums() throws Exception {
-		Photos.writeApp(ph);
+		cancelImport();
+		prefetcher.cancel();
+		if (reading != null) reading.cancel();
+		if (watcher != null) watcher.setListener(null);
 		ph.changeScene("albums.fxml", currUser.name, null);
 	}
 	
@@ -452,32 +626,33 @@ public class PhotosController {
 	 */
 	public void displayDetails() {
 		resetDisplay();
-		Photo curr = listViewPhotos.getSelectionModel().getSelectedItem();
+		Photo curr = gridPhotos.getSelectionModel().getSelectedItem();
 		
 		if (curr != null) {
-			InputStream stream;
-			try {
-				stream = new FileInputStream(curr.getAddress());
-			} catch (FileNotFoundException e) { return; }
-			img.setImage(new Image(stream));
+			// show the cached thumbnail until the display-size image is decoded
+			img.setImage(thumbnails.getImages().get(ImageCache.key(curr.address, ThumbnailGrid.THUMB_SIZE, 0)));
+			shown = thumbnails.loadImage(curr, (int) img.getFitWidth(), (int) img.getFitHeight(), ThumbnailLoader.VISIBLE, full -> {
+				shown = null;
+				if (full != null && gridPhotos.getSelectionModel().getSelectedItem() == curr) img.setImage(full);
+			});
+			prefetcher.moved(obsListPhotos, gridPhotos.getSelectionModel().getSelectedIndex());
 			caption.setText(curr.getCaption());
 			date.setText(curr.getDate());
 			obsListTags = FXCollections.observableArrayList(curr.tags);
 			listViewTags.setItems(obsListTags);
 			
 		}
+		else prefetcher.cancel();
 	}
 	
 	/**
-	 * Wipes detailed display and ListView of Photos
+	 * Wipes detailed display and cancels the loading of the last selected Photo
 	 */
 	public void resetDisplay() {
-		listViewPhotos.setCellFactory(new Callback<ListView<Photo>, ListCell<Photo>>() {
-			@Override
-			public ListCell<Photo> call(ListView<Photo> arg0) {
-				return new PhotoCell();
-			}
-		});
+		if (shown != null) {
+			shown.cancel();
+			shown = null;
+		}
 		img.setImage(null);
 		caption.setText("");
 		date.setText("");
@@ -0,0 +1,114 @@
+package view;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import model.Photo;
+
+/**
+ * Decodes the neighbours of the selected Photo at display size ahead of need, so stepping
+ * through an Album finds them in the ImageCache. The window reaches further in the direction
+ * the user is moving than behind it, and turns around with them. Whenever the selection moves,
+ * loads for Photos that fell out of the window are cancelled and the nearest missing ones are
+ * queued first
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class Prefetcher {
+	/** loader the images are decoded by */
+	private final ThumbnailLoader loader;
+	/** Photos loaded in the direction of travel */
+	private final int ahead;
+	/** Photos loaded against the direction of travel */
+	private final int behind;
+	/** width of the display */
+	private final int width;
+	/** height of the display */
+	private final int height;
+	/** loads queued and not yet handed back */
+	private final Map<Photo, ThumbnailLoader.Request> pending = new IdentityHashMap<Photo, ThumbnailLoader.Request>();
+	/** index last moved to, -1 before the first move */
+	private int last = -1;
+	/** 1 when moving forward, -1 when moving back */
+	private int direction = 1;
+
+	/**
+	 * Constructor for a prefetcher of the given window and display size
+	 * @param loader the loader
+	 * @param ahead number of Photos loaded in the direction of travel
+	 * @param behind number of Photos loaded against it
+	 * @param width width of the display
+	 * @param height height of the display
+	 */
+	public Prefetcher(ThumbnailLoader loader, int ahead, int behind, int width, int height) {
+		this.loader = loader;
+		this.ahead = ahead;
+		this.behind = behind;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Moves the window to a new selection. Must be called on the FX thread
+	 * @param photos the Photos being browsed
+	 * @param index the selected position
+	 */
+	public void moved(List<Photo> photos, int index) {
+		if (index < 0 || index >= photos.size()) {
+			cancel();
+			return;
+		}
+		// single steps set the direction; a jump keeps it
+		if (last >= 0 && Math.abs(index - last) == 1) direction = index > last ? 1 : -1;
+		last = index;
+		// the window in list order: more of it after the selection when moving forward
+		int from = Math.max(0, index - (direction > 0 ? behind : ahead));
+		int to = Math.min(photos.size() - 1, index + (direction > 0 ? ahead : behind));
+
+		IdentityHashMap<Photo, Boolean> window = new IdentityHashMap<Photo, Boolean>();
+		for (int i = from; i <= to; i++) {
+			if (i != index) window.put(photos.get(i), Boolean.TRUE);
+		}
+		for (Iterator<Map.Entry<Photo, ThumbnailLoader.Request>> it = pending.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Photo, ThumbnailLoader.Request> e = it.next();
+			if (!window.containsKey(e.getKey())) {
+				e.getValue().cancel();
+				it.remove();
+			}
+		}
+
+		// the loader runs the newest request first, so the farthest are queued first
+		for (int d = Math.max(ahead, behind); d >= 1; d--) {
+			int back = index - direction * d;
+			int next = index + direction * d;
+			if (d <= behind && back >= from && back <= to) fetch(photos.get(back));
+			if (d <= ahead && next >= from && next <= to) fetch(photos.get(next));
+		}
+	}
+
+	/**
+	 * Cancels every queued load and forgets the direction of travel
+	 */
+	public void cancel() {
+		for (ThumbnailLoader.Request r : pending.values()) {
+			r.cancel();
+		}
+		pending.clear();
+		last = -1;
+		direction = 1;
+	}
+
+	/**
+	 * Queues a Photo unless it is decoded or queued already
+	 * @param x the Photo, or null if it is still being read
+	 */
+	private void fetch(Photo x) {
+		if (x == null || pending.containsKey(x)) return;
+		if (loader.getImages().contains(ImageCache.key(x.address, width, height))) return;
+		ThumbnailLoader.Request r = loader.loadImage(x, width, height, ThumbnailLoader.PREFETCH, img -> pending.remove(x));
+		if (r != null) pending.put(x, r);
+	}
+}
@@ -1,8 +1,15 @@
 package view;
 
 import java.sql.Date;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import app.Mutation;
+import app.PhotoStore;
 import app.Photos;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
@@ -22,6 +29,8 @@ import model.*;
 public class SearchController {
 	/** Instance of Photos application */
 	private Photos ph;
+	/** Store holding the library */
+	private PhotoStore store;
 	/** Current User searching through their Albums */
 	private User currUser;
 	
@@ -33,6 +42,8 @@ public class SearchController {
 	@FXML private TextField tag1;
 	/** TextField for the second tag of tag search */
 	@FXML private TextField tag2;
+	/** TextField for a boolean query over tags and dates */
+	@FXML private TextField queryText;
 	
 	/** ComboTag to specify type of pair searching */
 	@FXML private ComboBox<String> comboTag;
@@ -44,8 +55,9 @@ public class SearchController {
 	 * @throws Exception
 	 */
 	public void start(Stage mainStage, String curr) throws Exception {
-		ph = Photos.readApp();
-		currUser = ph.getUser(curr);
+		ph = Photos.getSession();
+		store = ph.getStore();
+		currUser = store.loadUser(curr);
 		
 		comboTag.getItems().add("AND");
 		comboTag.getItems().add("OR");
@@ -92,17 +104,7 @@ public class SearchController {
 			}
 		}
 		
-		Album newAlbum = new Album("Album #" + (currUser.getAlbums().size() + 1));
-		for (Album ab : currUser.getAlbums()) {
-			Album res = ab.searchDate(start, end);
-			for (Photo pho : res.photos) {
-				if (!newAlbum.contains(pho.address)) newAlbum.addPhoto(pho);
-			}
-		}
-		
-		currUser.addAlbum(newAlbum);
-		Photos.writeApp(ph);
-		returnToAlbums();
+		saveAlbum(store.queryDates(currUser.name, start, end));
 	}
 	
 	/**
@@ -129,49 +131,112 @@ public class SearchController {
 			return;
 		}
 		
-		Album newAlbum = new Album("Album #" + (currUser.getAlbums().size() + 1));
+		if (t2.length() > 0 && comboTag.getValue() == null) {
+			Alert violation = new Alert(AlertType.INFORMATION);
+			violation.setTitle("Error");
+			violation.setHeaderText("Select a pairing");
+			violation.showAndWait();
+			return;
+		}
+		
+		// looked up rather than interned, so search text never grows the dictionary; a Tag
+		// that was never created is on no Photo
 		String[] dict1 = t1.split("=", 2);
-		Tag temp1 = new Tag(dict1[0], dict1[1]);
+		Tag temp1 = TagDictionary.find(dict1[0], dict1[1]);
 		
+		List<Photo> found = Collections.emptyList();
 		if (t2.length() == 0) {
-			for (Album ab : currUser.getAlbums()) {
-				Album res = ab.searchTag(temp1);
-				for (Photo pho : res.photos) {
-					if (!newAlbum.contains(pho.address)) newAlbum.addPhoto(pho);
-				}
-			}
+			if (temp1 != null) found = store.queryTags(currUser.name, Arrays.asList(temp1), true);
 		}
 		else {
 			String[] dict2 = t2.split("=", 2);
-			Tag temp2 = new Tag(dict2[0], dict2[1]);
+			Tag temp2 = TagDictionary.find(dict2[0], dict2[1]);
 			
-			if (comboTag.getValue() == null) {
-				Alert violation = new Alert(AlertType.INFORMATION);
-				violation.setTitle("Error");
-				violation.setHeaderText("Select a pairing");
-				violation.showAndWait();
-				return;
-			}
 			if (comboTag.getValue().equals("AND")) {
-				for (Album ab : currUser.getAlbums()) {
-					Album res = ab.searchConjunctive(temp1, temp2);
-					for (Photo pho : res.photos) {
-						if (!newAlbum.contains(pho.address)) newAlbum.addPhoto(pho);
-					}
+				if (temp1 != null && temp2 != null) {
+					found = store.queryTags(currUser.name, Arrays.asList(temp1, temp2), true);
 				}
 			}
 			else if (comboTag.getValue().equals("OR")) {
-				for (Album ab : currUser.getAlbums()) {
-					Album res = ab.searchDisjunctive(temp1, temp2);
-					for (Photo pho : res.photos) {
-						if (!newAlbum.contains(pho.address)) newAlbum.addPhoto(pho);
-					}
-				}
+				ArrayList<Tag> known = new ArrayList<Tag>();
+				if (temp1 != null) known.add(temp1);
+				if (temp2 != null) known.add(temp2);
+				if (!known.isEmpty()) found = store.queryTags(currUser.name, known, false);
 			}
 		}
 		
-		currUser.addAlbum(newAlbum);
-		Photos.writeApp(ph);
+		saveAlbum(found);
+	}
+	
+	/**
+	 * Adds new Album to current User based on the boolean query
+	 * @throws Exception
+	 */
+	public void saveQuery() throws Exception {
+		Query q = parseQuery();
+		if (q == null) return;
+		saveAlbum(store.query(currUser.name, q));
+	}
+	
+	/**
+	 * Runs the boolean query without saving it and shows how it was evaluated
+	 * @throws Exception
+	 */
+	public void explainQuery() throws Exception {
+		Query q = parseQuery();
+		if (q == null) return;
+		store.query(currUser.name, q);
+		Alert plan = new Alert(AlertType.INFORMATION);
+		plan.setTitle("Explain");
+		plan.setHeaderText(q.toString());
+		plan.setContentText(q.explain());
+		plan.showAndWait();
+	}
+	
+	/**
+	 * Parses the boolean query, alerting the User if it is empty or malformed
+	 * @return the parsed Query, or null if there is none
+	 */
+	private Query parseQuery() {
+		String text = queryText.getText().toString();
+		if (text.trim().length() == 0) {
+			Alert violation = new Alert(AlertType.INFORMATION);
+			violation.setTitle("Error");
+			violation.setHeaderText("Please enter a query");
+			violation.showAndWait();
+			return null;
+		}
+		try {
+			return Query.parse(text);
+		} catch (ParseException e) {
+			Alert violation = new Alert(AlertType.INFORMATION);
+			violation.setTitle("Error");
+			violation.setHeaderText("Invalid query");
+			violation.setContentText(e.getMessage() + " (at character " + (e.getErrorOffset() + 1) + ")");
+			violation.showAndWait();
+			return null;
+		}
+	}
+	
+	/**
+	 * Adds the search results to the current User as a new Album, named after the first
+	 * "Album #n" not taken yet, with one PhotoStore.applyAll however many Photos were found.
+	 * Then returns to albums.fxml
+	 * @param found Photos matching the search
+	 * @throws Exception
+	 */
+	private void saveAlbum(List<Photo> found) throws Exception {
+		int n = currUser.getAlbums().size() + 1;
+		while (currUser.contains("Album #" + n)) n++;
+		String name = "Album #" + n;
+		ArrayList<Mutation> changes = new ArrayList<Mutation>();
+		changes.add(Mutation.addAlbum(currUser.name, name));
+		if (found != null) {
+			for (Photo pho : found) {
+				changes.add(Mutation.addPhoto(currUser.name, name, pho));
+			}
+		}
+		store.applyAll(changes);
 		returnToAlbums();
 	}
 	
@@ -180,7 +245,6 @@ public class SearchController {
 	 * @throws Exception
 	 */
 	public void returnToAlbums() throws Exception {
-		Photos.writeApp(ph);
 		ph.changeScene("albums.fxml", currUser.name, null);
 	}
 }
@@ -0,0 +1,495 @@
+package view;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import model.PhotoRegistry;
+
+/**
+ * Disk store of small pre-scaled thumbnails, so an album paints from the cache instead of
+ * decoding its originals again. Entries are keyed by the canonical path of the original and
+ * the thumbnail size, and remember the original's length and lastModified; a lookup with a
+ * different length or time finds nothing and drops the stale entry. Thumbnails are appended
+ * to a few large segment files, read back through memory mapping, and evicted least recently
+ * used first once their total size passes the budget. Segments left mostly empty by eviction
+ * are compacted and deleted. The index is written on close; after a crash, the records
+ * appended since the last index are recovered by scanning the segment tails. Every record
+ * carries a CRC32 of everything after it, and the scan drops records that fail it
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class ThumbnailCache implements Closeable {
+	/** marks the start of every record and of the index */
+	private static final int MAGIC = 0x5448554d;
+	/** version of the index and record layout, records of older versions are dropped */
+	private static final int VERSION = 2;
+	/** size a segment grows to before a new one is started */
+	private static final long SEGMENT_SIZE = 64L << 20;
+	/** bytes of a record before its key: magic, checksum and key length */
+	private static final int HEAD = 12;
+	/** bytes of a record between key and data: length, lastModified and data length */
+	private static final int MIDDLE = 20;
+
+	/**
+	 * Location of one thumbnail
+	 */
+	private static final class Entry {
+		final String key;
+		final long size;
+		final long mtime;
+		final int segment;
+		/** offset of the record in its segment */
+		final long offset;
+		/** length of the whole record */
+		final int length;
+		/** offset of the thumbnail bytes in the segment */
+		final long data;
+
+		Entry(String key, long size, long mtime, int segment, long offset, int length, long data) {
+			this.key = key;
+			this.size = size;
+			this.mtime = mtime;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * One segment file
+	 */
+	private static final class Segment {
+		final int number;
+		final File file;
+		final FileChannel channel;
+		/** read-only mapping of the file, remapped as the file grows */
+		MappedByteBuffer map;
+		/** bytes written to the file */
+		long length;
+		/** bytes of records still in the index */
+		long live;
+
+		Segment(int number, File file) throws IOException {
+			this.number = number;
+			this.file = file;
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			length = channel.size();
+		}
+
+		/**
+		 * Returns a mapping covering at least the given length
+		 * @param end the length needed
+		 * @return the mapping
+		 * @throws IOException
+		 */
+		ByteBuffer map(long end) throws IOException {
+			if (map == null || map.capacity() < end) map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			return map.duplicate();
+		}
+	}
+
+	/** folder holding the segments and index */
+	private final File dir;
+	/** most bytes of thumbnails kept */
+	private final long budget;
+	/** entries by key, least recently used first */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+	/** open segments by number */
+	private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+	/** segment new records are appended to */
+	private Segment active;
+	/** bytes of records in the index */
+	private long live;
+	/** lookups answered */
+	private long hits;
+	/** lookups that found nothing or a stale entry */
+	private long misses;
+
+	/**
+	 * Opens the cache in the given folder, creating it if needed
+	 * @param dir the folder
+	 * @param budget most bytes of thumbnails kept
+	 * @throws IOException
+	 */
+	public ThumbnailCache(File dir, long budget) throws IOException {
+		this.dir = dir;
+		this.budget = budget;
+		if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+		File[] files = dir.listFiles((d, name) -> name.startsWith("seg-") && name.endsWith(".dat"));
+		for (File f : files) {
+			try {
+				int n = Integer.parseInt(f.getName().substring(4, f.getName().length() - 4));
+				segments.put(n, new Segment(n, f));
+			} catch (NumberFormatException e) {
+				continue;
+			}
+		}
+		TreeMap<Integer, Long> indexed = readIndex();
+		for (Segment s : segments.values()) {
+			Long end = indexed.get(s.number);
+			scan(s, end == null ? 0 : Math.min(end, s.length));
+		}
+		for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+			Entry e = it.next();
+			Segment s = segments.get(e.segment);
+			if (s == null || e.offset + e.length > s.length) it.remove();
+			else {
+				s.live += e.length;
+				live += e.length;
+			}
+		}
+		active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+		evict();
+	}
+
+	/**
+	 * Returns the cache key of a thumbnail
+	 * @param path the file address of the original
+	 * @param box the largest side of the thumbnail
+	 * @return the key
+	 */
+	public static String key(String path, int box) {
+		return PhotoRegistry.canonical(path) + "@" + box;
+	}
+
+	/**
+	 * Returns the cache key of a thumbnail shared by every copy of a file. Such entries are
+	 * stored with a lastModified of 0, since copies differ in time but not in content
+	 * @param hash the content hash of the original
+	 * @param box the largest side of the thumbnail
+	 * @return the key
+	 */
+	public static String contentKey(String hash, int box) {
+		return "sha256:" + hash + "@" + box;
+	}
+
+	/**
+	 * Looks a thumbnail up, dropping it if the original has changed since it was stored
+	 * @param key the thumbnail's key
+	 * @param size the original's current length
+	 * @param mtime the original's current lastModified
+	 * @return the encoded thumbnail, or null if there is no current one
+	 * @throws IOException
+	 */
+	public synchronized byte[] get(String key, long size, long mtime) throws IOException {
+		Entry e = entries.get(key);
+		if (e != null && (e.size != size || e.mtime != mtime)) {
+			entries.remove(key);
+			dead(e);
+			e = null;
+		}
+		if (e == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		Segment s = segments.get(e.segment);
+		ByteBuffer map = s.map(e.offset + e.length);
+		byte[] out = new byte[(int) (e.offset + e.length - e.data)];
+		map.position((int) e.data);
+		map.get(out);
+		return out;
+	}
+
+	/**
+	 * Stores a thumbnail, replacing any older one under the same key
+	 * @param key the thumbnail's key
+	 * @param size the original's length
+	 * @param mtime the original's lastModified
+	 * @param data the encoded thumbnail
+	 * @throws IOException
+	 */
+	public synchronized void put(String key, long size, long mtime, byte[] data) throws IOException {
+		Entry old = entries.remove(key);
+		if (old != null) dead(old);
+		entries.put(key, append(key, size, mtime, data));
+		evict();
+	}
+
+	/**
+	 * Returns the number of thumbnails held
+	 * @return the entry count
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the bytes of thumbnails held
+	 * @return the live bytes
+	 */
+	public synchronized long bytes() {
+		return live;
+	}
+
+	/**
+	 * Returns the number of lookups that found a current thumbnail
+	 * @return the hit count
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that found nothing or a stale thumbnail
+	 * @return the miss count
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Writes the index and closes the segments
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		writeIndex();
+		for (Segment s : segments.values()) {
+			s.channel.close();
+			s.map = null;
+		}
+		segments.clear();
+		entries.clear();
+		active = null;
+	}
+
+	/**
+	 * Appends a record to the active segment, starting a new segment when it is full
+	 * @param key the thumbnail's key
+	 * @param size the original's length
+	 * @param mtime the original's lastModified
+	 * @param data the encoded thumbnail
+	 * @return the new entry
+	 * @throws IOException
+	 */
+	private Entry append(String key, long size, long mtime, byte[] data) throws IOException {
+		byte[] k = key.getBytes(StandardCharsets.UTF_8);
+		int length = HEAD + k.length + MIDDLE + data.length;
+		if (active == null || active.length + length > SEGMENT_SIZE) {
+			int n = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+			active = new Segment(n, new File(dir, String.format("seg-%06d.dat", n)));
+			segments.put(n, active);
+		}
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		buf.putInt(MAGIC).putInt(0).putInt(k.length).put(k).putLong(size).putLong(mtime).putInt(data.length).put(data);
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 8, length - 8);
+		buf.putInt(4, (int) crc.getValue());
+		buf.flip();
+		long offset = active.length;
+		while (buf.hasRemaining()) {
+			active.channel.write(buf, offset + buf.position());
+		}
+		active.length += length;
+		active.live += length;
+		live += length;
+		return new Entry(key, size, mtime, active.number, offset, length, offset + length - data.length);
+	}
+
+	/**
+	 * Accounts for a record that is no longer in the index
+	 * @param e the record's entry
+	 */
+	private void dead(Entry e) {
+		Segment s = segments.get(e.segment);
+		if (s != null) s.live -= e.length;
+		live -= e.length;
+	}
+
+	/**
+	 * Evicts least recently used thumbnails until the budget is met, then deletes empty
+	 * segments and compacts those less than a quarter full
+	 * @throws IOException
+	 */
+	private void evict() throws IOException {
+		for (Iterator<Entry> it = entries.values().iterator(); live > budget && it.hasNext();) {
+			Entry e = it.next();
+			it.remove();
+			dead(e);
+		}
+		for (Segment s : new ArrayList<Segment>(segments.values())) {
+			if (s == active) continue;
+			if (s.live == 0) drop(s);
+			else if (s.live < s.length / 4) compact(s);
+		}
+	}
+
+	/**
+	 * Copies the live records of a segment to the active one and deletes it
+	 * @param s the segment
+	 * @throws IOException
+	 */
+	private void compact(Segment s) throws IOException {
+		List<Entry> moving = new ArrayList<Entry>();
+		for (Entry e : entries.values()) {
+			if (e.segment == s.number) moving.add(e);
+		}
+		ByteBuffer map = s.map(s.length);
+		LinkedHashMap<String, Entry> moved = new LinkedHashMap<String, Entry>();
+		for (Entry e : moving) {
+			byte[] data = new byte[(int) (e.offset + e.length - e.data)];
+			map.position((int) e.data);
+			map.get(data);
+			dead(e);
+			moved.put(e.key, append(e.key, e.size, e.mtime, data));
+		}
+		drop(s);
+		// put the moved entries back in their old places in the recency order
+		ArrayList<Entry> order = new ArrayList<Entry>(entries.values());
+		entries.clear();
+		for (Entry e : order) {
+			Entry m = moved.get(e.key);
+			entries.put(e.key, m != null ? m : e);
+		}
+	}
+
+	/**
+	 * Closes and deletes a segment
+	 * @param s the segment
+	 * @throws IOException
+	 */
+	private void drop(Segment s) throws IOException {
+		segments.remove(s.number);
+		s.channel.close();
+		s.map = null;
+		if (!s.file.delete()) s.file.deleteOnExit();
+	}
+
+	/**
+	 * Adds the records of a segment from the given offset to the index, skipping records whose
+	 * checksum fails and truncating the segment at the first incomplete or unreadable record
+	 * @param s the segment
+	 * @param from offset of the first record not in the index
+	 * @throws IOException
+	 */
+	private void scan(Segment s, long from) throws IOException {
+		if (from >= s.length) return;
+		ByteBuffer map = s.map(s.length);
+		CRC32 crc = new CRC32();
+		long pos = from;
+		while (pos + HEAD <= s.length) {
+			map.position((int) pos);
+			if (map.getInt() != MAGIC) break;
+			int checksum = map.getInt();
+			int klen = map.getInt();
+			if (klen < 0 || pos + HEAD + klen + MIDDLE > s.length) break;
+			byte[] k = new byte[klen];
+			map.get(k);
+			long size = map.getLong();
+			long mtime = map.getLong();
+			int dlen = map.getInt();
+			int length = HEAD + klen + MIDDLE + dlen;
+			if (dlen < 0 || pos + length > s.length) break;
+			ByteBuffer body = map.duplicate();
+			body.limit((int) (pos + length)).position((int) pos + 8);
+			crc.reset();
+			crc.update(body);
+			if ((int) crc.getValue() == checksum) {
+				String key = new String(k, StandardCharsets.UTF_8);
+				entries.put(key, new Entry(key, size, mtime, s.number, pos, length, pos + length - dlen));
+			}
+			pos += length;
+		}
+		if (pos < s.length) {
+			s.channel.truncate(pos);
+			s.length = pos;
+			s.map = null;
+		}
+	}
+
+	/**
+	 * Reads the index written by the last close, if it is intact
+	 * @return the length each segment had when the index was written
+	 */
+	private TreeMap<Integer, Long> readIndex() {
+		TreeMap<Integer, Long> lengths = new TreeMap<Integer, Long>();
+		File f = new File(dir, "index.dat");
+		if (!f.isFile()) return lengths;
+		ArrayList<Entry> read = new ArrayList<Entry>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) return lengths;
+			int segs = in.readInt();
+			for (int i = 0; i < segs; i++) {
+				lengths.put(in.readInt(), in.readLong());
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				long size = in.readLong();
+				long mtime = in.readLong();
+				int segment = in.readInt();
+				long offset = in.readLong();
+				int length = in.readInt();
+				long data = in.readLong();
+				read.add(new Entry(key, size, mtime, segment, offset, length, data));
+			}
+		} catch (IOException e) {
+			// a damaged index is rebuilt from the segments
+			return new TreeMap<Integer, Long>();
+		}
+		for (Entry e : read) {
+			entries.put(e.key, e);
+		}
+		return lengths;
+	}
+
+	/**
+	 * Writes the index, least recently used entry first
+	 * @throws IOException
+	 */
+	private void writeIndex() throws IOException {
+		File tmp = new File(dir, "index.tmp");
+		FileOutputStream file = new FileOutputStream(tmp);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(segments.size());
+			for (Segment s : segments.values()) {
+				out.writeInt(s.number);
+				out.writeLong(s.length);
+			}
+			out.writeInt(entries.size());
+			for (Entry e : entries.values()) {
+				out.writeUTF(e.key);
+				out.writeLong(e.size);
+				out.writeLong(e.mtime);
+				out.writeInt(e.segment);
+				out.writeLong(e.offset);
+				out.writeInt(e.length);
+				out.writeLong(e.data);
+			}
+			out.flush();
+			file.getChannel().force(true);
+		}
+		File f = new File(dir, "index.dat");
+		try {
+			Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
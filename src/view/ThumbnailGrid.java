@@ -0,0 +1,397 @@
+package view;
+
+import java.util.ArrayList;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.SingleSelectionModel;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.shape.Rectangle;
+import model.Photo;
+
+/**
+ * Scrolling grid of Photo thumbnails for Albums of any size. Every tile has the same square
+ * box, so the position of any Photo follows from its index and the width of the grid alone,
+ * and laying out never waits on pixels; thumbnails are fitted into their box once loaded.
+ * Only the tiles of the visible rows exist as nodes. When the grid scrolls, tiles that left
+ * the view are rebound to the Photos that entered it, keeping their nodes, and a tile still
+ * showing the same Photo keeps its thumbnail. Selection works like a ListView's, through a
+ * SingleSelectionModel
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class ThumbnailGrid extends Region {
+	/** largest side of a thumbnail */
+	public static final int THUMB_SIZE = 116;
+	/** height of the caption under a thumbnail */
+	private static final double CAPTION = 18;
+	/** space between tiles */
+	private static final double GAP = 4;
+	/** width of a tile */
+	private static final double TILE_WIDTH = THUMB_SIZE + 4;
+	/** height of a tile */
+	private static final double TILE_HEIGHT = THUMB_SIZE + 4 + CAPTION;
+	/** style of the selected tile */
+	private static final String SELECTED = "-fx-background-color: -fx-selection-bar; -fx-text-fill: -fx-selection-bar-text;";
+
+	/**
+	 * A recyclable tile showing one Photo
+	 */
+	private final class Tile extends VBox {
+		private final ImageView imageView = new ImageView();
+		private final Label label = new Label();
+		/** position of the Photo shown, -1 if the tile is free */
+		private int index = -1;
+		/** Photo shown, null if the tile is free */
+		private Photo photo;
+		/** thumbnail being loaded for the Photo, if any */
+		private ThumbnailLoader.Request pending;
+
+		private Tile() {
+			StackPane box = new StackPane(imageView);
+			box.setPrefSize(THUMB_SIZE, THUMB_SIZE);
+			box.setMinSize(THUMB_SIZE, THUMB_SIZE);
+			box.setMaxSize(THUMB_SIZE, THUMB_SIZE);
+			getChildren().addAll(box, label);
+			setAlignment(Pos.TOP_CENTER);
+			imageView.setPreserveRatio(true);
+			setOnMouseClicked(e -> {
+				ThumbnailGrid.this.requestFocus();
+				if (index >= 0) selection.select(index);
+			});
+		}
+
+		/**
+		 * Shows a Photo, loading its thumbnail unless the tile shows it already
+		 * @param i the Photo's position
+		 * @param x the Photo, or null while it is still being read
+		 */
+		private void bind(int i, Photo x) {
+			index = i;
+			label.setText(x == null ? "" : x.missing ? "[missing] " + x.getCaption() : x.getCaption());
+			setStyle(i == selection.getSelectedIndex() ? SELECTED : "");
+			setVisible(true);
+			if (x == photo) return;
+			release();
+			photo = x;
+			if (x == null || loader == null) return;
+			// the size read from the file's header lays the tile out before anything is decoded
+			if (x.width > 0 && x.height > 0) fit(x.width, x.height);
+			pending = loader.load(x, THUMB_SIZE, ThumbnailLoader.VISIBLE, img -> {
+				pending = null;
+				if (img == null) return;
+				if (x.width <= 0 || x.height <= 0) fit(img.getWidth(), img.getHeight());
+				imageView.setImage(img);
+			});
+		}
+
+		/**
+		 * Fits the thumbnail's longer side to the tile
+		 * @param width width of the image
+		 * @param height height of the image
+		 */
+		private void fit(double width, double height) {
+			imageView.setFitWidth(0);
+			imageView.setFitHeight(0);
+			if (height > width) {
+				imageView.setFitHeight(THUMB_SIZE);
+			} else imageView.setFitWidth(THUMB_SIZE);
+		}
+
+		/**
+		 * Cancels the tile's load and clears its thumbnail
+		 */
+		private void release() {
+			if (pending != null) {
+				pending.cancel();
+				pending = null;
+			}
+			imageView.setImage(null);
+			photo = null;
+		}
+
+		/**
+		 * Hides the tile until it is bound again
+		 */
+		private void free() {
+			release();
+			index = -1;
+			setVisible(false);
+		}
+	}
+
+	/**
+	 * Selection of a single Photo of the grid
+	 */
+	private final class Selection extends SingleSelectionModel<Photo> {
+		@Override
+		protected Photo getModelItem(int index) {
+			return index < 0 || index >= items.size() ? null : items.get(index);
+		}
+
+		@Override
+		protected int getItemCount() {
+			return items.size();
+		}
+
+		/**
+		 * Selects a Photo found with indexOf, which a PagedList answers without reading pages
+		 * @param x the Photo
+		 */
+		@Override
+		public void select(Photo x) {
+			int i = x == null ? -1 : items.indexOf(x);
+			if (i >= 0) select(i);
+		}
+	}
+
+	/** Photos shown */
+	private ObservableList<Photo> items = FXCollections.observableArrayList();
+	/** selected Photo */
+	private final Selection selection = new Selection();
+	/** loader of the thumbnails, null until set */
+	private ThumbnailLoader loader;
+	/** vertical scroll position */
+	private final ScrollBar bar = new ScrollBar();
+	/** keeps tiles scrolled partly out of view from drawing outside the grid */
+	private final Rectangle clip = new Rectangle();
+	/** every tile created, bound or free */
+	private final ArrayList<Tile> tiles = new ArrayList<Tile>();
+	/** tiles by position in the visible rows, null where none is bound */
+	private Tile[] visible = new Tile[0];
+	/** position of the first entry of visible */
+	private int firstVisible;
+	/** columns in the last layout */
+	private int columns = 1;
+	/**
+	 * re-lays out the grid when the Photos change, keeping the selected Photo selected, and
+	 * selects again a position that was selected before its Photo was read
+	 */
+	private final ListChangeListener<Photo> itemsChanged = c -> {
+		Photo sel = selection.getSelectedItem();
+		int at = selection.getSelectedIndex();
+		if (sel != null && (at >= items.size() || items.get(at) != sel)) {
+			int moved = items.indexOf(sel);
+			if (moved < 0) selection.clearSelection();
+			else selection.select(moved);
+		}
+		else if (sel == null && at >= 0 && at < items.size() && items.get(at) != null) {
+			selection.clearSelection();
+			selection.select(at);
+		}
+		requestLayout();
+	};
+
+	/**
+	 * Constructor for an empty grid
+	 */
+	public ThumbnailGrid() {
+		bar.setOrientation(Orientation.VERTICAL);
+		bar.setMin(0);
+		bar.setUnitIncrement(TILE_HEIGHT + GAP);
+		bar.valueProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+		getChildren().add(bar);
+		setClip(clip);
+		setFocusTraversable(true);
+		setOnScroll(e -> {
+			bar.setValue(Math.max(0, Math.min(bar.getMax(), bar.getValue() - e.getDeltaY())));
+			e.consume();
+		});
+		setOnKeyPressed(this::keyPressed);
+		items.addListener(itemsChanged);
+		selection.selectedIndexProperty().addListener((obs, oldVal, newVal) -> {
+			restyle(oldVal.intValue());
+			restyle(newVal.intValue());
+			scrollTo(newVal.intValue());
+		});
+	}
+
+	/**
+	 * Sets the loader the thumbnails come from
+	 * @param loader the thumbnail loader
+	 */
+	public void setLoader(ThumbnailLoader loader) {
+		this.loader = loader;
+		for (Tile t : tiles) {
+			t.release();
+		}
+		requestLayout();
+	}
+
+	/**
+	 * Reloads the thumbnails and captions in view, after the files behind them changed
+	 */
+	public void refresh() {
+		for (Tile t : tiles) {
+			t.release();
+		}
+		requestLayout();
+	}
+
+	/**
+	 * Replaces the Photos shown, clearing the selection
+	 * @param list the Photos
+	 */
+	public void setItems(ObservableList<Photo> list) {
+		items.removeListener(itemsChanged);
+		items = list;
+		items.addListener(itemsChanged);
+		selection.clearSelection();
+		bar.setValue(0);
+		requestLayout();
+	}
+
+	/**
+	 * Returns the Photos shown
+	 * @return the Photos
+	 */
+	public ObservableList<Photo> getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the selection model
+	 * @return the selection model
+	 */
+	public SingleSelectionModel<Photo> getSelectionModel() {
+		return selection;
+	}
+
+	/**
+	 * Returns the number of tile nodes, which depends only on the size of the grid
+	 * @return the number of tiles
+	 */
+	public int getTileCount() {
+		return tiles.size();
+	}
+
+	/**
+	 * Scrolls the least distance that shows a Photo's row
+	 * @param index the Photo's position
+	 */
+	public void scrollTo(int index) {
+		if (index < 0 || index >= items.size()) return;
+		double top = (index / columns) * (TILE_HEIGHT + GAP);
+		double bottom = top + TILE_HEIGHT;
+		if (top < bar.getValue()) bar.setValue(top);
+		else if (bottom > bar.getValue() + getHeight()) bar.setValue(Math.min(bar.getMax(), bottom - getHeight()));
+	}
+
+	/**
+	 * Places the tiles of the visible rows, rebinding tiles that scrolled out of view
+	 */
+	@Override
+	protected void layoutChildren() {
+		double width = getWidth();
+		double height = getHeight();
+		clip.setWidth(width);
+		clip.setHeight(height);
+		double barWidth = bar.prefWidth(-1);
+		bar.resizeRelocate(width - barWidth, 0, barWidth, height);
+
+		columns = Math.max(1, (int) ((width - barWidth + GAP) / (TILE_WIDTH + GAP)));
+		double rowHeight = TILE_HEIGHT + GAP;
+		int rows = (items.size() + columns - 1) / columns;
+		double max = Math.max(0, rows * rowHeight - GAP - height);
+		bar.setMax(max);
+		bar.setVisibleAmount(max == 0 ? 0 : height * max / (rows * rowHeight));
+		bar.setBlockIncrement(height);
+		if (bar.getValue() > max) bar.setValue(max);
+		double top = bar.getValue();
+
+		int firstRow = (int) (top / rowHeight);
+		int lastRow = Math.min(rows - 1, (int) ((top + height) / rowHeight));
+		int from = firstRow * columns;
+		int to = Math.min(items.size(), (lastRow + 1) * columns);
+
+		// keep the tiles whose Photo is still in view where it was, and free the rest
+		Tile[] next = new Tile[Math.max(0, to - from)];
+		ArrayList<Tile> spare = new ArrayList<Tile>();
+		for (int k = 0; k < visible.length; k++) {
+			Tile t = visible[k];
+			if (t == null) continue;
+			int i = firstVisible + k;
+			if (i >= from && i < to && items.get(i) == t.photo) next[i - from] = t;
+			else spare.add(t);
+		}
+		for (Tile t : tiles) {
+			if (t.index < 0) spare.add(t);
+		}
+		for (int i = from; i < to; i++) {
+			Tile t = next[i - from];
+			if (t == null) {
+				if (spare.isEmpty()) {
+					t = new Tile();
+					tiles.add(t);
+					getChildren().add(t);
+				} else t = spare.remove(spare.size() - 1);
+				next[i - from] = t;
+			}
+			t.bind(i, items.get(i));
+			int row = i / columns;
+			int col = i % columns;
+			t.resizeRelocate(col * (TILE_WIDTH + GAP), row * rowHeight - top, TILE_WIDTH, TILE_HEIGHT);
+		}
+		for (Tile t : spare) {
+			if (t.index >= 0 || t.photo != null) t.free();
+		}
+		visible = next;
+		firstVisible = from;
+	}
+
+	@Override
+	protected double computePrefWidth(double height) {
+		return 3 * (TILE_WIDTH + GAP) + bar.prefWidth(-1);
+	}
+
+	@Override
+	protected double computePrefHeight(double width) {
+		return 4 * (TILE_HEIGHT + GAP);
+	}
+
+	/**
+	 * Updates the selection style of the tile at a position, if it is in view
+	 * @param index the position
+	 */
+	private void restyle(int index) {
+		int k = index - firstVisible;
+		if (k >= 0 && k < visible.length && visible[k] != null) {
+			visible[k].setStyle(index == selection.getSelectedIndex() ? SELECTED : "");
+		}
+	}
+
+	/**
+	 * Moves the selection with the arrow, page and home/end keys
+	 * @param e the key event
+	 */
+	private void keyPressed(KeyEvent e) {
+		int n = items.size();
+		if (n == 0) return;
+		int at = Math.max(0, selection.getSelectedIndex());
+		int page = Math.max(1, (int) (getHeight() / (TILE_HEIGHT + GAP))) * columns;
+		int to;
+		switch (e.getCode()) {
+		case LEFT: to = at - 1; break;
+		case RIGHT: to = at + 1; break;
+		case UP: to = at - columns; break;
+		case DOWN: to = at + columns; break;
+		case PAGE_UP: to = at - page; break;
+		case PAGE_DOWN: to = at + page; break;
+		case HOME: to = 0; break;
+		case END: to = n - 1; break;
+		default: return;
+		}
+		selection.select(Math.max(0, Math.min(n - 1, to)));
+		e.consume();
+	}
+}
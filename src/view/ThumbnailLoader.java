@@ -0,0 +1,307 @@
+package view;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import app.ContentHasher;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import model.Photo;
+
+/**
+ * Loads thumbnails and display-size images off the FX thread. Requests run on a small pool of
+ * background threads, most urgent first and, within the same priority, newest first, so the
+ * cells on screen after a fast scroll are served before the ones scrolled past; a cell that is
+ * recycled cancels its old request. Each thumbnail comes from the ThumbnailCache when the
+ * original has not changed, otherwise the original is decoded with ImageIO subsampling close
+ * to the thumbnail size, scaled down, encoded and stored. Display images are decoded straight
+ * at the requested size. Decoded images are kept in the ImageCache, and a request it can
+ * answer completes at once. Other results are handed back on the FX thread
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class ThumbnailLoader implements Closeable {
+	/** priority of thumbnails for cells on screen */
+	public static final int VISIBLE = 0;
+	/** priority of thumbnails loaded ahead of need */
+	public static final int PREFETCH = 1;
+
+	/**
+	 * A pending image, which can be cancelled until its result is handed back
+	 */
+	public final class Request implements Runnable, Comparable<Request> {
+		private final Photo photo;
+		/** requested width, the thumbnail box for thumbnails */
+		private final int width;
+		/** requested height, 0 for thumbnails */
+		private final int height;
+		private final String key;
+		private final int priority;
+		private final long order = sequence.incrementAndGet();
+		private final Consumer<Image> done;
+		private volatile boolean cancelled;
+
+		private Request(Photo photo, int width, int height, int priority, Consumer<Image> done) {
+			this.photo = photo;
+			this.width = width;
+			this.height = height;
+			this.key = ImageCache.key(photo.address, width, height);
+			this.priority = priority;
+			this.done = done;
+		}
+
+		/**
+		 * Cancels the request; its result, if already decoded, is not handed back
+		 */
+		public void cancel() {
+			cancelled = true;
+			pool.remove(this);
+		}
+
+		/**
+		 * Checks whether the request was cancelled
+		 * @return whether cancel was called
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public void run() {
+			if (cancelled) return;
+			Image img = null;
+			try {
+				if (height == 0) {
+					byte[] bytes = thumbnail(photo.address, width);
+					if (bytes != null && !cancelled) img = new Image(new ByteArrayInputStream(bytes));
+				}
+				else {
+					File f = new File(photo.address);
+					// decoded here rather than on JavaFX's loader threads, so the pool's order and
+					// cancel govern it and the image has its size and error state once built
+					if (f.isFile()) img = new Image(f.toURI().toString(), width, height, true, true, false);
+				}
+			} catch (IOException | RuntimeException e) {
+				img = null;
+			}
+			if (img != null && img.isError()) img = null;
+			if (img != null) images.put(key, img);
+			if (cancelled) return;
+			Image result = img;
+			Platform.runLater(() -> {
+				if (!cancelled) done.accept(result);
+			});
+		}
+
+		@Override
+		public int compareTo(Request o) {
+			if (priority != o.priority) return Integer.compare(priority, o.priority);
+			return Long.compare(o.order, order);
+		}
+	}
+
+	/** cache the thumbnails are kept in, null to decode every time */
+	private final ThumbnailCache cache;
+	/** decoded images shared by every view */
+	private final ImageCache images;
+	/** hashes keying the thumbnails of copies alike, null to key by path only */
+	private final ContentHasher hasher;
+	/** background threads, taking requests in priority order */
+	private final ThreadPoolExecutor pool;
+	/** numbers requests so newer ones run first */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Constructor for a loader over the given caches
+	 * @param cache the disk cache, or null for none
+	 * @param images the in-memory cache of decoded images
+	 * @param hasher the content hasher, or null to key thumbnails by path only
+	 */
+	public ThumbnailLoader(ThumbnailCache cache, ImageCache images, ContentHasher hasher) {
+		this.cache = cache;
+		this.images = images;
+		this.hasher = hasher;
+		int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+		AtomicInteger count = new AtomicInteger();
+		pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), r -> {
+			Thread t = new Thread(r, "thumbnail-" + count.incrementAndGet());
+			t.setDaemon(true);
+			t.setPriority(Thread.NORM_PRIORITY - 1);
+			return t;
+		});
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Loads a thumbnail, at once if it is in the ImageCache and otherwise in the background
+	 * @param x the Photo
+	 * @param box the largest side of the thumbnail
+	 * @param priority VISIBLE or PREFETCH
+	 * @param done called on the FX thread with the thumbnail, or null if the file is missing or
+	 * not a readable image
+	 * @return the request, for cancelling, or null if done was already called
+	 */
+	public Request load(Photo x, int box, int priority, Consumer<Image> done) {
+		return submit(new Request(x, box, 0, priority, done));
+	}
+
+	/**
+	 * Loads an image decoded to fit the given size, at once if it is in the ImageCache and
+	 * otherwise in the background
+	 * @param x the Photo
+	 * @param width the width to fit
+	 * @param height the height to fit
+	 * @param priority VISIBLE or PREFETCH
+	 * @param done called on the FX thread with the image, or null if the file is missing or not
+	 * a readable image
+	 * @return the request, for cancelling, or null if done was already called
+	 */
+	public Request loadImage(Photo x, int width, int height, int priority, Consumer<Image> done) {
+		return submit(new Request(x, width, height, priority, done));
+	}
+
+	/**
+	 * Answers a request from the ImageCache or queues it
+	 * @param r the request
+	 * @return the queued request, or null if it was answered
+	 */
+	private Request submit(Request r) {
+		Image hit = images.get(r.key);
+		if (hit != null) {
+			r.done.accept(hit);
+			return null;
+		}
+		pool.execute(r);
+		return r;
+	}
+
+	/**
+	 * Returns the disk cache
+	 * @return the cache, or null if there is none
+	 */
+	public ThumbnailCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Returns the in-memory cache of decoded images
+	 * @return the ImageCache
+	 */
+	public ImageCache getImages() {
+		return images;
+	}
+
+	/**
+	 * Drops pending requests, stops the threads and closes the cache
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Iterator<Runnable> it = pool.getQueue().iterator(); it.hasNext();) {
+			((Request) it.next()).cancelled = true;
+		}
+		pool.shutdownNow();
+		try {
+			pool.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (cache != null) cache.close();
+	}
+
+	/**
+	 * Returns the encoded thumbnail of a file, from the cache or by decoding the original
+	 * @param path the file address
+	 * @param box the largest side of the thumbnail
+	 * @return the encoded thumbnail, or null if the file is missing or not a readable image
+	 * @throws IOException
+	 */
+	public byte[] thumbnail(String path, int box) throws IOException {
+		File f = new File(path);
+		if (!f.isFile()) return null;
+		long size = f.length();
+		long mtime = f.lastModified();
+		// a file hashed since it last changed shares one thumbnail with all its copies
+		String hash = hasher == null ? null : hasher.cached(path);
+		String key = hash == null ? ThumbnailCache.key(path, box) : ThumbnailCache.contentKey(hash, box);
+		long stamp = hash == null ? mtime : 0;
+		byte[] bytes = cache == null ? null : cache.get(key, size, stamp);
+		if (bytes != null) return bytes;
+		bytes = encode(decode(f, box));
+		if (bytes != null && cache != null) cache.put(key, size, stamp, bytes);
+		return bytes;
+	}
+
+	/**
+	 * Decodes an image scaled to fit a box, reading only every n-th pixel of large originals
+	 * @param f the file
+	 * @param box the largest side of the result
+	 * @return the scaled image, or null if no reader understands the file
+	 * @throws IOException
+	 */
+	static BufferedImage decode(File f, int box) throws IOException {
+		BufferedImage src;
+		try (ImageInputStream in = ImageIO.createImageInputStream(f)) {
+			if (in == null) return null;
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext()) return null;
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				int side = Math.max(reader.getWidth(0), reader.getHeight(0));
+				ImageReadParam param = reader.getDefaultReadParam();
+				// subsample to no less than twice the box, then scale smoothly the rest of the way
+				int step = Math.max(1, side / (box * 2));
+				param.setSourceSubsampling(step, step, 0, 0);
+				src = reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+		double scale = Math.min(1.0, (double) box / Math.max(src.getWidth(), src.getHeight()));
+		int w = Math.max(1, (int) Math.round(src.getWidth() * scale));
+		int h = Math.max(1, (int) Math.round(src.getHeight() * scale));
+		boolean alpha = src.getColorModel().hasAlpha();
+		BufferedImage out = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = out.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(src, 0, 0, w, h, null);
+		} finally {
+			g.dispose();
+		}
+		return out;
+	}
+
+	/**
+	 * Encodes a thumbnail, as JPEG unless it has transparency
+	 * @param img the thumbnail
+	 * @return the encoded bytes, or null if img is null
+	 * @throws IOException
+	 */
+	static byte[] encode(BufferedImage img) throws IOException {
+		if (img == null) return null;
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+		ImageIO.write(img, img.getColorModel().hasAlpha() ? "png" : "jpg", out);
+		return out.toByteArray();
+	}
+}
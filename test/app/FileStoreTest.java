@@ -0,0 +1,116 @@
+package app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import model.Photo;
+import model.Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that FileStore refuses a change the journal cannot hold before making it, so one bad
+ * change never keeps the changes after it from reaching the disk, and that its Tag searches
+ * come back in the order PhotoStore promises
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class FileStoreTest {
+	/** folder holding the store */
+	private File root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("store").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(root.toPath())) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	public void unjournalableChangeIsRefused() throws IOException {
+		FileStore fs = new FileStore(root);
+		fs.open();
+		fs.applyAll(Arrays.asList(Mutation.addUser("ann"), Mutation.addAlbum("ann", "trip"),
+				Mutation.addPhoto("ann", "trip", new Photo("/photos/a.jpg", Calendar.getInstance()))));
+		char[] words = new char[(1 << 20) + 1];
+		Arrays.fill(words, 'x');
+		try {
+			fs.apply(Mutation.setCaption("ann", "trip", "/photos/a.jpg", new String(words)));
+			fail("a change too large for the journal was accepted");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals("", fs.loadUser("ann").getAlbum("trip").photos.get(0).caption);
+
+		// a long caption still fits, and changes after the refused one reach the disk
+		char[] longer = new char[70000];
+		Arrays.fill(longer, 'y');
+		fs.apply(Mutation.setCaption("ann", "trip", "/photos/a.jpg", new String(longer)));
+		fs.apply(Mutation.addAlbum("ann", "later"));
+		fs.flush();
+		fs.close();
+
+		FileStore reopened = new FileStore(root);
+		reopened.open();
+		try {
+			assertTrue(reopened.loadUser("ann").contains("later"));
+			assertEquals(new String(longer), reopened.loadUser("ann").getAlbum("trip").photos.get(0).caption);
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void tagSearchIsOldestFirst() throws IOException {
+		FileStore fs = new FileStore(root);
+		fs.open();
+		try {
+			Tag beach = Tag.of("place", "beach");
+			// added newest first, so id order and time order disagree
+			fs.applyAll(Arrays.asList(Mutation.addUser("ann"), Mutation.addAlbum("ann", "trip"),
+					Mutation.addPhoto("ann", "trip", photo("/photos/c.jpg", 3000)),
+					Mutation.addPhoto("ann", "trip", photo("/photos/b.jpg", 1000)),
+					Mutation.addPhoto("ann", "trip", photo("/photos/a.jpg", 1000)),
+					Mutation.addTag("ann", "trip", "/photos/c.jpg", beach),
+					Mutation.addTag("ann", "trip", "/photos/b.jpg", beach),
+					Mutation.addTag("ann", "trip", "/photos/a.jpg", beach)));
+			List<Photo> found = fs.queryTags("ann", Arrays.asList(beach), false);
+			assertEquals(3, found.size());
+			assertEquals("/photos/a.jpg", found.get(0).address);
+			assertEquals("/photos/b.jpg", found.get(1).address);
+			assertEquals("/photos/c.jpg", found.get(2).address);
+		} finally {
+			fs.close();
+		}
+	}
+
+	/**
+	 * Builds a Photo taken at the given time
+	 * @param address file address of the Photo
+	 * @param millis when it was taken, in epoch millis
+	 * @return the Photo
+	 */
+	private static Photo photo(String address, long millis) {
+		Calendar t = Calendar.getInstance();
+		t.setTimeInMillis(millis);
+		return new Photo(address, t);
+	}
+}
@@ -0,0 +1,264 @@
+package app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import model.Photo;
+import model.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests replaying the Journal: every whole record is applied, and a record torn or damaged by
+ * a crash is cut off together with whatever follows it, never the whole file
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class JournalTest {
+	/** folder holding the files of one test */
+	private File root;
+	/** stores opened by the test, closed after it */
+	private final List<FileStore> stores = new ArrayList<FileStore>();
+
+	@Before
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("journal").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (FileStore fs : stores) {
+			fs.close();
+		}
+		try (Stream<Path> files = Files.walk(root.toPath())) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	public void replaysEveryRecord() throws IOException {
+		File log = new File(root, "users.log");
+		write(log);
+
+		Journal journal = new Journal(log);
+		FileStore fs = emptyStore("all");
+		assertEquals(3, journal.replay(fs));
+		assertEquals(3, journal.size());
+		assertEquals(3, journal.getLastLsn());
+		User ann = fs.loadUser("ann");
+		assertTrue(ann.contains("trip"));
+		assertTrue(ann.contains("home"));
+	}
+
+	@Test
+	public void tornTailIsTruncated() throws IOException {
+		File log = new File(root, "users.log");
+		long whole = write(log);
+		// the last record's header landed but only part of its payload did
+		try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+			raf.setLength(raf.length() - 3);
+		}
+
+		Journal journal = new Journal(log);
+		FileStore fs = emptyStore("torn");
+		assertEquals(2, journal.replay(fs));
+		assertEquals("cut after the last whole record", whole, log.length());
+		assertEquals(2, journal.getLastLsn());
+		User ann = fs.loadUser("ann");
+		assertTrue(ann.contains("trip"));
+		assertFalse(ann.contains("home"));
+
+		// records appended after the cut follow the last whole record
+		journal.append(3, Mutation.addAlbum("ann", "work"));
+		journal.commit();
+		journal.close();
+		Journal again = new Journal(log);
+		FileStore next = emptyStore("again");
+		assertEquals(3, again.replay(next));
+		assertTrue(next.loadUser("ann").contains("work"));
+	}
+
+	@Test
+	public void damagedRecordEndsReplay() throws IOException {
+		File log = new File(root, "users.log");
+		long whole = write(log);
+		// flip a byte of the third record's payload so its checksum no longer matches
+		try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+			raf.seek(whole + 12);
+			int b = raf.read();
+			raf.seek(whole + 12);
+			raf.write(b ^ 0xFF);
+		}
+
+		Journal journal = new Journal(log);
+		FileStore fs = emptyStore("damaged");
+		assertEquals(2, journal.replay(fs));
+		assertEquals(whole, log.length());
+		assertFalse(fs.loadUser("ann").contains("home"));
+	}
+
+	@Test
+	public void garbageAfterHeaderIsTruncated() throws IOException {
+		File log = new File(root, "users.log");
+		write(log);
+		try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+			raf.setLength(0);
+			// a length far beyond the file, as left by a write that never completed
+			raf.writeInt(Integer.MAX_VALUE);
+			raf.writeInt(0);
+		}
+
+		Journal journal = new Journal(log);
+		assertEquals(0, journal.replay(emptyStore("garbage")));
+		assertEquals(0, log.length());
+	}
+
+	@Test
+	public void abortDropsUncommittedRecords() throws IOException {
+		File log = new File(root, "users.log");
+		long whole = write(log);
+		Journal journal = new Journal(log);
+		journal.replay(emptyStore("abort"));
+		long length = log.length();
+
+		journal.append(4, Mutation.addAlbum("ann", "work"));
+		journal.abort();
+		assertEquals(length, log.length());
+		assertEquals(3, journal.size());
+
+		journal.append(4, Mutation.addAlbum("ann", "work"));
+		journal.commit();
+		journal.close();
+		assertTrue(log.length() > whole);
+		FileStore fs = emptyStore("after");
+		assertEquals(4, new Journal(log).replay(fs));
+		assertTrue(fs.loadUser("ann").contains("work"));
+	}
+
+	@Test
+	public void longCaptionIsReplayed() throws IOException {
+		File log = new File(root, "users.log");
+		// longer than the 65535 bytes writeUTF could hold
+		char[] words = new char[70000];
+		Arrays.fill(words, '\u00e9');
+		String caption = new String(words);
+		Journal journal = new Journal(log);
+		journal.append(1, Mutation.addUser("ann"));
+		journal.append(2, Mutation.addAlbum("ann", "trip"));
+		journal.append(3, Mutation.addPhoto("ann", "trip", new Photo("/photos/a.jpg", Calendar.getInstance())));
+		journal.append(4, Mutation.setCaption("ann", "trip", "/photos/a.jpg", caption));
+		journal.commit();
+		journal.close();
+
+		FileStore fs = emptyStore("long");
+		assertEquals(4, new Journal(log).replay(fs));
+		assertEquals(caption, fs.loadUser("ann").getAlbum("trip").photos.get(0).caption);
+	}
+
+	@Test
+	public void oversizedRecordIsRejected() throws IOException {
+		File log = new File(root, "users.log");
+		write(log);
+		long length = log.length();
+		char[] words = new char[(1 << 20) + 1];
+		Arrays.fill(words, 'x');
+		Journal journal = new Journal(log);
+		journal.replay(emptyStore("oversized"));
+		try {
+			journal.append(4, Mutation.setCaption("ann", "trip", "/photos/a.jpg", new String(words)));
+			fail("a record replay would cut off was appended");
+		} catch (IOException e) {
+			// expected
+		}
+		journal.commit();
+		journal.close();
+		assertEquals(length, log.length());
+	}
+
+	@Test
+	public void earlierRecordLayoutIsReplayed() throws IOException {
+		// records of earlier versions flagged each String with a boolean and wrote it with writeUTF
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bytes);
+		body.writeLong(1);
+		body.writeByte(Mutation.Kind.ADD_USER.ordinal());
+		body.writeBoolean(true);
+		body.writeUTF("ann");
+		for (int i = 0; i < 4; i++) {
+			body.writeBoolean(false);
+		}
+		body.writeLong(0);
+		body.flush();
+		byte[] payload = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+		frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+		File log = new File(root, "users.log");
+		Files.write(log.toPath(), frame.array());
+
+		Journal journal = new Journal(log);
+		FileStore fs = emptyStore("earlier");
+		assertEquals(1, journal.replay(fs));
+		assertEquals("ann", fs.loadUser("ann").name);
+
+		// new records follow the old one in the current layout
+		journal.append(2, Mutation.addAlbum("ann", "trip"));
+		journal.commit();
+		journal.close();
+		FileStore next = emptyStore("mixed");
+		assertEquals(2, new Journal(log).replay(next));
+		assertTrue(next.loadUser("ann").contains("trip"));
+	}
+
+	/**
+	 * Writes three records: a new User, then two of its Albums
+	 * @param log the journal file
+	 * @return the length of the file after the first two records
+	 * @throws IOException
+	 */
+	private static long write(File log) throws IOException {
+		Journal journal = new Journal(log);
+		journal.append(1, Mutation.addUser("ann"));
+		journal.append(2, Mutation.addAlbum("ann", "trip"));
+		journal.commit();
+		long whole = log.length();
+		journal.append(3, Mutation.addAlbum("ann", "home"));
+		journal.commit();
+		journal.close();
+		return whole;
+	}
+
+	/**
+	 * Opens a new store holding only the stock User, to replay a journal into
+	 * @param name name of the store's folder
+	 * @return the store
+	 * @throws IOException
+	 */
+	private FileStore emptyStore(String name) throws IOException {
+		FileStore fs = new FileStore(new File(root, name));
+		fs.open();
+		stores.add(fs);
+		return fs;
+	}
+}
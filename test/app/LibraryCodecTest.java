@@ -0,0 +1,354 @@
+package app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+import model.Album;
+import model.Photo;
+import model.Tag;
+import model.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that LibraryCodec reads back what it writes, deflated or not, that it still reads
+ * libraries written by older versions of the format, and that Migrator carries libraries
+ * written by default Java serialization over to it
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class LibraryCodecTest {
+	/** folder holding the files of one test */
+	private File root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("codec").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : root.listFiles()) {
+			f.delete();
+		}
+		root.delete();
+	}
+
+	@Test
+	public void roundTripDeflated() throws IOException {
+		roundTrip(true);
+	}
+
+	@Test
+	public void roundTripPlain() throws IOException {
+		roundTrip(false);
+	}
+
+	@Test
+	public void deflateFlagIsWritten() throws IOException {
+		List<User> users = library();
+		byte[] deflated = write(users, true);
+		byte[] plain = write(users, false);
+		// magic, then the version as a single byte varint, then the flags
+		assertEquals(1, deflated[5]);
+		assertEquals(0, plain[5]);
+		assertTrue(new String(plain, StandardCharsets.UTF_8).contains("sunset"));
+		assertFalse(new String(deflated, StandardCharsets.UTF_8).contains("sunset"));
+	}
+
+	@Test
+	public void readsVersionOne() throws IOException {
+		// version 1 had no width, height or orientation after the caption
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(new byte[] {'P', 'H', 'L', 'B'});
+		LibraryCodec.writeVarint(bytes, 1);
+		bytes.write(0);
+		LibraryCodec.Encoder enc = new LibraryCodec.Encoder(bytes);
+		enc.writeVarlong(7);
+		enc.writeVarint(1);
+		enc.writeString("ann");
+		enc.writeVarint(1);
+		enc.writeString("/photos/a.jpg");
+		enc.writeZigzag(-86400000L);
+		enc.writeString("old");
+		enc.writeVarint(1);
+		enc.writeString("place");
+		enc.writeString("home");
+		enc.writeVarint(1);
+		enc.writeString("trip");
+		enc.writeVarint(1);
+		enc.writeVarint(0);
+
+		ArrayList<User> users = new ArrayList<User>();
+		assertEquals(7, LibraryCodec.read(new ByteArrayInputStream(bytes.toByteArray()), users));
+		assertEquals(1, users.size());
+		Photo x = users.get(0).getAlbum("trip").photos.get(0);
+		assertEquals("/photos/a.jpg", x.address);
+		assertEquals(-86400000L, x.time.getTimeInMillis());
+		assertEquals("old", x.caption);
+		assertEquals(Arrays.asList(Tag.of("place", "home")), x.tags);
+		assertEquals(0, x.width);
+		assertEquals(0, x.height);
+		assertEquals(0, x.orientation);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsNewerVersion() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(new byte[] {'P', 'H', 'L', 'B'});
+		LibraryCodec.writeVarint(bytes, LibraryCodec.VERSION + 1);
+		bytes.write(0);
+		LibraryCodec.read(new ByteArrayInputStream(bytes.toByteArray()), new ArrayList<User>());
+	}
+
+	@Test
+	public void migratesLegacyLibrary() throws Exception {
+		File file = new File(root, "users.dat");
+		Files.write(file.toPath(), legacy());
+		assertTrue(Migrator.isLegacy(file));
+
+		ArrayList<User> read = new ArrayList<User>();
+		assertEquals(5, Migrator.readLegacy(file, read));
+		checkLegacy(read);
+
+		Migrator.migrate(file, file, true);
+		assertFalse(Migrator.isLegacy(file));
+		assertTrue(LibraryCodec.isLibrary(file));
+		ArrayList<User> migrated = new ArrayList<User>();
+		assertEquals(5, LibraryCodec.read(file, migrated));
+		checkLegacy(migrated);
+	}
+
+	/**
+	 * Writes the test library and checks that every field reads back the same
+	 * @param compress whether the library is deflated
+	 * @throws IOException
+	 */
+	private static void roundTrip(boolean compress) throws IOException {
+		List<User> users = library();
+		ArrayList<User> read = new ArrayList<User>();
+		assertEquals(42, LibraryCodec.read(new ByteArrayInputStream(write(users, compress)), read));
+
+		assertEquals(users.size(), read.size());
+		for (int i = 0; i < users.size(); i++) {
+			User us = users.get(i);
+			User back = read.get(i);
+			assertEquals(us.name, back.name);
+			assertEquals(us.albums.size(), back.albums.size());
+			for (int j = 0; j < us.albums.size(); j++) {
+				Album ab = us.albums.get(j);
+				Album abBack = back.albums.get(j);
+				assertEquals(ab.name, abBack.name);
+				assertEquals(ab.photos.size(), abBack.photos.size());
+				for (int k = 0; k < ab.photos.size(); k++) {
+					checkPhoto(ab.photos.get(k), abBack.photos.get(k));
+				}
+			}
+		}
+		// a Photo in two Albums is still one Photo
+		User ann = read.get(0);
+		assertSame(ann.getAlbum("trip").photos.get(0), ann.getAlbum("best").photos.get(0));
+	}
+
+	/**
+	 * Checks that a Photo read back holds everything the written one did
+	 * @param x the Photo written
+	 * @param back the Photo read
+	 */
+	private static void checkPhoto(Photo x, Photo back) {
+		assertEquals(x.address, back.address);
+		assertEquals(x.time.getTimeInMillis(), back.time.getTimeInMillis());
+		assertEquals(x.caption, back.caption);
+		assertEquals(x.tags, back.tags);
+		assertEquals(x.width, back.width);
+		assertEquals(x.height, back.height);
+		assertEquals(x.orientation, back.orientation);
+	}
+
+	/**
+	 * Checks the library read from the legacy stream against what legacy wrote
+	 * @param users the Users read
+	 */
+	private static void checkLegacy(List<User> users) {
+		assertEquals(1, users.size());
+		User ann = users.get(0);
+		assertEquals("ann", ann.name);
+		assertEquals(2, ann.albums.size());
+		Photo x = ann.getAlbum("trip").photos.get(0);
+		assertEquals("/photos/a.jpg", x.address);
+		assertEquals(1000000L, x.time.getTimeInMillis());
+		assertEquals("sunset", x.caption);
+		assertEquals(Arrays.asList(Tag.of("place", "beach")), x.tags);
+		assertSame(x, ann.getAlbum("best").photos.get(0));
+		Photo y = ann.getAlbum("best").photos.get(1);
+		assertEquals("", y.caption);
+		assertTrue(y.tags.isEmpty());
+	}
+
+	/**
+	 * Builds a small library: two Users, one of them with a Photo in two Albums
+	 * @return the Users
+	 */
+	private static List<User> library() {
+		Photo a = photo("/photos/a.jpg", 1000000L, "sunset");
+		a.tags.add(Tag.of("place", "beach"));
+		a.tags.add(Tag.of("person", "bob"));
+		a.width = 4000;
+		a.height = 3000;
+		a.orientation = 6;
+		Photo b = photo("/photos/b.jpg", -5000L, "");
+		Photo c = photo("/photos/c.jpg", 2000000L, "caf\u00e9");
+		c.tags.add(Tag.of("place", "beach"));
+
+		User ann = new User("ann");
+		Album trip = new Album("trip");
+		trip.photos.add(a);
+		trip.photos.add(b);
+		Album best = new Album("best");
+		best.photos.add(a);
+		ann.addAlbum(trip);
+		ann.addAlbum(best);
+		ann.addAlbum(new Album("empty"));
+
+		User bob = new User("bob");
+		Album home = new Album("home");
+		home.photos.add(c);
+		bob.addAlbum(home);
+		return Arrays.asList(ann, bob);
+	}
+
+	/**
+	 * Builds a Photo
+	 * @param address file address of the Photo
+	 * @param millis time of the Photo
+	 * @param caption caption of the Photo
+	 * @return the Photo
+	 */
+	private static Photo photo(String address, long millis, String caption) {
+		Calendar time = Calendar.getInstance();
+		time.setTimeInMillis(millis);
+		Photo x = new Photo(address, time);
+		x.caption = caption;
+		return x;
+	}
+
+	/**
+	 * Writes Users as a library file would hold them
+	 * @param users the Users
+	 * @param compress whether the library is deflated
+	 * @return the written bytes
+	 * @throws IOException
+	 */
+	private static byte[] write(List<User> users, boolean compress) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LibraryCodec.write(42, users, out, compress);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Serializes a library the way the application did before LibraryCodec. The mirror classes
+	 * are written and their names then swapped for those of the application's classes, which
+	 * is what the old files name
+	 * @return the serialized library
+	 * @throws IOException
+	 */
+	private static byte[] legacy() throws IOException {
+		app.legacy.Tag tag = new app.legacy.Tag();
+		tag.tname = "place";
+		tag.tvalue = "beach";
+		app.legacy.Photo a = new app.legacy.Photo();
+		a.address = "/photos/a.jpg";
+		a.time = Calendar.getInstance();
+		a.time.setTimeInMillis(1000000L);
+		a.caption = "sunset";
+		a.tags = new LinkedList<app.legacy.Tag>(Arrays.asList(tag));
+		// the oldest files left time, caption and Tags unset
+		app.legacy.Photo b = new app.legacy.Photo();
+		b.address = "/photos/b.jpg";
+
+		app.legacy.Album trip = new app.legacy.Album();
+		trip.name = "trip";
+		trip.photos = new LinkedList<app.legacy.Photo>(Arrays.asList(a));
+		app.legacy.Album best = new app.legacy.Album();
+		best.name = "best";
+		best.photos = new LinkedList<app.legacy.Photo>(Arrays.asList(a, b));
+		app.legacy.User ann = new app.legacy.User();
+		ann.name = "ann";
+		ann.albums = new LinkedList<app.legacy.Album>(Arrays.asList(trip, best));
+		app.legacy.Photos lib = new app.legacy.Photos();
+		lib.users = new ArrayList<app.legacy.User>(Arrays.asList(ann));
+		lib.lsn = 5;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(lib);
+		}
+		byte[] stream = bytes.toByteArray();
+		stream = rename(stream, "app.legacy.Photos", "app.Photos");
+		stream = rename(stream, "app.legacy.User", "model.User");
+		stream = rename(stream, "app.legacy.Album", "model.Album");
+		stream = rename(stream, "app.legacy.Photo", "model.Photo");
+		stream = rename(stream, "app.legacy.Tag", "model.Tag");
+		return stream;
+	}
+
+	/**
+	 * Replaces a class name in a serialization stream, names being written with a two byte length
+	 * @param stream the serialization stream
+	 * @param from the name written
+	 * @param to the name it is replaced by
+	 * @return the new stream
+	 */
+	private static byte[] rename(byte[] stream, String from, String to) {
+		byte[] find = utf(from);
+		byte[] put = utf(to);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(stream.length);
+		int i = 0;
+		int found = 0;
+		while (i < stream.length) {
+			if (matches(stream, i, find)) {
+				out.write(put, 0, put.length);
+				i += find.length;
+				found++;
+			} else {
+				out.write(stream[i++]);
+			}
+		}
+		assertEquals("occurrences of " + from, 1, found);
+		return out.toByteArray();
+	}
+
+	private static byte[] utf(String str) {
+		byte[] chars = str.getBytes(StandardCharsets.UTF_8);
+		byte[] utf = new byte[chars.length + 2];
+		utf[0] = (byte) (chars.length >> 8);
+		utf[1] = (byte) chars.length;
+		System.arraycopy(chars, 0, utf, 2, chars.length);
+		return utf;
+	}
+
+	private static boolean matches(byte[] stream, int at, byte[] find) {
+		if (at + find.length > stream.length) return false;
+		for (int j = 0; j < find.length; j++) {
+			if (stream[at + j] != find[j]) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,159 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests IntBitmap against a BitSet holding the same values, across the switch of a container
+ * between a sorted array and a bitmap, and for intersection, union and difference of sets
+ * mixing both kinds of container
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class IntBitmapTest {
+	/** values a container keeps as an array, as IntBitmap.ARRAY_MAX */
+	private static final int ARRAY_MAX = 4096;
+
+	@Test
+	public void addAndRemoveAcrossContainerSwitch() {
+		IntBitmap set = new IntBitmap();
+		BitSet expected = new BitSet();
+		// one container grows past the array limit and becomes a bitmap
+		for (int v = 0; v <= 2 * ARRAY_MAX; v += 2) {
+			assertTrue(set.add(v));
+			expected.set(v);
+		}
+		assertFalse("added twice", set.add(ARRAY_MAX));
+		check(expected, set);
+
+		// and shrinks back to an array once half of the limit is left
+		for (int v = 0; v <= 2 * ARRAY_MAX; v += 4) {
+			assertTrue(set.remove(v));
+			expected.clear(v);
+		}
+		assertFalse("removed twice", set.remove(0));
+		assertFalse("never added", set.remove(1));
+		check(expected, set);
+
+		// values added to the array container after the switch back keep their order
+		for (int v = 1; v < 200; v += 2) {
+			set.add(v);
+			expected.set(v);
+		}
+		check(expected, set);
+	}
+
+	@Test
+	public void emptiedContainersAreDropped() {
+		IntBitmap set = new IntBitmap();
+		set.add(5);
+		set.add(70000);
+		set.add(200000);
+		assertTrue(set.remove(70000));
+		BitSet expected = new BitSet();
+		expected.set(5);
+		expected.set(200000);
+		check(expected, set);
+		set.remove(5);
+		set.remove(200000);
+		assertTrue(set.isEmpty());
+		assertEquals(0, set.toArray().length);
+	}
+
+	@Test
+	public void intersectionUnionAndDifference() {
+		Random rnd = new Random(7);
+		// densities giving array containers, bitmap containers and both in one set
+		double[] densities = { 0.001, 0.02, 0.2, 0.9 };
+		for (double da : densities) {
+			for (double db : densities) {
+				BitSet ea = new BitSet();
+				BitSet eb = new BitSet();
+				IntBitmap a = random(rnd, da, ea);
+				IntBitmap b = random(rnd, db, eb);
+
+				BitSet and = (BitSet) ea.clone();
+				and.and(eb);
+				check(and, IntBitmap.and(a, b));
+				BitSet or = (BitSet) ea.clone();
+				or.or(eb);
+				check(or, IntBitmap.or(a, b));
+				BitSet andNot = (BitSet) ea.clone();
+				andNot.andNot(eb);
+				check(andNot, IntBitmap.andNot(a, b));
+
+				// the operands are left as they were
+				check(ea, a);
+				check(eb, b);
+			}
+		}
+	}
+
+	@Test
+	public void operationsWithEmptySet() {
+		IntBitmap empty = new IntBitmap();
+		BitSet expected = new BitSet();
+		IntBitmap set = random(new Random(3), 0.05, expected);
+		check(new BitSet(), IntBitmap.and(set, empty));
+		check(expected, IntBitmap.or(empty, set));
+		check(expected, IntBitmap.andNot(set, empty));
+		check(new BitSet(), IntBitmap.andNot(empty, set));
+	}
+
+	@Test
+	public void copyIsIndependent() {
+		BitSet expected = new BitSet();
+		IntBitmap set = random(new Random(5), 0.3, expected);
+		IntBitmap copy = set.copy();
+		copy.add(1 << 20);
+		copy.remove(expected.nextSetBit(0));
+		check(expected, set);
+		assertEquals(set.cardinality(), copy.cardinality());
+	}
+
+	/**
+	 * Builds a set over three containers, two of them adjacent, with the given density
+	 * @param rnd source of the values
+	 * @param density chance of each value being in the set
+	 * @param expected BitSet the same values are set in
+	 * @return the set
+	 */
+	private static IntBitmap random(Random rnd, double density, BitSet expected) {
+		IntBitmap set = new IntBitmap();
+		for (int high : new int[] { 0, 1, 5 }) {
+			for (int low = 0; low < 65536; low++) {
+				if (rnd.nextDouble() < density) {
+					int v = (high << 16) | low;
+					set.add(v);
+					expected.set(v);
+				}
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Checks that a set holds exactly the values of a BitSet
+	 * @param expected the values
+	 * @param actual the set
+	 */
+	private static void check(BitSet expected, IntBitmap actual) {
+		assertEquals(expected.cardinality(), actual.cardinality());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		int[] values = actual.toArray();
+		assertEquals(expected.cardinality(), values.length);
+		int i = 0;
+		for (int v = expected.nextSetBit(0); v >= 0; v = expected.nextSetBit(v + 1)) {
+			assertEquals(v, values[i++]);
+			assertTrue(actual.contains(v));
+		}
+		assertFalse(actual.contains(expected.length()));
+	}
+}
@@ -0,0 +1,166 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests parsing and running boolean queries: operator precedence and parentheses, negation,
+ * Tags no Photo carries, the bounds of date comparisons and the errors malformed queries give
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class QueryTest {
+	private User us;
+
+	/**
+	 * Builds a User with four Photos around new year 2020:
+	 * a at the first instant of 01/01/2020, b at its last, c at the start of 01/02/2020 and
+	 * d at noon on 12/31/2019
+	 */
+	@Before
+	public void setUp() {
+		us = new User("u");
+		Album ab = new Album("all");
+		us.addAlbum(ab);
+		ab.addPhoto(photo("a", time(2020, 1, 1, 0), "person", "alice", "location", "nyc"));
+		Calendar last = time(2020, 1, 2, 0);
+		last.add(Calendar.MILLISECOND, -1);
+		ab.addPhoto(photo("b", last, "person", "bob", "location", "nyc", "event", "work"));
+		ab.addPhoto(photo("c", time(2020, 1, 2, 0), "person", "alice", "location", "sf"));
+		ab.addPhoto(photo("d", time(2019, 12, 31, 12), "person", "carol", "location", "nyc"));
+	}
+
+	@Test
+	public void andBindsTighterThanOr() throws ParseException {
+		check("person=alice OR person=bob AND location=sf", "a", "c");
+		check("person=bob AND location=sf OR person=alice", "a", "c");
+		check("(person=alice OR person=bob) AND location=nyc", "a", "b");
+		check("location=nyc AND (person=bob OR person=carol) AND NOT event=work", "d");
+		check("((person=alice))", "a", "c");
+	}
+
+	@Test
+	public void negation() throws ParseException {
+		check("location=nyc AND NOT event=work", "a", "d");
+		check("NOT location=nyc", "c");
+		check("person!=alice AND location=nyc", "b", "d");
+		check("NOT NOT person=alice", "a", "c");
+		check("NOT (person=alice OR location=sf)", "b", "d");
+		check("not location=nyc and not person=alice", new String[0]);
+	}
+
+	@Test
+	public void unknownTags() throws ParseException {
+		check("location=nyc AND person=zed", new String[0]);
+		check("location=sf OR person=zed", "c");
+		check("NOT person=zed", "a", "b", "c", "d");
+		// running a query never adds its Tags to the dictionary
+		assertNull(TagDictionary.find("person", "zed"));
+	}
+
+	@Test
+	public void dateBounds() throws ParseException {
+		check("date=01/01/2020", "a", "b");
+		check("date!=01/01/2020", "c", "d");
+		check("date<01/01/2020", "d");
+		check("date<=01/01/2020", "a", "b", "d");
+		check("date>01/01/2020", "c");
+		check("date>=01/01/2020", "a", "b", "c");
+		check("date>=12/31/2019 AND date<01/02/2020 AND location=nyc", "a", "b", "d");
+	}
+
+	@Test
+	public void quotedValues() throws ParseException {
+		Album ab = us.getAlbum("all");
+		ab.addPhoto(photo("e", time(2021, 6, 1, 0), "event", "new year's eve", "location", "a=b"));
+		check("event=\"new year's eve\"", "e");
+		check("location=\"a=b\" OR event=work", "b", "e");
+	}
+
+	@Test
+	public void malformedQueriesFail() {
+		String[] bad = { "", "   ", "person", "person=", "person alice", "=alice", "(person=alice",
+				"person=alice)", "person=alice AND", "OR person=alice", "person=alice AND AND location=nyc",
+				"NOT", "person<alice", "person ! alice", "person=\"alice", "date=13/45/2020",
+				"date>=1/1/20x", "date=yesterday", "()" };
+		for (String text : bad) {
+			try {
+				Query.parse(text);
+				fail("parsed: " + text);
+			} catch (ParseException e) {
+				assertTrue(e.getErrorOffset() >= 0 && e.getErrorOffset() <= text.length());
+			} catch (RuntimeException e) {
+				fail(text + " threw " + e);
+			}
+		}
+	}
+
+	@Test
+	public void emptyIntersectionSkipsTheRest() throws ParseException {
+		Query q = Query.parse("location=nyc AND person=zed AND event=work");
+		assertTrue(q.run(us).isEmpty());
+		String plan = q.explain();
+		// the term matching nothing is estimated cheapest, runs first and ends the AND
+		assertTrue(plan, plan.indexOf("person=zed") < plan.indexOf("event=work"));
+		assertTrue(plan, plan.contains("skipped"));
+	}
+
+	/**
+	 * Runs a query and checks the names of the Photos it found
+	 * @param text the query
+	 * @param names the expected names, in any order
+	 * @throws ParseException
+	 */
+	private void check(String text, String... names) throws ParseException {
+		List<String> found = new ArrayList<String>();
+		for (Photo x : Query.parse(text).run(us)) {
+			found.add(x.caption);
+		}
+		Collections.sort(found);
+		assertEquals(text, Arrays.asList(names), found);
+	}
+
+	/**
+	 * Builds a Photo named by its caption, carrying the given Tags
+	 * @param name the caption
+	 * @param t the time of the Photo
+	 * @param tags names and values of the Tags, alternating
+	 * @return the Photo
+	 */
+	private static Photo photo(String name, Calendar t, String... tags) {
+		Photo x = new Photo("/photos/" + name + ".jpg", t);
+		x.caption = name;
+		for (int i = 0; i < tags.length; i += 2) {
+			x.tags.add(Tag.of(tags[i], tags[i + 1]));
+		}
+		return x;
+	}
+
+	/**
+	 * Returns a local time on the hour
+	 * @param year the year
+	 * @param month the month, from 1
+	 * @param day the day of the month
+	 * @param hour the hour of the day
+	 * @return the time
+	 */
+	private static Calendar time(int year, int month, int day, int hour) {
+		Calendar t = Calendar.getInstance();
+		t.clear();
+		t.set(year, month - 1, day, hour, 0, 0);
+		return t;
+	}
+}
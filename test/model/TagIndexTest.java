@@ -0,0 +1,140 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a User's TagIndex follows its Photos as Tags are added and deleted and Photos
+ * join and leave Albums, and that Album searches answered from it see only their own Photos
+ * @author Jason Mooney (jcm370)
+ * @author Crystal Zhang (cz298)
+ *
+ */
+
+public class TagIndexTest {
+	private User us;
+	private Album trip;
+	private Album home;
+	private Photo a;
+	private Photo b;
+	private Photo c;
+	private Tag beach;
+	private Tag bob;
+	private Tag ann;
+
+	@Before
+	public void setUp() {
+		beach = Tag.of("place", "beach");
+		bob = Tag.of("person", "bob");
+		ann = Tag.of("person", "ann");
+		us = new User("u");
+		trip = new Album("trip");
+		home = new Album("home");
+		us.addAlbum(trip);
+		us.addAlbum(home);
+		a = photo("/photos/a.jpg", beach, bob);
+		b = photo("/photos/b.jpg", beach);
+		c = photo("/photos/c.jpg", bob);
+		trip.addPhoto(a);
+		trip.addPhoto(b);
+		home.addPhoto(c);
+	}
+
+	@Test
+	public void searchAllAndAny() {
+		TagIndex index = us.getTagIndex();
+		assertEquals(2, index.count(beach));
+		assertEquals(addresses(a), addresses(index.searchAll(Arrays.asList(beach, bob))));
+		assertEquals(addresses(a, b, c), addresses(index.searchAny(Arrays.asList(beach, bob))));
+		assertTrue(index.searchAll(Arrays.asList(beach, ann)).isEmpty());
+		assertEquals(addresses(a, c), addresses(index.searchAny(Arrays.asList(ann, bob))));
+	}
+
+	@Test
+	public void followsTagChanges() {
+		TagIndex index = us.getTagIndex();
+		b.addTag(bob);
+		assertEquals(addresses(a, b), addresses(index.searchAll(Arrays.asList(beach, bob))));
+		a.deleteTag(beach);
+		assertEquals(addresses(b), addresses(index.searchAll(Arrays.asList(beach, bob))));
+		assertEquals(1, index.count(beach));
+		b.deleteTag(beach);
+		assertEquals(0, index.count(beach));
+		assertTrue(index.searchAny(Arrays.asList(beach)).isEmpty());
+	}
+
+	@Test
+	public void followsMembership() {
+		TagIndex index = us.getTagIndex();
+		trip.removePhoto(a);
+		assertEquals(addresses(c), addresses(index.searchAll(Arrays.asList(bob))));
+		// a Photo in two Albums stays indexed until it leaves the last of them
+		home.addPhoto(b);
+		trip.removePhoto(b);
+		assertEquals(addresses(b), addresses(index.searchAll(Arrays.asList(beach))));
+		home.removePhoto(b);
+		assertEquals(0, index.count(beach));
+	}
+
+	@Test
+	public void albumSearchesSeeOnlyTheirPhotos() {
+		assertEquals(addresses(a, b), addresses(trip.searchTag(beach).photos));
+		assertEquals(addresses(a), addresses(trip.searchConjunctive(beach, bob).photos));
+		assertEquals(addresses(a, b), addresses(trip.searchDisjunctive(beach, bob).photos));
+		assertEquals(addresses(c), addresses(home.searchDisjunctive(beach, bob).photos));
+		assertTrue(home.searchConjunctive(beach, bob).photos.isEmpty());
+
+		// an Album with no owner checks its Photos one by one, with the same answers
+		Album loose = new Album("loose");
+		loose.addPhoto(photo("/photos/d.jpg", beach, bob));
+		loose.addPhoto(photo("/photos/e.jpg", ann));
+		assertEquals(Arrays.asList("/photos/d.jpg"), addresses(loose.searchConjunctive(beach, bob).photos));
+		assertEquals(Arrays.asList("/photos/d.jpg", "/photos/e.jpg"), addresses(loose.searchDisjunctive(bob, ann).photos));
+	}
+
+	@Test
+	public void moveToSameAlbumKeepsPhoto() {
+		trip.movePhoto(a, trip);
+		assertTrue(trip.contains(a));
+		assertEquals(2, trip.photos.size());
+		trip.movePhoto(a, home);
+		assertTrue(home.contains(a));
+		assertEquals(1, trip.photos.size());
+	}
+
+	/**
+	 * Builds a Photo carrying the given Tags
+	 * @param address file address of the Photo
+	 * @param tags the Tags
+	 * @return the Photo
+	 */
+	private static Photo photo(String address, Tag... tags) {
+		Photo x = new Photo(address, Calendar.getInstance());
+		x.tags.addAll(Arrays.asList(tags));
+		return x;
+	}
+
+	/**
+	 * Returns the canonical addresses of Photos, to compare results regardless of instance
+	 * @param photos the Photos
+	 * @return their addresses, in order
+	 */
+	private static List<String> addresses(Photo... photos) {
+		return addresses(Arrays.asList(photos));
+	}
+
+	private static List<String> addresses(List<Photo> photos) {
+		ArrayList<String> out = new ArrayList<String>();
+		for (Photo x : photos) {
+			out.add(x.address);
+		}
+		return out;
+	}
+}